@@ -0,0 +1,76 @@
+package org.dictionary;
+
+// --- BenchmarkDictionaries.java ---
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionaries for the benchmarks: word i is "word" + i with the single
+ * meaning "a". Managers use write-behind persistence with a long staleness
+ * window unless told otherwise, so disk writes stay out of the numbers.
+ */
+final class BenchmarkDictionaries {
+    static final List<String> MEANINGS = Collections.singletonList("a");
+
+    private BenchmarkDictionaries() {
+    }
+
+    static String word(int i) {
+        return "word" + i;
+    }
+
+    static String[] words(int size) {
+        String[] words = new String[size];
+        for (int i = 0; i < size; i++) {
+            words[i] = word(i);
+        }
+        return words;
+    }
+
+    /** The entries of a dictionary of the given size, for writing to a file. */
+    static Map<String, List<String>> entries(int size) {
+        Map<String, List<String>> entries = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            entries.put(word(i), MEANINGS);
+        }
+        return entries;
+    }
+
+    /**
+     * Options for a manager. {@code indexes} is "none" or "all" (the prefix,
+     * suggest and meaning indexes, which every write has to update); values in
+     * {@code overrides} win.
+     */
+    static ServerOptions options(String indexes, Map<String, String> overrides) {
+        boolean withIndexes = "all".equals(indexes);
+        Map<String, String> values = new HashMap<>();
+        values.put("persistence", "write-behind");
+        values.put("write-behind-staleness-ms", "600000");
+        values.put("prefix-index", String.valueOf(withIndexes));
+        values.put("suggest-index", String.valueOf(withIndexes));
+        values.put("meaning-index", String.valueOf(withIndexes));
+        values.putAll(overrides);
+        return new ServerOptions(values);
+    }
+
+    /** A fresh manager over an empty temporary file, filled with {@code size} words. */
+    static DictionaryManager filled(int size, ServerOptions options) throws IOException {
+        File file = tempFile(".json");
+        file.delete();
+        DictionaryManager manager = new DictionaryManager(file.getPath(), options);
+        for (int i = 0; i < size; i++) {
+            manager.add(word(i), MEANINGS, 0);
+        }
+        return manager;
+    }
+
+    static File tempFile(String suffix) throws IOException {
+        File file = File.createTempFile("dictionary-bench", suffix);
+        file.deleteOnExit();
+        return file;
+    }
+}
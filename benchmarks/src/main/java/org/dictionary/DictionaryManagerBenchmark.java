@@ -0,0 +1,149 @@
+package org.dictionary;
+
+// --- DictionaryManagerBenchmark.java ---
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of the DictionaryManager operations, by dictionary size, storage
+ * engine, locking mode and whether the search indexes are kept. Thread count
+ * comes from JMH's {@code -t} option, e.g. {@code -t 1}, {@code -t 4},
+ * {@code -t 16}.
+ *
+ * <p>Every write benchmark leaves the dictionary as it found it, so the size
+ * stays fixed: {@code addRemove} adds a fresh word and removes it again,
+ * {@code addNewMeaning} adds a fresh word, adds a second meaning and removes
+ * the word (subtract {@code addRemove} for the addNewMeaning share), and
+ * {@code updateMeaning} flips one of the thread's own words between two
+ * meanings. Threads write to words of their own, so writes always succeed.
+ * {@code mixed} is {@code readPercent}% queries, the rest updateMeaning; try
+ * other ratios with e.g. {@code -p readPercent=50,90,99}, and the search
+ * indexes' write cost with {@code -p indexes=none,all}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DictionaryManagerBenchmark {
+    private static final int WORDS_PER_THREAD = 1024;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"heap", "compact"})
+    public String storage;
+
+    @Param({"global", "striped"})
+    public String locking;
+
+    @Param({"none"})
+    public String indexes;
+
+    @Param({"90"})
+    public int readPercent;
+
+    DictionaryManager manager;
+    String[] words;
+    final AtomicInteger threads = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Map<String, String> values = new HashMap<>();
+        values.put("storage", storage);
+        values.put("locking", locking);
+        manager = BenchmarkDictionaries.filled(size, BenchmarkDictionaries.options(indexes, values));
+        words = BenchmarkDictionaries.words(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.close();
+    }
+
+    /** Per-thread random source and words only this thread writes to. */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final SplittableRandom random = new SplittableRandom();
+        String[] own;       // in the dictionary, meaning "a" or "b"
+        boolean[] flipped;  // true while own[i] has meaning "b"
+        String[] fresh;     // never in the dictionary between calls
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(DictionaryManagerBenchmark benchmark) {
+            int thread = benchmark.threads.getAndIncrement();
+            own = new String[WORDS_PER_THREAD];
+            flipped = new boolean[WORDS_PER_THREAD];
+            fresh = new String[WORDS_PER_THREAD];
+            for (int i = 0; i < WORDS_PER_THREAD; i++) {
+                own[i] = "thread" + thread + "-" + i;
+                fresh[i] = "fresh" + thread + "-" + i;
+                benchmark.manager.add(own[i], BenchmarkDictionaries.MEANINGS, 0);
+            }
+        }
+
+        int nextIndex() {
+            next = (next + 1) & (WORDS_PER_THREAD - 1);
+            return next;
+        }
+    }
+
+    @Benchmark
+    public List<String> query(ThreadState state) {
+        return manager.query(words[state.random.nextInt(words.length)]);
+    }
+
+    @Benchmark
+    public String addRemove(ThreadState state) {
+        String word = state.fresh[state.nextIndex()];
+        manager.add(word, BenchmarkDictionaries.MEANINGS, 0);
+        return manager.remove(word, 0);
+    }
+
+    @Benchmark
+    public String addNewMeaning(ThreadState state) {
+        String word = state.fresh[state.nextIndex()];
+        manager.add(word, BenchmarkDictionaries.MEANINGS, 0);
+        manager.addNewMeaning(word, "b", 0);
+        return manager.remove(word, 0);
+    }
+
+    @Benchmark
+    public String updateMeaning(ThreadState state) {
+        return flip(state, state.nextIndex());
+    }
+
+    @Benchmark
+    public Object mixed(ThreadState state) {
+        if (state.random.nextInt(100) < readPercent) {
+            return manager.query(words[state.random.nextInt(words.length)]);
+        }
+        return flip(state, state.nextIndex());
+    }
+
+    private String flip(ThreadState state, int i) {
+        boolean flipped = state.flipped[i];
+        state.flipped[i] = !flipped;
+        return manager.updateMeaning(state.own[i], flipped ? "b" : "a", flipped ? "a" : "b", 0);
+    }
+}
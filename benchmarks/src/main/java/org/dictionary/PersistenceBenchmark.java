@@ -0,0 +1,115 @@
+package org.dictionary;
+
+// --- PersistenceBenchmark.java ---
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup load and per-write save costs for a dictionary file.
+ * {@code load} constructs a DictionaryManager over the file, which is exactly
+ * loadDictionaryFromFile (the search indexes are off). {@code snapshotWrite}
+ * is one updateMeaning under --persistence=snapshot, which ends in a full
+ * saveDictionaryToFile; {@code journalWrite} is the same write under
+ * --persistence=journal with fsync left to the OS, for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    @Param({"json", "dict"})
+    public String format;
+
+    @Param({"1"})
+    public int loadThreads;
+
+    Path path;
+    DictionaryManager snapshotManager;
+    DictionaryManager journalManager;
+    boolean flipped;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        path = BenchmarkDictionaries.tempFile("json".equals(format) ? ".json" : BinaryDictionaryFile.EXTENSION).toPath();
+        if ("json".equals(format)) {
+            JsonDictionaryFile.write(path, BenchmarkDictionaries.entries(size));
+        } else {
+            BinaryDictionaryFile.write(path, BenchmarkDictionaries.entries(size));
+        }
+        snapshotManager = new DictionaryManager(path.toString(), options("snapshot"));
+        File journalCopy = BenchmarkDictionaries.tempFile(path.getFileName().toString());
+        new File(journalCopy.getPath() + ".journal").deleteOnExit();
+        if ("json".equals(format)) {
+            JsonDictionaryFile.write(journalCopy.toPath(), BenchmarkDictionaries.entries(size));
+        } else {
+            BinaryDictionaryFile.write(journalCopy.toPath(), BenchmarkDictionaries.entries(size));
+        }
+        Map<String, String> journal = new HashMap<>();
+        journal.put("fsync", "os");
+        journalManager = new DictionaryManager(journalCopy.getPath(), options("journal", journal));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        snapshotManager.close();
+        journalManager.close();
+    }
+
+    @Benchmark
+    public String load() {
+        DictionaryManager manager = new DictionaryManager(path.toString(), options("snapshot"));
+        String summary = manager.getLoadSummary();
+        manager.close();
+        return summary;
+    }
+
+    @Benchmark
+    public String snapshotWrite() {
+        return flip(snapshotManager);
+    }
+
+    @Benchmark
+    public String journalWrite() {
+        return flip(journalManager);
+    }
+
+    private String flip(DictionaryManager manager) {
+        flipped = !flipped;
+        return manager.updateMeaning(BenchmarkDictionaries.word(0), flipped ? "a" : "b", flipped ? "b" : "a", 0);
+    }
+
+    private ServerOptions options(String persistence) {
+        return options(persistence, new HashMap<>());
+    }
+
+    private ServerOptions options(String persistence, Map<String, String> extra) {
+        Map<String, String> values = new HashMap<>(extra);
+        values.put("persistence", persistence);
+        values.put("load-threads", String.valueOf(loadThreads));
+        values.put("query-cache-entries", "0");
+        return BenchmarkDictionaries.options("none", values);
+    }
+}
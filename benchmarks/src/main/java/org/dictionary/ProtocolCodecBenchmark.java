@@ -0,0 +1,105 @@
+package org.dictionary;
+
+// --- ProtocolCodecBenchmark.java ---
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one protocol request as {@link ClientHandler} handles it, split
+ * into parsing the line ({@code parse}), executing it and serializing the
+ * response into the connection's writer ({@code respond}), and both
+ * ({@code handle}). Compares the streaming fast path with the general
+ * JsonObject path, with and without the query response cache. The output is
+ * a PrintWriter over a null stream, so no I/O is measured.
+ *
+ * <p>{@code add} targets a word that already exists, so the dictionary does
+ * not grow; it measures parsing the meanings and the duplicate response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtocolCodecBenchmark {
+    private static final int SIZE = 10_000;
+
+    @Param({"query", "queryWithId", "queryMissing", "add", "multiQuery"})
+    public String request;
+
+    @Param({"fast", "general"})
+    public String path;
+
+    @Param({"0", "10000"})
+    public int queryCache;
+
+    DictionaryManager manager;
+    RequestProcessor processor;
+    PrintWriter writer;
+    RequestProcessor.Output output;
+    RequestProcessor.Request parsed;
+    String line;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        manager = BenchmarkDictionaries.filled(SIZE, BenchmarkDictionaries.options("none",
+                Collections.singletonMap("query-cache-entries", String.valueOf(queryCache))));
+        manager.addNewMeaning(BenchmarkDictionaries.word(42), "a second, longer meaning with \"quotes\"", 0);
+        processor = new RequestProcessor(manager, "fast".equals(path));
+        writer = new PrintWriter(OutputStream.nullOutputStream());
+        output = processor.newOutput(writer);
+        switch (request) {
+            case "query":
+                line = "{\"command\":\"query\",\"word\":\"word42\"}";
+                break;
+            case "queryWithId":
+                line = "{\"id\":12345,\"command\":\"query\",\"word\":\"word42\"}";
+                break;
+            case "queryMissing":
+                line = "{\"command\":\"query\",\"word\":\"no-such-word\"}";
+                break;
+            case "add":
+                line = "{\"command\":\"add\",\"word\":\"word42\",\"meanings\":[\"one\",\"two\",\"three\"]}";
+                break;
+            default:
+                line = "{\"command\":\"multiQuery\",\"words\":[\"word1\",\"word2\",\"word3\",\"missing\"]}";
+        }
+        parsed = processor.parse(line);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public RequestProcessor.Request parse() {
+        return processor.parse(line);
+    }
+
+    @Benchmark
+    public void respond() throws Exception {
+        processor.process(parsed, output);
+    }
+
+    @Benchmark
+    public void handle() throws Exception {
+        processor.process(processor.parse(line), output);
+    }
+}
@@ -0,0 +1,177 @@
+package org.dictionary;
+
+// --- AsyncDictionaryClient.java ---
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One connection to the dictionary server that can have many requests in
+ * flight at once. Every request is tagged with a fresh {@code id}, written
+ * straight away, and completed when the response with the same id comes back,
+ * in whatever order the server answers.
+ *
+ * <p>Responses are completed on the connection's reader thread, so callbacks
+ * attached to the returned futures should not block.
+ */
+public class AsyncDictionaryClient implements AutoCloseable {
+    private final Socket socket;
+    private final PrintWriter writer;
+    private final BufferedReader reader;
+    private final Gson gson = new Gson();
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<Long, CompletableFuture<JsonObject>> pending = new ConcurrentHashMap<>();
+    // Last error the server sent without an id (e.g. "at capacity"); explains a following disconnect.
+    private volatile String unmatchedError;
+    private volatile boolean closed;
+    private volatile Consumer<JsonObject> pushListener = push -> { };
+    private volatile Runnable closeListener = () -> { };
+
+    public AsyncDictionaryClient(String address, int port) throws IOException {
+        this(address, port, 0);
+    }
+
+    /** Connects, giving up after {@code connectTimeoutMillis} (0 waits as long as the OS does). */
+    public AsyncDictionaryClient(String address, int port, int connectTimeoutMillis) throws IOException {
+        this.socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(address, port), connectTimeoutMillis);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        this.writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+        this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Thread readerThread = new Thread(this::readResponses, "dictionary-client-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    /**
+     * Sends the request (any existing {@code id} is replaced) and returns a future
+     * for its response. The future fails with an IOException if the connection
+     * closes first.
+     */
+    public CompletableFuture<JsonObject> send(JsonObject request) {
+        long id = nextId.incrementAndGet();
+        JsonObject tagged = request.deepCopy();
+        tagged.addProperty("id", id);
+        CompletableFuture<JsonObject> future = new CompletableFuture<>();
+        pending.put(id, future);
+        if (closed) {
+            failPending();
+            return future;
+        }
+        String line = gson.toJson(tagged);
+        synchronized (writer) {
+            writer.println(line);
+        }
+        if (writer.checkError()) {
+            close();
+        }
+        return future;
+    }
+
+    /**
+     * Receives messages the server sends unasked, such as the
+     * {@code {"type":"invalidate",..}} lines that follow a {@code track}
+     * command. Called on the reader thread, in the order the lines arrive.
+     */
+    public void setPushListener(Consumer<JsonObject> listener) {
+        this.pushListener = listener;
+    }
+
+    /** Runs once when the connection closes, from either end; runs at once if it already has. */
+    public void setCloseListener(Runnable listener) {
+        this.closeListener = listener;
+        if (closed) {
+            runCloseListener();
+        }
+    }
+
+    /** True once the connection has closed, from either end; every later send fails. */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /** Number of requests sent but not yet answered. */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing connection: " + e.getMessage());
+        }
+        failPending();
+        runCloseListener();
+    }
+
+    private void runCloseListener() {
+        Runnable listener = closeListener;
+        closeListener = () -> { };
+        listener.run();
+    }
+
+    private void readResponses() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JsonObject response;
+                try {
+                    response = gson.fromJson(line, JsonObject.class);
+                } catch (Exception e) {
+                    System.err.println("Ignoring malformed response: " + line);
+                    continue;
+                }
+                if (response == null) {
+                    continue;
+                }
+                JsonElement id = response.get("id");
+                if (id == null && response.has("type")) {
+                    pushListener.accept(response);
+                    continue;
+                }
+                CompletableFuture<JsonObject> future = id == null ? null : pending.remove(id.getAsLong());
+                if (future != null) {
+                    future.complete(response);
+                } else if (response.has("message")) {
+                    unmatchedError = response.get("message").getAsString();
+                }
+            }
+        } catch (IOException e) {
+            // Connection closed or reset; fail whatever is still outstanding below.
+        } finally {
+            close();
+        }
+    }
+
+    private void failPending() {
+        String reason = unmatchedError != null ? unmatchedError : "Connection to server closed.";
+        for (Long id : new ArrayList<>(pending.keySet())) {
+            CompletableFuture<JsonObject> future = pending.remove(id);
+            if (future != null) {
+                future.completeExceptionally(new IOException(reason));
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package org.dictionary;
+
+// --- BinaryDictionaryFile.java ---
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only view of a binary dictionary file ({@code *.dict}), opened with
+ * {@link FileChannel#map} so lookups are served from the page cache without
+ * deserializing the file onto the heap.
+ *
+ * <pre>
+ * header : int magic "DICT" | int version | int entryCount | int indexOffset
+ * data   : per entry, int keyLength, key UTF-8, int meaningCount,
+ *          then per meaning int length, meaning UTF-8
+ * index  : entryCount x int entry offset, sorted by key UTF-8 bytes (unsigned)
+ * </pre>
+ *
+ * Offsets are 32-bit, which limits a file to 2GB.
+ *
+ * <p>A merge of a {@link MappedDictionary} cannot always replace the file it
+ * has mapped (Windows refuses while the mapping lives), so it writes
+ * {@code <name>.merge-<n>} next to it and renames that over the file once it
+ * can. {@link #promoteMerges} finishes the job at the next start.
+ */
+public final class BinaryDictionaryFile {
+    public static final String EXTENSION = ".dict";
+
+    private static final int MAGIC = 0x44494354; // "DICT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final String MERGE_SUFFIX = ".merge-";
+
+    private static final BinaryDictionaryFile EMPTY = new BinaryDictionaryFile(ByteBuffer.allocate(0), 0, 0);
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int indexOffset;
+
+    private BinaryDictionaryFile(ByteBuffer buffer, int count, int indexOffset) {
+        this.buffer = buffer;
+        this.count = count;
+        this.indexOffset = indexOffset;
+    }
+
+    public static boolean isBinaryPath(String filePath) {
+        return filePath.endsWith(EXTENSION);
+    }
+
+    public static BinaryDictionaryFile empty() {
+        return EMPTY;
+    }
+
+    /** Maps {@code path}; a missing or empty file opens as an empty dictionary. */
+    public static BinaryDictionaryFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return EMPTY;
+            }
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a valid binary dictionary file: " + path);
+            }
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IOException("Not a valid binary dictionary file: " + path);
+            }
+            int count = mapped.getInt(8);
+            int indexOffset = mapped.getInt(12);
+            if (count < 0 || indexOffset < HEADER_BYTES || (long) indexOffset + 4L * count > size) {
+                throw new IOException("Corrupt binary dictionary index: " + path);
+            }
+            return new BinaryDictionaryFile(mapped, count, indexOffset);
+        } catch (NoSuchFileException e) {
+            return EMPTY;
+        }
+    }
+
+    /** Copies every entry into {@code target}, after promoting any finished merge. */
+    public static int readInto(Path path, Map<String, List<String>> target) throws IOException {
+        promoteMerges(path);
+        BinaryDictionaryFile file = open(path);
+        for (int i = 0; i < file.count; i++) {
+            target.put(file.keyAt(i), file.meaningsAt(i));
+        }
+        return file.count;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public List<String> get(String word) {
+        int i = indexOf(word.getBytes(StandardCharsets.UTF_8));
+        return i < 0 ? null : meaningsAt(i);
+    }
+
+    /**
+     * Binary search over the index. Returns the entry position, or
+     * {@code -(insertionPoint) - 1} when the key is absent.
+     */
+    public int indexOf(byte[] key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKeyAt(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    public String keyAt(int i) {
+        int offset = entryOffset(i);
+        return readString(offset);
+    }
+
+    public byte[] keyBytesAt(int i) {
+        int offset = entryOffset(i);
+        byte[] key = new byte[buffer.getInt(offset)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4);
+        view.get(key);
+        return key;
+    }
+
+    public List<String> meaningsAt(int i) {
+        int offset = entryOffset(i);
+        offset += 4 + buffer.getInt(offset); // skip the key
+        int meaningCount = buffer.getInt(offset);
+        offset += 4;
+        List<String> meanings = new ArrayList<>(meaningCount);
+        for (int m = 0; m < meaningCount; m++) {
+            meanings.add(readString(offset));
+            offset += 4 + buffer.getInt(offset);
+        }
+        return Collections.unmodifiableList(meanings);
+    }
+
+    private int entryOffset(int i) {
+        return buffer.getInt(indexOffset + 4 * i);
+    }
+
+    private int compareKeyAt(int i, byte[] key) {
+        int offset = entryOffset(i);
+        int length = buffer.getInt(offset);
+        offset += 4;
+        int n = Math.min(length, key.length);
+        for (int b = 0; b < n; b++) {
+            int cmp = (buffer.get(offset + b) & 0xFF) - (key[b] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private String readString(int offset) {
+        int length = buffer.getInt(offset);
+        byte[] utf8 = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4);
+        view.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /** Unsigned lexicographic order of UTF-8 bytes, the order keys are stored in. */
+    public static int compareUtf8(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /** Sorts the entries by key and writes them atomically to {@code target}. */
+    public static void write(Path target, Map<String, List<String>> entries) throws IOException {
+        List<Map.Entry<byte[], List<String>>> sorted = new ArrayList<>(entries.size());
+        for (Map.Entry<String, List<String>> entry : entries.entrySet()) {
+            sorted.add(new AbstractMap.SimpleImmutableEntry<>(
+                    entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue()));
+        }
+        sorted.sort((a, b) -> compareUtf8(a.getKey(), b.getKey()));
+        writeSorted(target, sorted.iterator());
+    }
+
+    /**
+     * Writes entries that are already sorted by {@link #compareUtf8} to a temp
+     * file, fsyncs it and atomically renames it over {@code target}.
+     */
+    public static void writeSorted(Path target, Iterator<Map.Entry<byte[], List<String>>> sorted) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        int[] offsets = new int[1024];
+        int count = 0;
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream raw = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw, 256 * 1024));
+            out.write(new byte[HEADER_BYTES]); // patched once the index offset is known
+
+            while (sorted.hasNext()) {
+                Map.Entry<byte[], List<String>> entry = sorted.next();
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = checkedPosition(out);
+                out.writeInt(entry.getKey().length);
+                out.write(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String meaning : entry.getValue()) {
+                    byte[] utf8 = meaning.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(utf8.length);
+                    out.write(utf8);
+                }
+            }
+
+            int indexOffset = checkedPosition(out);
+            for (int i = 0; i < count; i++) {
+                out.writeInt(offsets[i]);
+            }
+            checkedPosition(out);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(indexOffset).flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Where a merge of {@code path} writes generation {@code generation}. */
+    public static Path mergePath(Path path, long generation) {
+        Path absolute = path.toAbsolutePath();
+        return absolute.resolveSibling(absolute.getFileName() + MERGE_SUFFIX + generation);
+    }
+
+    /**
+     * Renames the newest merge of {@code path} over it and deletes the others,
+     * along with temp files a crash left behind. Only merges newer than the
+     * file itself are ever left on disk, so the newest one wins. Must not be
+     * called while the file or its merges are mapped. Returns the highest
+     * generation found, or 0.
+     */
+    public static long promoteMerges(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        String prefix = absolute.getFileName() + MERGE_SUFFIX;
+        long newest = 0;
+        List<Path> stale = new ArrayList<>();
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(absolute.getParent(), prefix + "*")) {
+            for (Path sibling : siblings) {
+                long generation;
+                try {
+                    generation = Long.parseLong(sibling.getFileName().toString().substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    stale.add(sibling); // an unfinished .tmp
+                    continue;
+                }
+                if (generation > newest) {
+                    if (newest > 0) {
+                        stale.add(mergePath(absolute, newest));
+                    }
+                    newest = generation;
+                } else {
+                    stale.add(sibling);
+                }
+            }
+        }
+        for (Path file : stale) {
+            Files.deleteIfExists(file);
+        }
+        if (newest > 0) {
+            Files.move(mergePath(absolute, newest), absolute,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return newest;
+    }
+
+    // DataOutputStream.size() saturates at Integer.MAX_VALUE, which is also our offset limit.
+    private static int checkedPosition(DataOutputStream out) throws IOException {
+        int position = out.size();
+        if (position == Integer.MAX_VALUE) {
+            throw new IOException("Binary dictionary files are limited to 2GB");
+        }
+        return position;
+    }
+}
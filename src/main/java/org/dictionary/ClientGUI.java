@@ -1,25 +1,22 @@
 package org.dictionary;
 
 // --- ClientGUI.java ---
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import javax.swing.*;
 import java.awt.*;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ClientGUI extends JFrame {
-    private Socket socket;
-    private PrintWriter writer;
-    private BufferedReader reader;
-    private final Gson gson = new Gson();
+    // Thread-safe, so overlapping clicks each wait for their own response on a request thread.
+    private PooledDictionaryClient client;
+    private final ExecutorService requests = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "client-request");
+        t.setDaemon(true);
+        return t;
+    });
 
     private JTextArea responseArea;
     private final int delay; // <-- Add this field
@@ -55,9 +52,10 @@ public class ClientGUI extends JFrame {
 
         // --- Connect to Server ---
         try {
-            socket = new Socket(address, port);
-            writer = new PrintWriter(socket.getOutputStream(), true);
-            reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            // A simulated slow write still has to answer within the request timeout.
+            ServerOptions options = new ServerOptions(
+                    Collections.singletonMap("request-timeout-ms", String.valueOf(5000L + delay)));
+            client = new PooledDictionaryClient(address, port, options);
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this, "Could not connect to server: " + e.getMessage(), "Connection Error", JOptionPane.ERROR_MESSAGE);
             System.exit(1);
@@ -83,22 +81,13 @@ public class ClientGUI extends JFrame {
         panel.add(buttonPanel, gbc);
 
         queryButton.addActionListener(e -> {
-            JsonObject request = new JsonObject();
-            request.addProperty("command", "query");
-            request.addProperty("word", wordField.getText().trim());
-            sendRequest(request);
-
+            String word = wordField.getText().trim();
+            sendRequest(() -> client.query(word, true));
         });
 
         removeButton.addActionListener(e -> {
-            JsonObject request = new JsonObject();
-            request.addProperty("command", "remove");
-            request.addProperty("word", wordField.getText().trim());
-            sendRequest(request);
-
-            if (this.delay > 0) {
-                request.addProperty("delay", this.delay);
-            }
+            String word = wordField.getText().trim();
+            sendRequest(() -> client.remove(word, delay));
         });
 
         return panel;
@@ -122,15 +111,8 @@ public class ClientGUI extends JFrame {
 
         addButton.addActionListener(e -> {
             String[] meanings = meaningArea.getText().split("\\n");
-            JsonObject request = new JsonObject();
-            request.addProperty("command", "add");
-            request.addProperty("word", wordField.getText().trim());
-            request.add("meanings", gson.toJsonTree(Arrays.asList(meanings)));
-            sendRequest(request);
-
-            if (this.delay > 0) {
-                request.addProperty("delay", this.delay);
-            }
+            String word = wordField.getText().trim();
+            sendRequest(() -> client.add(word, Arrays.asList(meanings), delay));
         });
 
         return panel;
@@ -158,76 +140,63 @@ public class ClientGUI extends JFrame {
         gbc.gridx = 2; gbc.gridy = 3; panel.add(updateMeaningButton, gbc);
 
         addMeaningButton.addActionListener(e -> {
-            JsonObject request = new JsonObject();
-            request.addProperty("command", "addMeaning");
-            request.addProperty("word", wordField.getText().trim());
-            request.addProperty("newMeaning", newMeaningField.getText().trim());
-            sendRequest(request);
-
-            if (this.delay > 0) {
-                request.addProperty("delay", this.delay);
-            }
+            String word = wordField.getText().trim();
+            String newMeaning = newMeaningField.getText().trim();
+            sendRequest(() -> client.addMeaning(word, newMeaning, delay));
         });
 
         updateMeaningButton.addActionListener(e -> {
-            JsonObject request = new JsonObject();
-            request.addProperty("command", "updateMeaning");
-            request.addProperty("word", wordField.getText().trim());
-            request.addProperty("oldMeaning", oldMeaningField.getText().trim());
-            request.addProperty("newMeaning", newMeaningField.getText().trim());
-            sendRequest(request);
-
-            if (this.delay > 0) {
-                request.addProperty("delay", this.delay);
-            }
+            String word = wordField.getText().trim();
+            String oldMeaning = oldMeaningField.getText().trim();
+            String newMeaning = newMeaningField.getText().trim();
+            sendRequest(() -> client.updateMeaning(word, oldMeaning, newMeaning, delay));
         });
 
         return panel;
     }
 
-    private void sendRequest(JsonObject request) {
-        SwingWorker<String, Void> worker = new SwingWorker<>() {
-            @Override
-            protected String doInBackground() {
-                writer.println(gson.toJson(request));
-                try {
-                    return reader.readLine();
-                } catch (IOException e) {
-                    return "{\"status\":\"error\",\"message\":\"" + e.getMessage() + "\"}";
-                }
+    private interface Request {
+        PooledDictionaryClient.Response send() throws IOException;
+    }
+
+    private void sendRequest(Request request) {
+        requests.execute(() -> {
+            PooledDictionaryClient.Response response;
+            try {
+                response = request.send();
+            } catch (IOException e) {
+                SwingUtilities.invokeLater(() -> responseArea.setText("Server unavailable: " + e.getMessage()));
+                return;
             }
+            SwingUtilities.invokeLater(() -> showResponse(response));
+        });
+    }
 
-            @Override
-            protected void done() {
-                try {
-                    String jsonResponse = get();
-                    if (jsonResponse == null) {
-                        responseArea.setText("Server disconnected.");
-                        return;
+    private void showResponse(PooledDictionaryClient.Response response) {
+        try {
+            if (response.isSuccess()) {
+                if (!response.getMeanings().isEmpty()) {
+                    StringBuilder meaningsText = new StringBuilder("Success! Meanings:\n");
+                    for (String meaning : response.getMeanings()) {
+                        meaningsText.append("- ").append(meaning).append("\n");
                     }
-
-                    JsonObject responseObj = gson.fromJson(jsonResponse, JsonObject.class);
-                    String status = responseObj.get("status").getAsString();
-
-                    if ("success".equalsIgnoreCase(status)) {
-                        if (responseObj.has("meanings")) {
-                            JsonArray meaningsArray = responseObj.getAsJsonArray("meanings");
-                            StringBuilder meaningsText = new StringBuilder("Success! Meanings:\n");
-                            for (JsonElement meaning : meaningsArray) {
-                                meaningsText.append("- ").append(meaning.getAsString()).append("\n");
-                            }
-                            responseArea.setText(meaningsText.toString());
-                        } else {
-                            responseArea.setText("Success: " + responseObj.get("message").getAsString());
-                        }
-                    } else { // Error status
-                        responseArea.setText("Error: " + responseObj.get("message").getAsString());
+                    responseArea.setText(meaningsText.toString());
+                } else {
+                    responseArea.setText("Success: " + response.getMessage());
+                }
+            } else { // Error status
+                String text = "Error: " + response.getMessage();
+                if (!response.getSuggestions().isEmpty()) {
+                    StringBuilder suggestions = new StringBuilder(text).append("\nDid you mean:");
+                    for (String suggestion : response.getSuggestions()) {
+                        suggestions.append("\n- ").append(suggestion);
                     }
-                } catch (Exception e) {
-                    responseArea.setText("An application error occurred: " + e.getMessage());
+                    text = suggestions.toString();
                 }
+                responseArea.setText(text);
             }
-        };
-        worker.execute();
+        } catch (Exception e) {
+            responseArea.setText("An application error occurred: " + e.getMessage());
+        }
     }
 }
\ No newline at end of file
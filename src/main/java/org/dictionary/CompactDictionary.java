@@ -0,0 +1,629 @@
+package org.dictionary;
+
+// --- CompactDictionary.java ---
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Dictionary storage for {@code --storage=compact}: every word and meaning is
+ * kept as UTF-8 bytes in 1MB byte-array pages instead of as String, List and
+ * map node objects.
+ *
+ * <pre>
+ * meaning record : varint length, UTF-8 bytes
+ * entry record   : varint key length, key UTF-8, varint meaning count,
+ *                  then one varint meaning id per meaning
+ * </pre>
+ *
+ * Identical meanings are stored once: a meaning is looked up in an
+ * open-addressing table of meaning ids before it is appended, and entries
+ * refer to it by id. Words are found through a second open-addressing table
+ * of record addresses with linear probing, with the hash of each slot kept
+ * alongside so most probes never touch the pages. Nothing in the tables is a
+ * per-entry object.
+ *
+ * <p>Pages are append-only. A write appends a new entry record and repoints
+ * the word's slot; the old record becomes garbage, as does a meaning once no
+ * entry refers to it. When garbage outweighs live data the pages are rewritten
+ * with only the live records, under the write lock.
+ *
+ * <p>Reads decode a fresh immutable list on every call, trading some CPU and
+ * short-lived garbage for the smaller heap. Reads share a read lock and writes
+ * take the write lock. Iteration walks a frozen copy of the record addresses,
+ * so it never blocks writers and never sees a half-applied write.
+ */
+public class CompactDictionary extends AbstractMap<String, List<String>> {
+    private static final int PAGE_BYTES = 1 << 20;
+    private static final long EMPTY = -1L;
+    private static final float MAX_LOAD = 0.6f;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Store store = new Store(1024, 1024);
+    private volatile int size;
+
+    @Override
+    public List<String> get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        byte[] utf8 = ((String) key).getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int slot = store.findEntry(utf8, hash(utf8, 0, utf8.length));
+            return slot < 0 ? null : store.meaningsOf(store.entrySlots[slot]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof String)) {
+            return false;
+        }
+        byte[] utf8 = ((String) key).getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            return store.findEntry(utf8, hash(utf8, 0, utf8.length)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> put(String key, List<String> value) {
+        byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+        int h = hash(utf8, 0, utf8.length);
+        lock.writeLock().lock();
+        try {
+            List<String> previous = null;
+            int slot = store.findEntry(utf8, h);
+            long address = store.appendEntry(utf8, value);
+            if (slot >= 0) {
+                previous = store.meaningsOf(store.entrySlots[slot]);
+                store.release(store.entrySlots[slot]);
+                store.entrySlots[slot] = address;
+            } else {
+                store.insertEntry(~slot, address, h);
+                size++;
+                if (size > store.entrySlots.length * MAX_LOAD) {
+                    store.growEntries();
+                }
+            }
+            maybeCompact();
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        byte[] utf8 = ((String) key).getBytes(StandardCharsets.UTF_8);
+        int h = hash(utf8, 0, utf8.length);
+        lock.writeLock().lock();
+        try {
+            int slot = store.findEntry(utf8, h);
+            if (slot < 0) {
+                return null;
+            }
+            List<String> previous = store.meaningsOf(store.entrySlots[slot]);
+            store.release(store.entrySlots[slot]);
+            store.deleteEntry(slot);
+            size--;
+            maybeCompact();
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, List<String>>> entrySet() {
+        return snapshot().entrySet();
+    }
+
+    /**
+     * A read-only point-in-time copy that shares the pages, so it costs one
+     * long per word. Used to write snapshots without copying the dictionary
+     * onto the heap.
+     */
+    public Map<String, List<String>> snapshot() {
+        lock.readLock().lock();
+        try {
+            long[] addresses = new long[size];
+            int n = 0;
+            for (long address : store.entrySlots) {
+                if (address != EMPTY) {
+                    addresses[n++] = address;
+                }
+            }
+            // The arrays are captured now: a writer may replace them with grown
+            // copies, but never changes what they hold for existing records.
+            return new Snapshot(store.pages, store.meaningAddresses, addresses);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Bytes of live records in the pages; meant for diagnostics. */
+    public long liveBytes() {
+        lock.readLock().lock();
+        try {
+            return store.appendedBytes - store.deadBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void maybeCompact() {
+        if (store.deadBytes > 4L * PAGE_BYTES && store.deadBytes * 2 > store.appendedBytes) {
+            store = store.compacted(size);
+        }
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 1;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** Pages, tables and counters; replaced as a whole by compaction. */
+    private static final class Store {
+        byte[][] pages = new byte[][]{new byte[PAGE_BYTES]};
+        int pageCount = 1;
+        int pageUsed;
+        long appendedBytes;
+        long deadBytes;
+
+        long[] entrySlots;  // entry record address, or EMPTY
+        int[] entryHashes;
+
+        long[] meaningAddresses = new long[1024]; // by meaning id
+        int[] meaningHashes = new int[1024];
+        int[] meaningRefs = new int[1024];
+        int meaningCount;
+        int[] meaningSlots; // meaning id, or -1
+
+        // Scratch space for building a record before it is appended.
+        byte[] scratch = new byte[256];
+
+        Store(int entryCapacity, int meaningCapacity) {
+            entrySlots = new long[entryCapacity];
+            Arrays.fill(entrySlots, EMPTY);
+            entryHashes = new int[entryCapacity];
+            meaningSlots = new int[meaningCapacity];
+            Arrays.fill(meaningSlots, -1);
+        }
+
+        // --- entries ---
+
+        // The slot holding the key, or ~slot of the empty slot where it would go.
+        int findEntry(byte[] key, int h) {
+            int mask = entrySlots.length - 1;
+            int i = h & mask;
+            while (entrySlots[i] != EMPTY) {
+                if (entryHashes[i] == h && keyEquals(entrySlots[i], key)) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return ~i;
+        }
+
+        void insertEntry(int slot, long address, int h) {
+            entrySlots[slot] = address;
+            entryHashes[slot] = h;
+        }
+
+        // Backward-shift deletion, so linear probing needs no tombstones.
+        void deleteEntry(int slot) {
+            int mask = entrySlots.length - 1;
+            int hole = slot;
+            int j = slot;
+            while (true) {
+                j = (j + 1) & mask;
+                if (entrySlots[j] == EMPTY) {
+                    break;
+                }
+                int home = entryHashes[j] & mask;
+                boolean stays = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+                if (!stays) {
+                    entrySlots[hole] = entrySlots[j];
+                    entryHashes[hole] = entryHashes[j];
+                    hole = j;
+                }
+            }
+            entrySlots[hole] = EMPTY;
+        }
+
+        void growEntries() {
+            long[] oldSlots = entrySlots;
+            int[] oldHashes = entryHashes;
+            entrySlots = new long[oldSlots.length * 2];
+            Arrays.fill(entrySlots, EMPTY);
+            entryHashes = new int[oldSlots.length * 2];
+            int mask = entrySlots.length - 1;
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != EMPTY) {
+                    int j = oldHashes[i] & mask;
+                    while (entrySlots[j] != EMPTY) {
+                        j = (j + 1) & mask;
+                    }
+                    entrySlots[j] = oldSlots[i];
+                    entryHashes[j] = oldHashes[i];
+                }
+            }
+        }
+
+        long appendEntry(byte[] key, List<String> meanings) {
+            int[] ids = new int[meanings.size()];
+            for (int m = 0; m < ids.length; m++) {
+                ids[m] = internMeaning(meanings.get(m).getBytes(StandardCharsets.UTF_8));
+            }
+            int length = 0;
+            length = putVarInt(length, key.length);
+            length = putBytes(length, key, 0, key.length);
+            length = putVarInt(length, ids.length);
+            for (int id : ids) {
+                length = putVarInt(length, id);
+            }
+            return append(scratch, 0, length);
+        }
+
+        // Drops an entry record: it and any meaning no longer referred to become garbage.
+        void release(long address) {
+            byte[] page = pages[(int) (address >>> 32)];
+            int p = (int) address;
+            int start = p;
+            int keyLength = readVarInt(page, p);
+            p += varIntSize(keyLength) + keyLength;
+            int count = readVarInt(page, p);
+            p += varIntSize(count);
+            for (int m = 0; m < count; m++) {
+                int id = readVarInt(page, p);
+                p += varIntSize(id);
+                if (--meaningRefs[id] == 0) {
+                    deadBytes += recordLength(meaningAddresses[id]);
+                }
+            }
+            deadBytes += p - start;
+        }
+
+        boolean keyEquals(long address, byte[] key) {
+            byte[] page = pages[(int) (address >>> 32)];
+            int p = (int) address;
+            int length = readVarInt(page, p);
+            if (length != key.length) {
+                return false;
+            }
+            p += varIntSize(length);
+            for (int i = 0; i < length; i++) {
+                if (page[p + i] != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String keyOf(long address) {
+            return CompactDictionary.keyOf(pages, address);
+        }
+
+        List<String> meaningsOf(long address) {
+            return CompactDictionary.meaningsOf(pages, meaningAddresses, address);
+        }
+
+        // --- meanings ---
+
+        // The id of an identical meaning if one is stored, else a newly appended one; counts a reference.
+        int internMeaning(byte[] utf8) {
+            int h = hash(utf8, 0, utf8.length);
+            int mask = meaningSlots.length - 1;
+            int i = h & mask;
+            while (meaningSlots[i] != -1) {
+                int id = meaningSlots[i];
+                if (meaningHashes[id] == h && meaningEquals(meaningAddresses[id], utf8)) {
+                    if (meaningRefs[id]++ == 0) {
+                        deadBytes -= recordLength(meaningAddresses[id]); // garbage revived
+                    }
+                    return id;
+                }
+                i = (i + 1) & mask;
+            }
+            int id = meaningCount++;
+            if (id == meaningAddresses.length) {
+                meaningAddresses = Arrays.copyOf(meaningAddresses, id * 2);
+                meaningHashes = Arrays.copyOf(meaningHashes, id * 2);
+                meaningRefs = Arrays.copyOf(meaningRefs, id * 2);
+            }
+            // Built in its own buffer: the caller may be using scratch.
+            byte[] record = new byte[varIntSize(utf8.length) + utf8.length];
+            int p = writeVarInt(record, 0, utf8.length);
+            System.arraycopy(utf8, 0, record, p, utf8.length);
+            meaningAddresses[id] = append(record, 0, record.length);
+            meaningHashes[id] = h;
+            meaningRefs[id] = 1;
+            meaningSlots[i] = id;
+            if (meaningCount > meaningSlots.length * MAX_LOAD) {
+                growMeanings();
+            }
+            return id;
+        }
+
+        void growMeanings() {
+            meaningSlots = new int[meaningSlots.length * 2];
+            Arrays.fill(meaningSlots, -1);
+            int mask = meaningSlots.length - 1;
+            for (int id = 0; id < meaningCount; id++) {
+                int j = meaningHashes[id] & mask;
+                while (meaningSlots[j] != -1) {
+                    j = (j + 1) & mask;
+                }
+                meaningSlots[j] = id;
+            }
+        }
+
+        boolean meaningEquals(long address, byte[] utf8) {
+            byte[] page = pages[(int) (address >>> 32)];
+            int p = (int) address;
+            int length = readVarInt(page, p);
+            if (length != utf8.length) {
+                return false;
+            }
+            p += varIntSize(length);
+            for (int i = 0; i < length; i++) {
+                if (page[p + i] != utf8[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int recordLength(long address) {
+            int length = readVarInt(pages[(int) (address >>> 32)], (int) address);
+            return varIntSize(length) + length;
+        }
+
+        // --- pages ---
+
+        long append(byte[] bytes, int offset, int length) {
+            if (pageUsed + length > pages[pageCount - 1].length) {
+                if (pageCount == pages.length) {
+                    pages = Arrays.copyOf(pages, pageCount * 2);
+                }
+                pages[pageCount++] = new byte[Math.max(PAGE_BYTES, length)];
+                pageUsed = 0;
+            }
+            System.arraycopy(bytes, offset, pages[pageCount - 1], pageUsed, length);
+            long address = ((long) (pageCount - 1) << 32) | pageUsed;
+            pageUsed += length;
+            appendedBytes += length;
+            return address;
+        }
+
+        // A copy holding only the live records, with meanings renumbered.
+        Store compacted(int entries) {
+            int entryCapacity = 1024;
+            while (entries > entryCapacity * MAX_LOAD) {
+                entryCapacity <<= 1;
+            }
+            Store fresh = new Store(entryCapacity, meaningSlots.length);
+            int[] newIds = new int[meaningCount];
+            Arrays.fill(newIds, -1);
+            for (int i = 0; i < entrySlots.length; i++) {
+                long address = entrySlots[i];
+                if (address == EMPTY) {
+                    continue;
+                }
+                byte[] page = pages[(int) (address >>> 32)];
+                int p = (int) address;
+                int keyLength = readVarInt(page, p);
+                int length = fresh.putVarInt(0, keyLength);
+                p += varIntSize(keyLength);
+                length = fresh.putBytes(length, page, p, keyLength);
+                p += keyLength;
+                int count = readVarInt(page, p);
+                p += varIntSize(count);
+                length = fresh.putVarInt(length, count);
+                for (int m = 0; m < count; m++) {
+                    int id = readVarInt(page, p);
+                    p += varIntSize(id);
+                    if (newIds[id] < 0) {
+                        newIds[id] = fresh.copyMeaning(this, id);
+                    } else {
+                        fresh.meaningRefs[newIds[id]]++;
+                    }
+                    length = fresh.putVarInt(length, newIds[id]);
+                }
+                fresh.insertEntry(~fresh.findFreeSlot(entryHashes[i]), fresh.append(fresh.scratch, 0, length),
+                        entryHashes[i]);
+            }
+            return fresh;
+        }
+
+        private int findFreeSlot(int h) {
+            int mask = entrySlots.length - 1;
+            int i = h & mask;
+            while (entrySlots[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            return ~i;
+        }
+
+        private int copyMeaning(Store from, int oldId) {
+            long address = from.meaningAddresses[oldId];
+            int length = from.recordLength(address);
+            int id = meaningCount++;
+            if (id == meaningAddresses.length) {
+                meaningAddresses = Arrays.copyOf(meaningAddresses, id * 2);
+                meaningHashes = Arrays.copyOf(meaningHashes, id * 2);
+                meaningRefs = Arrays.copyOf(meaningRefs, id * 2);
+            }
+            meaningAddresses[id] = append(from.pages[(int) (address >>> 32)], (int) address, length);
+            meaningHashes[id] = from.meaningHashes[oldId];
+            meaningRefs[id] = 1;
+            int mask = meaningSlots.length - 1;
+            int j = meaningHashes[id] & mask;
+            while (meaningSlots[j] != -1) {
+                j = (j + 1) & mask;
+            }
+            meaningSlots[j] = id;
+            if (meaningCount > meaningSlots.length * MAX_LOAD) {
+                growMeanings();
+            }
+            return id;
+        }
+
+        // --- scratch encoding ---
+
+        private int putVarInt(int position, int value) {
+            ensureScratch(position + 5);
+            return writeVarInt(scratch, position, value);
+        }
+
+        private int putBytes(int position, byte[] bytes, int offset, int length) {
+            ensureScratch(position + length);
+            System.arraycopy(bytes, offset, scratch, position, length);
+            return position + length;
+        }
+
+        private void ensureScratch(int capacity) {
+            if (capacity > scratch.length) {
+                scratch = Arrays.copyOf(scratch, Math.max(capacity, scratch.length * 2));
+            }
+        }
+    }
+
+    /** Read-only view over a frozen list of record addresses. */
+    private static final class Snapshot extends AbstractMap<String, List<String>> {
+        private final byte[][] pages;
+        private final long[] meaningAddresses;
+        private final long[] addresses;
+
+        Snapshot(byte[][] pages, long[] meaningAddresses, long[] addresses) {
+            this.pages = pages;
+            this.meaningAddresses = meaningAddresses;
+            this.addresses = addresses;
+        }
+
+        @Override
+        public int size() {
+            return addresses.length;
+        }
+
+        @Override
+        public Set<Entry<String, List<String>>> entrySet() {
+            return new AbstractSet<Entry<String, List<String>>>() {
+                @Override
+                public int size() {
+                    return addresses.length;
+                }
+
+                @Override
+                public Iterator<Entry<String, List<String>>> iterator() {
+                    return new Iterator<Entry<String, List<String>>>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < addresses.length;
+                        }
+
+                        @Override
+                        public Entry<String, List<String>> next() {
+                            if (next >= addresses.length) {
+                                throw new NoSuchElementException();
+                            }
+                            long address = addresses[next++];
+                            return new SimpleImmutableEntry<>(keyOf(pages, address),
+                                    meaningsOf(pages, meaningAddresses, address));
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    // --- record decoding ---
+
+    private static String keyOf(byte[][] pages, long address) {
+        byte[] page = pages[(int) (address >>> 32)];
+        int p = (int) address;
+        int length = readVarInt(page, p);
+        return new String(page, p + varIntSize(length), length, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> meaningsOf(byte[][] pages, long[] meaningAddresses, long address) {
+        byte[] page = pages[(int) (address >>> 32)];
+        int p = (int) address;
+        int keyLength = readVarInt(page, p);
+        p += varIntSize(keyLength) + keyLength;
+        int count = readVarInt(page, p);
+        p += varIntSize(count);
+        List<String> meanings = new ArrayList<>(count);
+        for (int m = 0; m < count; m++) {
+            int id = readVarInt(page, p);
+            p += varIntSize(id);
+            long meaning = meaningAddresses[id];
+            byte[] meaningPage = pages[(int) (meaning >>> 32)];
+            int q = (int) meaning;
+            int length = readVarInt(meaningPage, q);
+            meanings.add(new String(meaningPage, q + varIntSize(length), length, StandardCharsets.UTF_8));
+        }
+        return Collections.unmodifiableList(meanings);
+    }
+
+    // --- varints: 7 bits per byte, low bits first ---
+
+    private static int writeVarInt(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int readVarInt(byte[] buffer, int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[position++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,131 @@
+package org.dictionary;
+
+// --- ConnectionExecutor.java ---
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs {@link ClientHandler}s for the blocking engine, selected with
+ * {@code --executor}:
+ * <ul>
+ *   <li>{@code thread} - a new platform thread per connection (the original behaviour)</li>
+ *   <li>{@code virtual} - a virtual thread per connection; needs a Java 21+ runtime</li>
+ *   <li>{@code bounded} - at most {@code --max-connections} platform threads plus a
+ *       queue of {@code --connection-queue} waiting connections; anything beyond
+ *       that is rejected straight away</li>
+ * </ul>
+ */
+public class ConnectionExecutor {
+
+    public enum Mode { THREAD, VIRTUAL, BOUNDED }
+
+    private final Mode mode;
+    private final ExecutorService executor; // null in THREAD mode
+    private final ThreadPoolExecutor pool;  // set in BOUNDED mode only
+    private final Runnable onChange;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicInteger threadId = new AtomicInteger();
+
+    /**
+     * @param onChange called whenever the active, queued or rejected counts change
+     */
+    public ConnectionExecutor(ServerOptions options, Runnable onChange) {
+        this.mode = options.getEnum("executor", Mode.class, Mode.THREAD);
+        this.onChange = onChange;
+        switch (mode) {
+            case VIRTUAL:
+                this.executor = newVirtualThreadExecutor();
+                this.pool = null;
+                break;
+            case BOUNDED:
+                int maxConnections = options.getInt("max-connections", 200);
+                int queueSize = options.getInt("connection-queue", 50);
+                this.pool = new ThreadPoolExecutor(maxConnections, maxConnections, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(Math.max(1, queueSize)), r -> {
+                            Thread t = new Thread(r, "client-handler-" + threadId.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }, new ThreadPoolExecutor.AbortPolicy());
+                this.pool.allowCoreThreadTimeOut(true);
+                this.executor = pool;
+                break;
+            default:
+                this.executor = null;
+                this.pool = null;
+        }
+    }
+
+    /**
+     * Starts or queues the handler. Returns false if the executor is saturated
+     * and the connection should be turned away.
+     */
+    public boolean submit(Runnable handler) {
+        Runnable tracked = () -> {
+            active.incrementAndGet();
+            onChange.run();
+            try {
+                handler.run();
+            } finally {
+                active.decrementAndGet();
+                onChange.run();
+            }
+        };
+        try {
+            if (executor == null) {
+                new Thread(tracked).start();
+            } else {
+                executor.execute(tracked);
+            }
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            onChange.run();
+            return false;
+        }
+        onChange.run();
+        return true;
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public int getQueued() {
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public String describe() {
+        if (mode == Mode.BOUNDED) {
+            return "bounded executor, " + pool.getMaximumPoolSize() + " threads, queue of "
+                    + pool.getQueue().remainingCapacity();
+        }
+        return mode == Mode.VIRTUAL ? "virtual thread per connection" : "thread per connection";
+    }
+
+    /** Stops accepting work; handlers already running or queued still finish. */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    // The project targets Java 11, so the Java 21 factory is looked up at runtime.
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("--executor=virtual needs a Java 21 or newer runtime (running "
+                    + System.getProperty("java.version") + ")");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.dictionary;
+
+// --- DictionaryConverter.java ---
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts a dictionary between the JSON format and the binary {@code .dict}
+ * format. The direction is picked from the file extensions, e.g.
+ * {@code java org.dictionary.DictionaryConverter dictionary.json dictionary.dict}.
+ */
+public class DictionaryConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: java DictionaryConverter <input-file> <output-file>");
+            System.out.println("Files ending in " + BinaryDictionaryFile.EXTENSION + " use the binary format, anything else JSON.");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+
+        long start = System.nanoTime();
+        Map<String, List<String>> entries = new HashMap<>();
+        if (BinaryDictionaryFile.isBinaryPath(args[0])) {
+            BinaryDictionaryFile.readInto(input, entries);
+        } else {
+            DictionaryLoader.load(input, entries, 1);
+        }
+
+        if (BinaryDictionaryFile.isBinaryPath(args[1])) {
+            BinaryDictionaryFile.write(output, entries);
+        } else {
+            JsonDictionaryFile.write(output, entries);
+        }
+        System.out.printf("Converted %d entries from %s to %s in %.1f ms.%n",
+                entries.size(), input, output, (System.nanoTime() - start) / 1e6);
+    }
+}
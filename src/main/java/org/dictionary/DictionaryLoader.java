@@ -0,0 +1,237 @@
+package org.dictionary;
+
+// --- DictionaryLoader.java ---
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams a JSON dictionary file straight into the live map with a
+ * {@link JsonReader}, so no intermediate {@code Map} is ever built.
+ *
+ * <p>With more than one thread the file is memory-mapped, split into chunks at
+ * top-level entry boundaries (found by a cheap byte scan that only tracks string
+ * and nesting state), and each chunk is parsed on its own thread.
+ *
+ * <p>A word whose meanings are null or not an array is skipped and counted
+ * rather than failing the load, and null meanings inside an array are dropped.
+ */
+public final class DictionaryLoader {
+    private static final int READ_BUFFER_BYTES = 256 * 1024;
+    // Below this size splitting the file costs more than it saves.
+    private static final long MIN_PARALLEL_BYTES = 4L * 1024 * 1024;
+
+    private DictionaryLoader() {
+    }
+
+    /** How many entries a load stored, and how many it skipped. */
+    public static final class Result {
+        private final int loaded;
+        private final int skipped;
+
+        Result(int loaded, int skipped) {
+            this.loaded = loaded;
+            this.skipped = skipped;
+        }
+
+        public int getLoaded() {
+            return loaded;
+        }
+
+        /** Entries whose meanings were null or not an array. */
+        public int getSkipped() {
+            return skipped;
+        }
+    }
+
+    /**
+     * Loads every entry of {@code path} into {@code target}, which must be safe
+     * for concurrent puts when {@code threads > 1}.
+     */
+    public static Result load(Path path, Map<String, List<String>> target, int threads) throws IOException {
+        AtomicInteger skipped = new AtomicInteger();
+        int loaded;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (threads > 1 && size >= MIN_PARALLEL_BYTES && size <= Integer.MAX_VALUE) {
+                loaded = loadParallel(channel, size, target, threads, skipped);
+            } else {
+                Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), READ_BUFFER_BYTES);
+                loaded = readObject(new JsonReader(reader), target, skipped);
+            }
+        }
+        return new Result(loaded, skipped.get());
+    }
+
+    private static int loadParallel(FileChannel channel, long size, Map<String, List<String>> target,
+                                    int threads, AtomicInteger skipped) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        List<int[]> chunks = splitTopLevel(mapped, threads);
+        if (chunks.isEmpty()) {
+            return 0;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, chunks.size()));
+        AtomicInteger total = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int[] chunk : chunks) {
+                ByteBuffer slice = mapped.duplicate();
+                slice.position(chunk[0]).limit(chunk[1]);
+                futures.add(pool.submit(() -> {
+                    // Each chunk is a run of "key":[...] pairs; wrapping it in braces
+                    // makes it a valid object on its own.
+                    InputStream in = new SequenceInputStream(new SequenceInputStream(
+                            new ByteArrayInputStream(new byte[]{'{'}), new ByteBufferInputStream(slice.slice())),
+                            new ByteArrayInputStream(new byte[]{'}'}));
+                    total.addAndGet(readObject(new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8)),
+                            target, skipped));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while loading dictionary", e);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return total.get();
+    }
+
+    private static int readObject(JsonReader json, Map<String, List<String>> target,
+                                  AtomicInteger skipped) throws IOException {
+        try {
+            if (json.peek() == JsonToken.NULL) {
+                return 0;
+            }
+        } catch (EOFException e) {
+            return 0; // empty file
+        }
+
+        int count = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            String word = json.nextName();
+            if (json.peek() != JsonToken.BEGIN_ARRAY) {
+                json.skipValue();
+                skipped.incrementAndGet();
+                continue;
+            }
+            List<String> meanings = new ArrayList<>();
+            json.beginArray();
+            while (json.hasNext()) {
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                } else {
+                    meanings.add(json.nextString());
+                }
+            }
+            json.endArray();
+            target.put(word, Collections.unmodifiableList(meanings));
+            count++;
+        }
+        json.endObject();
+        return count;
+    }
+
+    /**
+     * Returns up to {@code parts} [start, end) byte ranges covering the members of
+     * the top-level object, each cut just before a separating comma.
+     */
+    private static List<int[]> splitTopLevel(ByteBuffer data, int parts) throws IOException {
+        int limit = data.limit();
+        int open = 0;
+        while (open < limit && data.get(open) != '{') {
+            open++;
+        }
+        if (open == limit) {
+            return new ArrayList<>();
+        }
+
+        List<int[]> chunks = new ArrayList<>();
+        int chunkStart = open + 1;
+        long chunkTarget = Math.max(1, (limit - chunkStart) / parts);
+        int depth = 1;
+        boolean inString = false;
+        for (int i = chunkStart; i < limit; i++) {
+            byte b = data.get(i);
+            if (inString) {
+                if (b == '\\') {
+                    i++;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+                if (depth == 0) {
+                    chunks.add(new int[]{chunkStart, i});
+                    return chunks;
+                }
+            } else if (b == ',' && depth == 1 && i - chunkStart >= chunkTarget) {
+                chunks.add(new int[]{chunkStart, i});
+                chunkStart = i + 1;
+            }
+        }
+        throw new IOException("Dictionary file ends before the top-level object is closed");
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -2,47 +2,273 @@ package org.dictionary;
 
 // --- DictionaryManager.java ---
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 
 public class DictionaryManager {
+
+    // How writes are made durable. SNAPSHOT rewrites the whole file on every
+    // write; JOURNAL appends one record per write and compacts in the background;
+    // WRITE_BEHIND only marks the dictionary dirty and a background thread
+    // writes coalesced snapshots.
+    public enum PersistenceMode { SNAPSHOT, JOURNAL, WRITE_BEHIND }
+
+    // Where entries live. HEAP keeps everything in a ConcurrentHashMap; MAPPED
+    // serves reads from a memory-mapped binary file with an in-memory overlay;
+    // COMPACT keeps UTF-8 bytes in paged arenas with deduplicated meanings.
+    public enum StorageMode { HEAP, MAPPED, COMPACT }
+
+    // How writers are isolated. GLOBAL is one lock over the whole dictionary.
+    // STRIPED locks only the stripe a word hashes to, so writes to different
+    // words run in parallel. Single-word queries never lock in either mode.
+    public enum LockingMode { GLOBAL, STRIPED }
+
+    // Mutations per journal record when replaceAll logs a whole dictionary.
+    private static final int REPLACE_JOURNAL_CHUNK = 10000;
+
+    // Every value is an immutable meanings list. Writers publish a new list
+    // instead of modifying the old one, so a reader needs no lock and can keep
+    // or serialize the list it got back without it changing underneath.
     private final Map<String, List<String>> dictionary;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Writers take the write side; multiQuery takes the read side, so several
+    // of them can hold a consistent view of their words at once.
+    private final ReentrantReadWriteLock globalLock = new ReentrantReadWriteLock();
+    private final Lock globalWriteLock = globalLock.writeLock();
+    private final LockingMode lockingMode;
+    private final ReentrantReadWriteLock[] stripes;
+    private final Object saveMonitor = new Object();
     private final String filePath;
     private final Gson gson = new Gson();
+    private final PersistenceMode persistenceMode;
+    private final MutationJournal journal;
+    private final WriteBehindPersister writeBehind;
+    private final MappedDictionary mappedDictionary;
+    private final CompactDictionary compactDictionary;
+    private final boolean binaryFile;
+    private final int loadThreads;
+    private final List<Consumer<Mutation>> mutationListeners = new CopyOnWriteArrayList<>();
+    private final QueryResponseCache queryCache;
+    private final InvalidationTracker invalidationTracker;
+    private final PrefixIndex prefixIndex;
+    private final SuggestionIndex suggestionIndex;
+    private final MeaningIndex meaningIndex;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private String loadSummary = "Dictionary not loaded.";
+    private volatile ReplicationLeader replicationLeader;
+    private volatile ReplicationFollower replicationFollower;
 
     public DictionaryManager(String filePath) {
+        this(filePath, new ServerOptions());
+    }
+
+    public DictionaryManager(String filePath, ServerOptions options) {
         this.filePath = filePath;
-        this.dictionary = new ConcurrentHashMap<>();
+        this.binaryFile = BinaryDictionaryFile.isBinaryPath(filePath);
+        StorageMode storageMode = options.getEnum("storage", StorageMode.class, StorageMode.HEAP);
+        // The mapped store keeps writes in its overlay until a background merge
+        // rewrites the file, so by default it journals them instead of snapshotting.
+        this.persistenceMode = options.getEnum("persistence", PersistenceMode.class,
+                storageMode == StorageMode.MAPPED ? PersistenceMode.JOURNAL : PersistenceMode.SNAPSHOT);
+        if (storageMode == StorageMode.MAPPED) {
+            if (!binaryFile) {
+                throw new IllegalArgumentException("--storage=mapped needs a " + BinaryDictionaryFile.EXTENSION
+                        + " dictionary file; convert the JSON file with DictionaryConverter first.");
+            }
+            if (persistenceMode == PersistenceMode.SNAPSHOT) {
+                throw new IllegalArgumentException("--storage=mapped cannot use --persistence=snapshot, which would"
+                        + " rewrite the whole " + BinaryDictionaryFile.EXTENSION + " file on every write;"
+                        + " use --persistence=journal (the default with mapped storage) or write-behind.");
+            }
+            this.mappedDictionary = openMapped(options.getInt("mapped-merge-entries", 10000));
+            this.compactDictionary = null;
+            this.dictionary = mappedDictionary;
+        } else if (storageMode == StorageMode.COMPACT) {
+            this.mappedDictionary = null;
+            this.compactDictionary = new CompactDictionary();
+            this.dictionary = compactDictionary;
+        } else {
+            this.mappedDictionary = null;
+            this.compactDictionary = null;
+            this.dictionary = new ConcurrentHashMap<>();
+        }
+        this.loadThreads = options.getInt("load-threads", 1);
+        this.lockingMode = options.getEnum("locking", LockingMode.class, LockingMode.GLOBAL);
+        if (lockingMode == LockingMode.STRIPED) {
+            int stripeCount = 1;
+            while (stripeCount < options.getInt("lock-stripes", 64)) {
+                stripeCount <<= 1;
+            }
+            this.stripes = new ReentrantReadWriteLock[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                this.stripes[i] = new ReentrantReadWriteLock();
+            }
+        } else {
+            this.stripes = null;
+        }
+        if (persistenceMode == PersistenceMode.JOURNAL) {
+            this.journal = new MutationJournal(filePath,
+                    options.getEnum("fsync", MutationJournal.FsyncPolicy.class, MutationJournal.FsyncPolicy.INTERVAL),
+                    options.getLong("fsync-interval-ms", 1000),
+                    options.getLong("journal-compact-bytes", 64L * 1024 * 1024),
+                    this::writeSnapshotCopy);
+        } else {
+            this.journal = null;
+        }
         loadDictionaryFromFile();
+
+        int queryCacheEntries = options.getInt("query-cache-entries", 10000);
+        if (queryCacheEntries > 0) {
+            this.queryCache = new QueryResponseCache(queryCacheEntries);
+            addMutationListener(mutation -> queryCache.invalidate(mutation.getWord()));
+        } else {
+            this.queryCache = null;
+        }
+        if (options.getBoolean("client-tracking", true)) {
+            this.invalidationTracker = new InvalidationTracker(options.getInt("tracking-max-words", 100000));
+            addMutationListener(invalidationTracker::apply);
+        } else {
+            this.invalidationTracker = null;
+        }
+        // Each index copies every word (and the meaning index every term) onto
+        // the heap, which is what --storage=mapped exists to avoid, so with
+        // mapped storage they are off unless asked for.
+        boolean indexByDefault = storageMode != StorageMode.MAPPED;
+        if (options.getBoolean("prefix-index", indexByDefault)) {
+            long start = System.nanoTime();
+            this.prefixIndex = new PrefixIndex(dictionary.keySet());
+            addMutationListener(prefixIndex::apply);
+            loadSummary += String.format(" Indexed %d words for prefix search in %.1f ms.",
+                    prefixIndex.size(), (System.nanoTime() - start) / 1e6);
+        } else {
+            this.prefixIndex = null;
+        }
+        if (options.getBoolean("suggest-index", indexByDefault)) {
+            long start = System.nanoTime();
+            this.suggestionIndex = new SuggestionIndex(dictionary.keySet());
+            addMutationListener(suggestionIndex::apply);
+            loadSummary += String.format(" Indexed %d words for suggestions in %.1f ms.",
+                    suggestionIndex.size(), (System.nanoTime() - start) / 1e6);
+        } else {
+            this.suggestionIndex = null;
+        }
+        if (options.getBoolean("meaning-index", indexByDefault)) {
+            long start = System.nanoTime();
+            this.meaningIndex = new MeaningIndex(dictionary);
+            addMutationListener(meaningIndex::apply);
+            loadSummary += String.format(" Indexed meanings of %d words in %.1f ms.",
+                    meaningIndex.size(), (System.nanoTime() - start) / 1e6);
+        } else {
+            this.meaningIndex = null;
+        }
+        if (persistenceMode == PersistenceMode.WRITE_BEHIND) {
+            this.writeBehind = new WriteBehindPersister(this::writeSnapshotCopy,
+                    options.getLong("write-behind-staleness-ms", 1000));
+        } else {
+            this.writeBehind = null;
+        }
+    }
+
+    private MappedDictionary openMapped(int mergeThreshold) {
+        long start = System.nanoTime();
+        try {
+            MappedDictionary mapped = MappedDictionary.open(Paths.get(filePath), mergeThreshold);
+            loadSummary = String.format("Mapped %d entries in %.1f ms.", mapped.size(), (System.nanoTime() - start) / 1e6);
+            return mapped;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map dictionary file: " + e.getMessage(), e);
+        }
     }
 
     private void loadDictionaryFromFile() {
-        lock.writeLock().lock();
-        try (FileReader reader = new FileReader(filePath)) {
-            Type type = new TypeToken<Map<String, List<String>>>(){}.getType();
-            Map<String, List<String>> loadedMap = gson.fromJson(reader, type);
-            if (loadedMap != null) {
-                dictionary.putAll(loadedMap);
+        globalWriteLock.lock();
+        try {
+            // Entries are streamed straight into the live map; no intermediate copy is built.
+            // A mapped dictionary needs no loading at all.
+            long start = System.nanoTime();
+            try {
+                int loaded;
+                int skipped = 0;
+                if (mappedDictionary != null) {
+                    loaded = -1;
+                } else if (binaryFile) {
+                    loaded = BinaryDictionaryFile.readInto(Paths.get(filePath), dictionary);
+                } else {
+                    DictionaryLoader.Result result = DictionaryLoader.load(Paths.get(filePath), dictionary, loadThreads);
+                    loaded = result.getLoaded();
+                    skipped = result.getSkipped();
+                }
+                long elapsedNanos = Math.max(1, System.nanoTime() - start);
+                if (loaded >= 0) {
+                    loadSummary = String.format("Loaded %d entries in %.1f ms (%.0f entries/s, %d thread%s).",
+                            loaded, elapsedNanos / 1e6, loaded * 1e9 / elapsedNanos,
+                            loadThreads, loadThreads == 1 ? "" : "s");
+                }
+                if (skipped > 0) {
+                    loadSummary += String.format(" Skipped %d entries whose meanings were null or not a list.", skipped);
+                }
+            } catch (NoSuchFileException e) {
+                loadSummary = "Dictionary file not found or is empty. Starting with a new dictionary.";
+                System.out.println(loadSummary);
+            } catch (IOException e) {
+                // Refuse to start on a corrupt file rather than overwrite it with a partial dictionary.
+                throw new IllegalStateException("Could not read dictionary file: " + e.getMessage(), e);
+            }
+
+            // Journal records are newer than the snapshot, so they are applied on top of it.
+            if (journal != null) {
+                try {
+                    int replayed = journal.recover(dictionary);
+                    if (replayed > 0) {
+                        System.out.println("Replayed " + replayed + " journal records.");
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not open dictionary journal: " + e.getMessage(), e);
+                }
             }
-        } catch (IOException e) {
-            System.out.println("Dictionary file not found or is empty. Starting with a new dictionary.");
         } finally {
-            lock.writeLock().unlock();
+            globalWriteLock.unlock();
         }
     }
 
     private void saveDictionaryToFile() {
         // This method should be called by any method that modifies the dictionary.
+        // With striped locking several writers can get here at once.
+        synchronized (saveMonitor) {
+            ServerEvents.Save event = new ServerEvents.Save();
+            event.begin();
+            long start = System.nanoTime();
+            writeDictionaryFile();
+            recordSave(event, "snapshot", start);
+        }
+    }
+
+    // Never reached with --storage=mapped, which does not allow snapshot persistence.
+    private void writeDictionaryFile() {
+        if (binaryFile) {
+            try {
+                BinaryDictionaryFile.write(Paths.get(filePath), dictionary);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
         try (FileWriter writer = new FileWriter(filePath)) {
             gson.toJson(dictionary, writer);
         } catch (IOException e) {
@@ -50,23 +276,560 @@ public class DictionaryManager {
         }
     }
 
+    /**
+     * Applies a write to the map, tells the mutation listeners and makes it
+     * durable according to the persistence mode. In journal mode the record is
+     * appended first and the write is applied only if that succeeded, as in
+     * applyLocked, so a change a restart would lose is never acknowledged.
+     * Called with the word's write lock held, so journal records for a word are
+     * appended in the order the changes were made.
+     *
+     * @return false if the journal could not record the write, in which case
+     *         nothing was applied
+     */
+    private boolean persist(Mutation mutation) {
+        if (persistenceMode == PersistenceMode.JOURNAL) {
+            try {
+                journal.append(mutation);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+        try {
+            mutation.applyTo(dictionary);
+            notifyListeners(mutation);
+        } finally {
+            if (persistenceMode == PersistenceMode.JOURNAL) {
+                releaseJournalRecords(1);
+            }
+        }
+        if (persistenceMode == PersistenceMode.WRITE_BEHIND) {
+            writeBehind.markDirty();
+        } else if (persistenceMode == PersistenceMode.SNAPSHOT) {
+            saveDictionaryToFile();
+        }
+        return true;
+    }
+
+    // Compaction waits for logged records to be in the map, or its snapshot
+    // could miss them and delete their journal segment. The records are
+    // already durable, so a compaction that fails to start here is only
+    // reported; the next append tries again.
+    private void releaseJournalRecords(int count) {
+        try {
+            journal.recordsApplied(count);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Copies the dictionary, then writes it to disk without holding any lock.
+    private void writeSnapshotCopy() {
+        ServerEvents.Save event = new ServerEvents.Save();
+        event.begin();
+        long start = System.nanoTime();
+        if (mappedDictionary != null) {
+            // The mapped store freezes its overlay itself, so no copy is needed.
+            try {
+                mappedDictionary.merge();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not merge mapped dictionary: " + e.getMessage(), e);
+            }
+            recordSave(event, "background", start);
+            return;
+        }
+        try {
+            writeSnapshot(snapshot());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write dictionary snapshot: " + e.getMessage(), e);
+        }
+        recordSave(event, "background", start);
+    }
+
+    /**
+     * A point-in-time copy of the dictionary, taken without blocking writers.
+     * Published lists never change, so a shallow copy is safe; the compact
+     * store's own snapshot shares its pages instead of decoding every entry up
+     * front. A write that lands while the copy is taken may or may not be in it.
+     */
+    public Map<String, List<String>> snapshot() {
+        return compactDictionary != null ? compactDictionary.snapshot() : new HashMap<>(dictionary);
+    }
+
+    private void recordSave(ServerEvents.Save event, String kind, long start) {
+        long bytes = fileSize();
+        metrics.recordSave(System.nanoTime() - start, bytes);
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    // Size of the dictionary file, or 0 if it cannot be read.
+    private long fileSize() {
+        try {
+            return Files.size(Paths.get(filePath));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Writes a point-in-time copy in the dictionary's file format, atomically.
+    private void writeSnapshot(Map<String, List<String>> snapshot) throws IOException {
+        if (binaryFile) {
+            BinaryDictionaryFile.write(Paths.get(filePath), snapshot);
+        } else {
+            JsonDictionaryFile.write(Paths.get(filePath), snapshot);
+        }
+    }
+
+    /**
+     * Registers a callback for every successful write. It runs on the writing
+     * thread after the change is visible to queries, while the word's lock is
+     * still held, so it must be quick and must not call back into the manager.
+     */
+    public void addMutationListener(Consumer<Mutation> listener) {
+        mutationListeners.add(listener);
+    }
+
+    /** The shared cache of serialized query responses, or null if --query-cache-entries=0. */
+    public QueryResponseCache getQueryCache() {
+        return queryCache;
+    }
+
+    /** Pushes invalidations to connections that sent the track command, or null if --client-tracking=false. */
+    public InvalidationTracker getInvalidationTracker() {
+        return invalidationTracker;
+    }
+
+    /** The sorted word index behind the prefix command, or null if it is disabled. */
+    public PrefixIndex getPrefixIndex() {
+        return prefixIndex;
+    }
+
+    /** The edit-distance index behind the suggest command, or null if it is disabled. */
+    public SuggestionIndex getSuggestionIndex() {
+        return suggestionIndex;
+    }
+
+    /** The inverted index behind the searchMeanings command, or null if it is disabled. */
+    public MeaningIndex getMeaningIndex() {
+        return meaningIndex;
+    }
+
+    /** Request, lock and persistence metrics; the request handlers record into it too. */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** The replication leader streaming this dictionary's writes, or null if --replication-port is not set. */
+    public ReplicationLeader getReplicationLeader() {
+        return replicationLeader;
+    }
+
+    void setReplicationLeader(ReplicationLeader leader) {
+        this.replicationLeader = leader;
+    }
+
+    /**
+     * The follower keeping this dictionary in step with a leader, or null if
+     * --replicate-from is not set. While it is set, clients may not write.
+     */
+    public ReplicationFollower getReplicationFollower() {
+        return replicationFollower;
+    }
+
+    void setReplicationFollower(ReplicationFollower follower) {
+        this.replicationFollower = follower;
+    }
+
+    /** Number of words in the dictionary. */
+    public int size() {
+        return dictionary.size();
+    }
+
+    private void notifyListeners(Mutation mutation) {
+        for (Consumer<Mutation> listener : mutationListeners) {
+            listener.accept(mutation);
+        }
+    }
+
+    /** Describes how long the initial load took, for the server log. */
+    public String getLoadSummary() {
+        return loadSummary;
+    }
+
+    /** Forces any buffered persistence state to disk. */
+    public void flush() {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+        if (journal != null) {
+            try {
+                journal.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /** Flushes and releases the persistence resources. The manager must not be used afterwards. */
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+        if (mappedDictionary != null) {
+            try {
+                mappedDictionary.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // GLOBAL uses the single write lock; STRIPED the lock of the word's stripe.
+    private Lock writeLockFor(String word) {
+        if (stripes == null) {
+            return globalWriteLock;
+        }
+        return stripes[stripeIndex(word)].writeLock();
+    }
+
+    private int stripeIndex(String word) {
+        int h = word.hashCode();
+        h ^= (h >>> 16);
+        return h & (stripes.length - 1);
+    }
+
+    // The distinct write locks covering all the words, in stripe order. Taking
+    // them in that order means two multi-word operations can never deadlock.
+    private List<Lock> writeLocksFor(Collection<String> words) {
+        return locksFor(words, true);
+    }
+
+    // The read locks matching writeLocksFor, in the same order.
+    private List<Lock> readLocksFor(Collection<String> words) {
+        return locksFor(words, false);
+    }
+
+    private List<Lock> locksFor(Collection<String> words, boolean write) {
+        if (stripes == null) {
+            return Collections.singletonList(write ? globalWriteLock : globalLock.readLock());
+        }
+        TreeMap<Integer, Lock> locks = new TreeMap<>();
+        for (String word : words) {
+            int index = stripeIndex(word);
+            locks.putIfAbsent(index, write ? stripes[index].writeLock() : stripes[index].readLock());
+        }
+        return new ArrayList<>(locks.values());
+    }
+
+    // Takes the lock and returns the time it was acquired, for unlock(). Only
+    // a lock that is already taken has its wait timed, so a free one costs a
+    // single clock read.
+    private long lock(Lock lock) {
+        if (lock.tryLock()) {
+            return System.nanoTime();
+        }
+        ServerEvents.LockWait event = new ServerEvents.LockWait();
+        event.begin();
+        long start = System.nanoTime();
+        lock.lock();
+        long acquired = System.nanoTime();
+        metrics.recordLockWait(acquired - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.lock = lockName(lock);
+            event.commit();
+        }
+        return acquired;
+    }
+
+    private void unlock(Lock lock, long acquired) {
+        metrics.recordLockHold(System.nanoTime() - acquired);
+        lock.unlock();
+    }
+
+    private long lockAll(List<Lock> locks) {
+        ServerEvents.LockWait event = new ServerEvents.LockWait();
+        event.begin();
+        long start = System.nanoTime();
+        boolean waited = false;
+        for (Lock lock : locks) {
+            if (!lock.tryLock()) {
+                lock.lock();
+                waited = true;
+            }
+        }
+        long acquired = System.nanoTime();
+        if (waited) {
+            metrics.recordLockWait(acquired - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.lock = locks.size() == 1 ? lockName(locks.get(0)) : locks.size() + " stripes";
+                event.commit();
+            }
+        }
+        return acquired;
+    }
+
+    private String lockName(Lock lock) {
+        if (lock == globalWriteLock || lock == globalLock.readLock()) {
+            return "global";
+        }
+        for (int i = 0; i < stripes.length; i++) {
+            if (stripes[i].writeLock() == lock || stripes[i].readLock() == lock) {
+                return "stripe " + i;
+            }
+        }
+        return "unknown";
+    }
+
+    private void unlockAll(List<Lock> locks, long acquired) {
+        metrics.recordLockHold(System.nanoTime() - acquired);
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    /**
+     * Returns the word's current meanings, or null. The list is an immutable
+     * snapshot, so this is a single map read with no lock (with
+     * --storage=compact, a shared read lock inside the store).
+     */
     public List<String> query(String word) {
-        lock.readLock().lock();
+        return dictionary.get(word);
+    }
+
+    /**
+     * Looks up several words as of a single point in time. The read locks of
+     * all the words are held while reading, so no write to any of them can land
+     * halfway through, while other multiQuery calls run alongside. Found words
+     * are returned in request order; missing words are left out. The lists are
+     * the same immutable snapshots query() returns.
+     */
+    public Map<String, List<String>> multiQuery(Collection<String> words) {
+        List<Lock> locks = readLocksFor(words);
+        long locked = lockAll(locks);
+        try {
+            Map<String, List<String>> found = new LinkedHashMap<>();
+            for (String word : words) {
+                List<String> meanings = dictionary.get(word);
+                if (meanings != null) {
+                    found.put(word, meanings);
+                }
+            }
+            return found;
+        } finally {
+            unlockAll(locks, locked);
+        }
+    }
+
+    /**
+     * Applies every operation in the batch, or none of them. Each operation is
+     * checked against the dictionary as changed by the operations before it and
+     * gets the status its single-word method would return; the batch is applied
+     * only if all of them are SUCCESS. The write locks of every word are held
+     * throughout, and the batch is persisted once: one journal record, one
+     * snapshot, or one write-behind mark.
+     *
+     * @throws IOException if the journal could not record the batch, in which
+     *                     case nothing was applied
+     */
+    public List<String> applyBatch(WriteBatch batch) throws IOException {
+        List<String> words = new ArrayList<>(batch.size());
+        for (WriteBatch.Operation operation : batch.operations()) {
+            words.add(operation.word);
+        }
+        List<Lock> locks = writeLocksFor(words);
+        long locked = lockAll(locks);
         try {
-            return dictionary.get(word);
+            // End state of every word the batch touches; a null value means removed.
+            Map<String, List<String>> staged = new LinkedHashMap<>();
+            List<String> statuses = new ArrayList<>(batch.size());
+            boolean allSucceeded = true;
+            for (WriteBatch.Operation operation : batch.operations()) {
+                List<String> current = staged.containsKey(operation.word)
+                        ? staged.get(operation.word) : dictionary.get(operation.word);
+                String status = stage(operation, current, staged);
+                statuses.add(status);
+                allSucceeded &= "SUCCESS".equals(status);
+            }
+            if (!allSucceeded || staged.isEmpty()) {
+                return statuses;
+            }
+
+            List<Mutation> mutations = new ArrayList<>(staged.size());
+            for (Map.Entry<String, List<String>> entry : staged.entrySet()) {
+                mutations.add(entry.getValue() == null
+                        ? Mutation.remove(entry.getKey()) : Mutation.put(entry.getKey(), entry.getValue()));
+            }
+            applyLocked(mutations, mutations.size());
+            return statuses;
+        } finally {
+            unlockAll(locks, locked);
+        }
+    }
+
+    /**
+     * Applies mutations received from a replication leader, as one batch. They
+     * are end states, so applying one the dictionary already reflects changes
+     * nothing. Listeners are told about each, so indexes and caches follow.
+     */
+    public void applyReplicated(List<Mutation> mutations) throws IOException {
+        List<String> words = new ArrayList<>(mutations.size());
+        for (Mutation mutation : mutations) {
+            words.add(mutation.getWord());
+        }
+        List<Lock> locks = writeLocksFor(words);
+        long locked = lockAll(locks);
+        try {
+            applyLocked(mutations, mutations.size());
+        } finally {
+            unlockAll(locks, locked);
+        }
+    }
+
+    /**
+     * Makes the dictionary equal to {@code entries}, e.g. a replication
+     * leader's snapshot: words missing from it are removed and words whose
+     * meanings differ are replaced. Every write lock is held throughout, so
+     * queries see the old or the new entry of each word, never a gap. Returns
+     * the number of words that changed.
+     *
+     * @param entries the new contents; every list must be immutable
+     */
+    public int replaceAll(Map<String, List<String>> entries) throws IOException {
+        List<Lock> locks = new ArrayList<>();
+        if (stripes == null) {
+            locks.add(globalWriteLock);
+        } else {
+            for (ReentrantReadWriteLock stripe : stripes) {
+                locks.add(stripe.writeLock());
+            }
+        }
+        long locked = lockAll(locks);
+        try {
+            List<Mutation> mutations = new ArrayList<>();
+            for (String word : dictionary.keySet()) {
+                if (!entries.containsKey(word)) {
+                    mutations.add(Mutation.remove(word));
+                }
+            }
+            for (Map.Entry<String, List<String>> entry : entries.entrySet()) {
+                if (!entry.getValue().equals(dictionary.get(entry.getKey()))) {
+                    mutations.add(Mutation.put(entry.getKey(), entry.getValue()));
+                }
+            }
+            // A whole dictionary can outgrow one journal record, so it is logged in chunks.
+            applyLocked(mutations, REPLACE_JOURNAL_CHUNK);
+            return mutations.size();
         } finally {
-            lock.readLock().unlock();
+            unlockAll(locks, locked);
+        }
+    }
+
+    // Logs, applies and persists mutations whose words' write locks are all
+    // held. The journal gets one batch record per journalChunk mutations.
+    private void applyLocked(List<Mutation> mutations, int journalChunk) throws IOException {
+        if (mutations.isEmpty()) {
+            return;
+        }
+        int logged = 0;
+        try {
+            if (persistenceMode == PersistenceMode.JOURNAL) {
+                // Logged before it is applied, so a failed write leaves the dictionary untouched.
+                for (int from = 0; from < mutations.size(); from += journalChunk) {
+                    journal.appendBatch(mutations.subList(from, Math.min(mutations.size(), from + journalChunk)));
+                    logged++;
+                }
+            }
+            for (Mutation mutation : mutations) {
+                mutation.applyTo(dictionary);
+                notifyListeners(mutation);
+            }
+        } finally {
+            if (logged > 0) {
+                releaseJournalRecords(logged);
+            }
+        }
+        if (persistenceMode == PersistenceMode.WRITE_BEHIND) {
+            writeBehind.markDirty();
+        } else if (persistenceMode == PersistenceMode.SNAPSHOT) {
+            saveDictionaryToFile();
+        }
+    }
+
+    // Checks one batch operation against the word's current meanings (null if
+    // absent) and records the word's new end state in staged if it succeeds.
+    private static String stage(WriteBatch.Operation operation, List<String> current,
+                                Map<String, List<String>> staged) {
+        switch (operation.type) {
+            case ADD:
+                if (current != null) {
+                    return "DUPLICATE";
+                }
+                staged.put(operation.word, operation.meanings);
+                return "SUCCESS";
+            case REMOVE:
+                if (current == null) {
+                    return "NOT_FOUND";
+                }
+                staged.put(operation.word, null);
+                return "SUCCESS";
+            case ADD_MEANING: {
+                if (current == null) {
+                    return "WORD_NOT_FOUND";
+                }
+                if (current.contains(operation.newMeaning)) {
+                    return "MEANING_EXISTS";
+                }
+                List<String> updated = new ArrayList<>(current.size() + 1);
+                updated.addAll(current);
+                updated.add(operation.newMeaning);
+                staged.put(operation.word, Collections.unmodifiableList(updated));
+                return "SUCCESS";
+            }
+            default: { // UPDATE_MEANING
+                if (current == null) {
+                    return "WORD_NOT_FOUND";
+                }
+                int index = current.indexOf(operation.oldMeaning);
+                if (index == -1) {
+                    return "MEANING_NOT_FOUND";
+                }
+                if (current.contains(operation.newMeaning)) {
+                    return "MEANING_EXISTS";
+                }
+                List<String> updated = new ArrayList<>(current);
+                updated.set(index, operation.newMeaning);
+                staged.put(operation.word, Collections.unmodifiableList(updated));
+                return "SUCCESS";
+            }
         }
     }
 
     public String add(String word, List<String> meanings, long delay) {
-        lock.writeLock().lock();
+        Lock writeLock = writeLockFor(word);
+        long locked = lock(writeLock);
         try {
             if (dictionary.containsKey(word)) {
                 return "DUPLICATE";
             }
-            dictionary.put(word, meanings);
-            saveDictionaryToFile();
+            List<String> snapshot = Collections.unmodifiableList(new ArrayList<>(meanings));
+            if (!persist(Mutation.put(word, snapshot))) {
+                return "SAVE_FAILED";
+            }
 
             if (delay > 0) {
                 System.out.println("Lock held for " + delay + "ms for simulated slow write...");
@@ -76,18 +839,20 @@ public class DictionaryManager {
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         } finally {
-            lock.writeLock().unlock();
+            unlock(writeLock, locked);
         }
     }
 
     public String remove(String word, long delay) {
-        lock.writeLock().lock();
+        Lock writeLock = writeLockFor(word);
+        long locked = lock(writeLock);
         try {
             if (!dictionary.containsKey(word)) {
                 return "NOT_FOUND";
             }
-            dictionary.remove(word);
-            saveDictionaryToFile();
+            if (!persist(Mutation.remove(word))) {
+                return "SAVE_FAILED";
+            }
 
             if (delay > 0) {
                 System.out.println("Lock held for " + delay + "ms for simulated slow write...");
@@ -97,12 +862,13 @@ public class DictionaryManager {
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         } finally {
-            lock.writeLock().unlock();
+            unlock(writeLock, locked);
         }
     }
 
     public String updateMeaning(String word, String meaningToBeUpdated, String newMeaning, long delay) {
-        lock.writeLock().lock();
+        Lock writeLock = writeLockFor(word);
+        long locked = lock(writeLock);
         try {
             // 2. Check if the word exists in the dictionary.
             List<String> meanings = dictionary.get(word);
@@ -121,11 +887,15 @@ public class DictionaryManager {
                 return "MEANING_EXISTS";
             }
 
-            // 4. Update the meaning at the found index with the new meaning.
-            meanings.set(index, newMeaning);
+            // 4. Build a new list with the meaning at the found index replaced.
+            List<String> updated = new ArrayList<>(meanings);
+            updated.set(index, newMeaning);
+            List<String> snapshot = Collections.unmodifiableList(updated);
 
-            // 5. Save the changes to the JSON file to make them persistent.
-            saveDictionaryToFile();
+            // 5. Publish and persist it (full snapshot or journal record).
+            if (!persist(Mutation.put(word, snapshot))) {
+                return "SAVE_FAILED";
+            }
 
             if (delay > 0) {
                 System.out.println("Lock held for " + delay + "ms for simulated slow write...");
@@ -139,12 +909,13 @@ public class DictionaryManager {
             throw new RuntimeException(e);
         } finally {
             // 7. Always release the lock in a finally block.
-            lock.writeLock().unlock();
+            unlock(writeLock, locked);
         }
     }
 
     public String addNewMeaning(String word, String newMeaning, long delay) {
-        lock.writeLock().lock();
+        Lock writeLock = writeLockFor(word);
+        long locked = lock(writeLock);
         try {
             // 2. Check if the word exists in the dictionary.
             List<String> meanings = dictionary.get(word);
@@ -157,11 +928,16 @@ public class DictionaryManager {
                 return "MEANING_EXISTS";
             }
 
-            // 4. Add the new meaning to the existing list.
-            meanings.add(newMeaning);
+            // 4. Build a new list with the new meaning appended.
+            List<String> updated = new ArrayList<>(meanings.size() + 1);
+            updated.addAll(meanings);
+            updated.add(newMeaning);
+            List<String> snapshot = Collections.unmodifiableList(updated);
 
-            // 5. Save the changes to the file.
-            saveDictionaryToFile();
+            // 5. Publish and persist it (full snapshot or journal record).
+            if (!persist(Mutation.put(word, snapshot))) {
+                return "SAVE_FAILED";
+            }
             if (delay > 0) {
                 System.out.println("Lock held for " + delay + "ms for simulated slow write...");
                 Thread.sleep(delay);
@@ -173,7 +949,7 @@ public class DictionaryManager {
             throw new RuntimeException(e);
         } finally {
             // 7. Always release the lock.
-            lock.writeLock().unlock();
+            unlock(writeLock, locked);
         }
     }
 }
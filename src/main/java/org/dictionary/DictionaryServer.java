@@ -3,8 +3,14 @@ package org.dictionary;
 // --- DictionaryServer.java ---
 // --- DictionaryServer.java (Modified) ---
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.ArrayList;
@@ -13,20 +19,124 @@ import java.util.List;
 import java.net.Socket;
 
 public class DictionaryServer implements Runnable {
+
+    // BLOCKING runs one thread per connection; NIO multiplexes connections over
+    // a few selector threads and a worker pool.
+    public enum Engine { BLOCKING, NIO }
+
+    /** Point-in-time counts from the blocking engine's connection executor. */
+    public static final class ConnectionStats {
+        private final int active;
+        private final int queued;
+        private final long rejected;
+
+        ConnectionStats(int active, int queued, long rejected) {
+            this.active = active;
+            this.queued = queued;
+            this.rejected = rejected;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+    }
+
+    private static final String BUSY_RESPONSE =
+            "{\"status\":\"error\",\"message\":\"Server is at capacity, please try again later.\"}";
+
     private final List<Socket> activeClientSockets = Collections.synchronizedList(new ArrayList<>());
     private final int port;
     private final DictionaryManager manager;
     private volatile boolean isRunning = false;
     private ServerSocket serverSocket;
     private final AtomicInteger activeClientCount = new AtomicInteger(0);
+    private final ServerOptions options;
+    private final Engine engine;
+    private volatile NioServerEngine nioEngine;
+    private volatile ConnectionExecutor connectionExecutor;
+    // Runs pipelined requests (those with an id) for the blocking engine.
+    private volatile ExecutorService pipelineWorkers;
+    private final int maxInFlight;
+    private volatile ScheduledExecutorService cacheStatsLogger;
+    private final FlightRecording flightRecording; // null unless --jfr=true
+    private final ReplicationLeader replicationLeader; // null unless --replication-port is set
+    private final ReplicationFollower replicationFollower; // null unless --replicate-from is set
 
     // Callbacks to update the GUI
     private Consumer<String> logUpdater;
     private Consumer<Integer> clientCountUpdater;
+    private Consumer<ConnectionStats> connectionStatsUpdater = stats -> { };
 
     public DictionaryServer(int port, String dictPath) {
+        this(port, dictPath, new ServerOptions());
+    }
+
+    public DictionaryServer(int port, String dictPath, ServerOptions options) {
         this.port = port;
-        this.manager = new DictionaryManager(dictPath);
+        this.options = options;
+        this.engine = options.getEnum("engine", Engine.class, Engine.BLOCKING);
+        this.maxInFlight = options.getInt("max-in-flight", 64);
+        this.manager = new DictionaryManager(dictPath, options);
+        this.flightRecording = options.getBoolean("jfr", false) ? new FlightRecording(options) : null;
+        int replicationPort = options.getInt("replication-port", 0);
+        this.replicationLeader = replicationPort > 0
+                ? new ReplicationLeader(manager, replicationPort, port, options) : null;
+        String replicateFrom = options.get("replicate-from", null);
+        this.replicationFollower = replicateFrom != null
+                ? new ReplicationFollower(manager, dictPath, replicateFrom, options) : null;
+    }
+
+    public String getLoadSummary() {
+        return manager.getLoadSummary();
+    }
+
+    /** True if --jfr=true started a rolling flight recording that can be dumped. */
+    public boolean isFlightRecording() {
+        return flightRecording != null;
+    }
+
+    /** Writes the rolling flight recording to a new file and returns its path. */
+    public Path dumpFlightRecording() throws IOException {
+        if (flightRecording == null) {
+            throw new IllegalStateException("No flight recording is running; start the server with --jfr=true.");
+        }
+        return flightRecording.dump();
+    }
+
+    /**
+     * One line on this server's replication state, or null if it is neither a
+     * leader nor a follower. A server may be both: a follower that other
+     * followers replicate from.
+     */
+    public String getReplicationSummary() {
+        if (replicationFollower == null && replicationLeader == null) {
+            return null;
+        }
+        if (replicationFollower == null) {
+            return replicationLeader.describe();
+        }
+        if (replicationLeader == null) {
+            return replicationFollower.describe();
+        }
+        return replicationFollower.describe() + "; " + replicationLeader.describe();
+    }
+
+    /** The follower keeping this server in step with its leader, or null if it is not a read replica. */
+    public ReplicationFollower getReplicationFollower() {
+        return replicationFollower;
+    }
+
+    /** The live request, lock and persistence metrics, for the dashboard. */
+    public ServerMetrics getMetrics() {
+        return manager.getMetrics();
     }
 
     public void setLogUpdater(Consumer<String> logUpdater) {
@@ -37,30 +147,63 @@ public class DictionaryServer implements Runnable {
         this.clientCountUpdater = clientCountUpdater;
     }
 
+    public void setConnectionStatsUpdater(Consumer<ConnectionStats> connectionStatsUpdater) {
+        this.connectionStatsUpdater = connectionStatsUpdater;
+    }
+
     @Override
     public void run() {
         isRunning = true;
+        startCacheStatsLogging();
+        if (flightRecording != null) {
+            logUpdater.accept(flightRecording.describe());
+        }
+        if (replicationLeader != null) {
+            try {
+                replicationLeader.start(logUpdater);
+            } catch (IOException e) {
+                logUpdater.accept("Could not open replication port " + replicationLeader.getPort() + ": "
+                        + e.getMessage());
+            }
+        }
+        if (replicationFollower != null) {
+            logUpdater.accept("Read replica of " + replicationFollower.getLeaderAddress()
+                    + "; writes from clients are refused");
+            replicationFollower.start(logUpdater);
+        }
+        if (engine == Engine.NIO) {
+            runNioEngine();
+            return;
+        }
         try {
+            connectionExecutor = new ConnectionExecutor(options, this::publishConnectionStats);
+            AtomicInteger workerId = new AtomicInteger();
+            pipelineWorkers = Executors.newFixedThreadPool(
+                    options.getInt("pipeline-workers", Runtime.getRuntime().availableProcessors() * 2), r -> {
+                        Thread t = new Thread(r, "pipeline-worker-" + workerId.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
             serverSocket = new ServerSocket(port);
-            logUpdater.accept("Server started on port " + port);
+            logUpdater.accept("Server started on port " + port + " (" + connectionExecutor.describe() + ")");
 
             while (isRunning) {
                 Socket clientSocket = serverSocket.accept();
                 activeClientSockets.add(clientSocket); // <-- ADD THIS LINE
-                logUpdater.accept("New client connected: " + clientSocket.getInetAddress().getHostAddress());
-
-                clientCountUpdater.accept(activeClientCount.incrementAndGet());
+                clientConnected(clientSocket.getInetAddress().getHostAddress());
 
                 Runnable onClientDisconnect = () -> {
-                    clientCountUpdater.accept(activeClientCount.decrementAndGet());
                     activeClientSockets.remove(clientSocket); // <-- ADD THIS LINE
-                    logUpdater.accept("Client disconnected: " + clientSocket.getInetAddress().getHostAddress());
+                    clientDisconnected(clientSocket.getInetAddress().getHostAddress());
                 };
 
-                ClientHandler clientHandler = new ClientHandler(clientSocket, manager, onClientDisconnect);
-                new Thread(clientHandler).start();
+                ClientHandler clientHandler = new ClientHandler(clientSocket, manager, onClientDisconnect,
+                        pipelineWorkers, maxInFlight);
+                if (!connectionExecutor.submit(clientHandler)) {
+                    rejectConnection(clientSocket);
+                }
             }
-        } catch (IOException e) {
+        } catch (IOException | IllegalStateException e) {
             if (isRunning) {
                 logUpdater.accept("Server error: " + e.getMessage());
             }
@@ -70,8 +213,99 @@ public class DictionaryServer implements Runnable {
         }
     }
 
+    private void runNioEngine() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int eventLoops = options.getInt("nio-event-loops", Math.max(1, Math.min(4, cores / 2)));
+        int workers = options.getInt("nio-workers", cores * 2);
+        try {
+            nioEngine = new NioServerEngine(port, manager, eventLoops, workers, maxInFlight,
+                    this::clientConnected, this::clientDisconnected);
+            logUpdater.accept("Server started on port " + port + " (NIO engine, " + eventLoops
+                    + " event loops, " + workers + " workers)");
+            nioEngine.run();
+        } catch (IOException e) {
+            if (isRunning) {
+                logUpdater.accept("Server error: " + e.getMessage());
+            }
+        } finally {
+            stopServer();
+        }
+    }
+
+    // Answers with a JSON error instead of leaving the client waiting behind a full queue.
+    private void rejectConnection(Socket clientSocket) {
+        activeClientSockets.remove(clientSocket);
+        clientCountUpdater.accept(activeClientCount.decrementAndGet());
+        logUpdater.accept("Rejected client " + clientSocket.getInetAddress().getHostAddress() + ": server at capacity");
+        connectionClosedEvent(clientSocket.getInetAddress().getHostAddress());
+        try (PrintWriter writer = new PrintWriter(clientSocket.getOutputStream(), true)) {
+            writer.println(BUSY_RESPONSE);
+        } catch (IOException e) {
+            // The client is being turned away anyway.
+        } finally {
+            try {
+                clientSocket.close();
+            } catch (IOException ignored) {
+                // Nothing more to release.
+            }
+        }
+    }
+
+    // Synchronized so snapshots reach the listener in the order they were taken.
+    private synchronized void publishConnectionStats() {
+        ConnectionExecutor executor = connectionExecutor;
+        if (executor != null) {
+            connectionStatsUpdater.accept(new ConnectionStats(
+                    executor.getActive(), executor.getQueued(), executor.getRejected()));
+        }
+    }
+
+    private void clientConnected(String hostAddress) {
+        ServerEvents.ConnectionAccepted event = new ServerEvents.ConnectionAccepted();
+        if (event.shouldCommit()) {
+            event.host = hostAddress;
+            event.commit();
+        }
+        logUpdater.accept("New client connected: " + hostAddress);
+        clientCountUpdater.accept(activeClientCount.incrementAndGet());
+    }
+
+    private void clientDisconnected(String hostAddress) {
+        connectionClosedEvent(hostAddress);
+        clientCountUpdater.accept(activeClientCount.decrementAndGet());
+        logUpdater.accept("Client disconnected: " + hostAddress);
+    }
+
+    private static void connectionClosedEvent(String hostAddress) {
+        ServerEvents.ConnectionClosed event = new ServerEvents.ConnectionClosed();
+        if (event.shouldCommit()) {
+            event.host = hostAddress;
+            event.commit();
+        }
+    }
+
     public void stopServer() {
         isRunning = false;
+        ConnectionExecutor executor = connectionExecutor;
+        if (executor != null) {
+            // Queued handlers still run once their sockets are closed below, so the counts settle.
+            executor.shutdown();
+        }
+        ExecutorService workers = pipelineWorkers;
+        if (workers != null) {
+            workers.shutdown();
+        }
+        if (replicationLeader != null) {
+            replicationLeader.stop();
+        }
+        if (replicationFollower != null) {
+            replicationFollower.stop();
+        }
+        NioServerEngine runningEngine = nioEngine;
+        if (runningEngine != null) {
+            nioEngine = null;
+            runningEngine.stop();
+        }
         try {
             // Close all active client connections first
             // We iterate over a copy to avoid modification issues while iterating
@@ -88,5 +322,37 @@ public class DictionaryServer implements Runnable {
         } catch (IOException e) {
             logUpdater.accept("Error while stopping server: " + e.getMessage());
         }
+
+        ScheduledExecutorService statsLogger = cacheStatsLogger;
+        if (statsLogger != null) {
+            cacheStatsLogger = null;
+            statsLogger.shutdownNow();
+            logUpdater.accept(manager.getQueryCache().describe());
+        }
+
+        // Make sure nothing acknowledged to a client is still sitting in a buffer.
+        manager.flush();
+    }
+
+    // Logs the query cache hit rate once a minute while there is query traffic.
+    private void startCacheStatsLogging() {
+        QueryResponseCache cache = manager.getQueryCache();
+        if (cache == null) {
+            return;
+        }
+        ScheduledExecutorService statsLogger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cache-stats-logger");
+            t.setDaemon(true);
+            return t;
+        });
+        long[] lastLookups = {cache.getHits() + cache.getMisses()};
+        statsLogger.scheduleAtFixedRate(() -> {
+            long lookups = cache.getHits() + cache.getMisses();
+            if (lookups != lastLookups[0]) {
+                lastLookups[0] = lookups;
+                logUpdater.accept(cache.describe());
+            }
+        }, 60, 60, TimeUnit.SECONDS);
+        cacheStatsLogger = statsLogger;
     }
 }
@@ -0,0 +1,74 @@
+package org.dictionary;
+
+// --- FlightRecording.java ---
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * A rolling JDK Flight Recorder recording, started with {@code --jfr=true}.
+ * It keeps the last {@code --jfr-max-age-seconds} (default 600) of JVM and
+ * {@link ServerEvents} data on disk, capped at {@code --jfr-max-size-mb}
+ * (default 100), and {@link #dump} copies what it holds to a file that JDK
+ * Mission Control or {@code jfr print} can open.
+ *
+ * <p>The JVM events come from the {@code --jfr-settings} profile
+ * ({@code default}, or {@code profile} for more detail at more cost).
+ * Request events shorter than {@code --jfr-request-threshold-ms} (default 0,
+ * i.e. every request) are left out.
+ */
+public class FlightRecording implements AutoCloseable {
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Recording recording;
+    private final Path dumpDirectory;
+
+    public FlightRecording(ServerOptions options) {
+        String settings = options.get("jfr-settings", "default");
+        try {
+            recording = new Recording(Configuration.getConfiguration(settings));
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown JFR settings '" + settings + "' for option --jfr-settings");
+        }
+        recording.setName("dictionary-server");
+        recording.setToDisk(true);
+        recording.setMaxAge(Duration.ofSeconds(options.getLong("jfr-max-age-seconds", 600)));
+        recording.setMaxSize(options.getLong("jfr-max-size-mb", 100) * 1024 * 1024);
+        recording.enable(ServerEvents.Request.class)
+                .withThreshold(Duration.ofMillis(options.getLong("jfr-request-threshold-ms", 0)));
+        recording.enable(ServerEvents.LockWait.class).withStackTrace();
+        recording.enable(ServerEvents.Save.class);
+        recording.enable(ServerEvents.JournalSync.class);
+        recording.enable(ServerEvents.ConnectionAccepted.class);
+        recording.enable(ServerEvents.ConnectionClosed.class);
+        dumpDirectory = Paths.get(options.get("jfr-dump-dir", "."));
+        recording.start();
+    }
+
+    /** Writes everything the recording currently holds to a new file in the dump directory. */
+    public synchronized Path dump() throws IOException {
+        Files.createDirectories(dumpDirectory);
+        Path file = dumpDirectory.resolve("dictionary-server-" + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+        recording.dump(file);
+        return file.toAbsolutePath();
+    }
+
+    public String describe() {
+        return String.format("Flight recording running, keeping the last %d s (at most %d MB); dumps go to %s",
+                recording.getMaxAge().getSeconds(), recording.getMaxSize() / (1024 * 1024),
+                dumpDirectory.toAbsolutePath());
+    }
+
+    @Override
+    public void close() {
+        recording.close();
+    }
+}
@@ -0,0 +1,224 @@
+package org.dictionary;
+
+// --- InvalidationTracker.java ---
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tells clients when words they have cached change. A connection opts in
+ * with the {@code track} command; from then on every word it queries is
+ * remembered, and the next successful write to that word sends it
+ * {@code {"type":"invalidate","words":[..]}}, a line with no {@code id}.
+ * Tracking is one-shot: after the push the word is forgotten until the
+ * connection queries it again, which is when a client caches it again.
+ *
+ * <p>The word is tracked before the query reads the dictionary, so a write
+ * the query did not see is always pushed. The push may reach the client
+ * before the query's response does; clients must drop an answer whose word
+ * was invalidated while it was in flight, as {@link NearCache} does. Pushes are
+ * written by background threads rather than the writer, which still holds
+ * the word's lock. A connection has at most one push in progress, and each
+ * runs on a thread of its own from a shared pool, so a client that stops
+ * reading holds up only its own pushes; clients should still expire entries
+ * after a while, since theirs may be the held-up ones.
+ *
+ * <p>A connection tracking more than {@code --tracking-max-words} words is
+ * sent {@code {"type":"invalidate","all":true}} and starts over.
+ */
+public class InvalidationTracker {
+
+    /** One connection's tracked words and its queue of pending invalidations. */
+    public final class Subscription {
+        private final Writer out;
+        private final Object lock;
+        private final Set<String> words = ConcurrentHashMap.newKeySet();
+        private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean invalidateAll;
+        private volatile boolean cancelled;
+
+        private Subscription(Writer out, Object lock) {
+            this.out = out;
+            this.lock = lock;
+        }
+
+        /**
+         * Remembers that the client is about to read {@code word}. Call it
+         * before the read.
+         */
+        public void track(String word) {
+            if (cancelled) {
+                return;
+            }
+            tracked.compute(word, (key, subscribers) -> {
+                Set<Subscription> set = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+                set.add(this);
+                return set;
+            });
+            words.add(word);
+            if (words.size() > maxWordsPerConnection) {
+                untrackAll();
+                invalidateAll = true;
+                schedule();
+            }
+        }
+
+        /** Stops tracking; called when the connection closes. */
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                subscriptions.remove(this);
+                untrackAll();
+                pending.clear();
+            }
+        }
+
+        private void untrackAll() {
+            for (String word : words) {
+                tracked.computeIfPresent(word, (key, subscribers) -> {
+                    subscribers.remove(this);
+                    return subscribers.isEmpty() ? null : subscribers;
+                });
+            }
+            words.clear();
+        }
+
+        private void invalidate(String word) {
+            words.remove(word);
+            if (!cancelled) {
+                pending.add(word);
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                pusher.execute(this::push);
+            }
+        }
+
+        // Pusher thread: sends what is queued, one line at a time, until the
+        // queue is empty. scheduled stays set while a line is being written,
+        // so however long a slow client blocks the write, invalidations that
+        // arrive meanwhile are left to this thread rather than starting
+        // another; it picks them up once it clears the flag and looks again.
+        private void push() {
+            do {
+                pushPending();
+                scheduled.set(false);
+            } while (!cancelled && (invalidateAll || !pending.isEmpty()) && scheduled.compareAndSet(false, true));
+        }
+
+        // Sends everything queued so far as one line.
+        private void pushPending() {
+            boolean all = invalidateAll;
+            invalidateAll = false;
+            Set<String> batch = new LinkedHashSet<>();
+            String word;
+            while ((word = pending.poll()) != null) {
+                batch.add(word);
+            }
+            if (cancelled || (!all && batch.isEmpty())) {
+                return;
+            }
+            try {
+                StringWriter line = new StringWriter();
+                JsonWriter json = new JsonWriter(line);
+                json.beginObject().name("type").value("invalidate");
+                if (all) {
+                    json.name("all").value(true);
+                } else {
+                    json.name("words").beginArray();
+                    for (String w : batch) {
+                        json.value(w);
+                    }
+                    json.endArray();
+                }
+                json.endObject();
+                synchronized (lock) {
+                    out.write(line.toString());
+                    out.write('\n');
+                    out.flush();
+                }
+                if (out instanceof PrintWriter && ((PrintWriter) out).checkError()) {
+                    throw new IOException("connection closed");
+                }
+                pushedMessages.increment();
+                pushedWords.add(batch.size());
+            } catch (IOException e) {
+                cancel();
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<String, Set<Subscription>> tracked = new ConcurrentHashMap<>();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final int maxWordsPerConnection;
+    private final LongAdder pushedMessages = new LongAdder();
+    private final LongAdder pushedWords = new LongAdder();
+    private final AtomicInteger pusherId = new AtomicInteger();
+    // Threads come and go with the connections that have pushes to write.
+    private final ExecutorService pusher = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "invalidation-pusher-" + pusherId.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    public InvalidationTracker(int maxWordsPerConnection) {
+        this.maxWordsPerConnection = maxWordsPerConnection;
+    }
+
+    /**
+     * Starts tracking for one connection. {@code lock} is the monitor the
+     * connection holds while it writes a response to {@code out}.
+     */
+    public Subscription subscribe(Writer out, Object lock) {
+        Subscription subscription = new Subscription(out, lock);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /** Mutation listener: queues a push to every connection tracking the word. */
+    public void apply(Mutation mutation) {
+        if (tracked.isEmpty()) {
+            return;
+        }
+        Set<Subscription> subscribers = tracked.remove(mutation.getWord());
+        if (subscribers != null) {
+            for (Subscription subscription : subscribers) {
+                subscription.invalidate(mutation.getWord());
+            }
+        }
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    /** Words at least one connection is tracking. */
+    public int getTrackedWordCount() {
+        return tracked.size();
+    }
+
+    public long getPushedMessages() {
+        return pushedMessages.sum();
+    }
+
+    public long getPushedWords() {
+        return pushedWords.sum();
+    }
+}
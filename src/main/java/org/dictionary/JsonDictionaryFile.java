@@ -0,0 +1,45 @@
+package org.dictionary;
+
+// --- JsonDictionaryFile.java ---
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Crash-safe writer for the JSON dictionary format. Reading is done by
+ * {@link DictionaryLoader}.
+ */
+public final class JsonDictionaryFile {
+    private static final Gson gson = new Gson();
+
+    private JsonDictionaryFile() {
+    }
+
+    /**
+     * Writes the given map to a temp file next to {@code target}, fsyncs it and
+     * atomically renames it over {@code target}, so a crash never leaves a
+     * half-written file behind.
+     */
+    public static void write(Path target, Map<String, List<String>> entries) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 64 * 1024);
+            gson.toJson(entries, writer);
+            writer.flush();
+            channel.force(true);
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,149 @@
+package org.dictionary;
+
+// --- LatencyHistogram.java ---
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in nanoseconds in log-linear buckets, in the style of
+ * HdrHistogram: every power-of-two range is split into 1,024 equal buckets,
+ * so any recorded value is reported within 0.1% whether it is a microsecond
+ * or a minute. Values from 0 up to an hour are tracked in a fixed array of
+ * about 33,000 counts; anything longer is counted as an hour. Recording is
+ * lock-free and safe from any number of threads.
+ *
+ * <p>{@link #recordCorrected} back-fills the samples a closed-loop caller
+ * never got to send while it was stuck waiting on a slow response, which is
+ * the usual correction for coordinated omission.
+ */
+public class LatencyHistogram {
+    /** Longest value tracked exactly: one hour. */
+    public static final long HIGHEST_TRACKABLE_NANOS = 3_600_000_000_000L;
+
+    private static final int SUB_BUCKET_BITS = 10;
+    private static final int HALF_SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_COUNT = 2 * HALF_SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(HIGHEST_TRACKABLE_NANOS) + 1);
+    private final AtomicLong max = new AtomicLong();
+
+    /** Records one value; negative values count as zero. */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), HIGHEST_TRACKABLE_NANOS);
+        counts.incrementAndGet(indexOf(value));
+        long seen = max.get();
+        while (value > seen && !max.compareAndSet(seen, value)) {
+            seen = max.get();
+        }
+    }
+
+    /**
+     * Records one value taken by a caller that sends a request every
+     * {@code expectedIntervalNanos} but waits for each response first. If the
+     * value is longer than the interval, the requests that would have been
+     * sent meanwhile are recorded too, each with the latency it would have
+     * seen: the value less one interval, less two, and so on.
+     */
+    public void recordCorrected(long nanos, long expectedIntervalNanos) {
+        record(nanos);
+        if (expectedIntervalNanos <= 0) {
+            return;
+        }
+        for (long missed = nanos - expectedIntervalNanos; missed >= expectedIntervalNanos; missed -= expectedIntervalNanos) {
+            record(missed);
+        }
+    }
+
+    /** Adds every value recorded in {@code other} to this histogram. */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        long otherMax = other.max.get();
+        long seen = max.get();
+        while (otherMax > seen && !max.compareAndSet(seen, otherMax)) {
+            seen = max.get();
+        }
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /** Largest value recorded, exactly. */
+    public long getMax() {
+        return max.get();
+    }
+
+    /** Mean of the recorded values, taking each as the middle of its bucket. */
+    public double getMean() {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            if (count != 0) {
+                total += count;
+                sum += count * (lowestEquivalentValue(i) + highestEquivalentValue(i)) / 2.0;
+            }
+        }
+        return total == 0 ? 0 : sum / total;
+    }
+
+    /**
+     * The value that {@code percentile} percent of the recorded values are at
+     * or below, e.g. 99.9; reported as the top of its bucket, and never above
+     * the largest value recorded. Zero if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        double fraction = Math.min(Math.max(percentile, 0), 100) / 100;
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Values below SUB_BUCKET_COUNT get a bucket each. Above that, a value
+    // whose top bit is bit (SUB_BUCKET_BITS + shift) goes in bucket
+    // shift * HALF_SUB_BUCKET_COUNT + (value >>> shift), so each doubling of
+    // the value adds HALF_SUB_BUCKET_COUNT buckets of twice the width.
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF_SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    private static long lowestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKET_COUNT - 1;
+        return (index - (long) shift * HALF_SUB_BUCKET_COUNT) << shift;
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKET_COUNT - 1;
+        long subBucket = index - (long) shift * HALF_SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
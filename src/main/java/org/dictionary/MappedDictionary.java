@@ -0,0 +1,332 @@
+package org.dictionary;
+
+// --- MappedDictionary.java ---
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Dictionary storage for {@code --storage=mapped}: reads go to a memory-mapped
+ * {@link BinaryDictionaryFile}, writes go to an in-memory overlay on top of it.
+ * When the overlay grows past the merge threshold it is frozen and merged with
+ * the mapped file into a new file in the background, after which the new file
+ * is mapped in its place.
+ *
+ * <p>The new file is written under its own name ({@link
+ * BinaryDictionaryFile#mergePath}) and renamed over the dictionary file only
+ * after the swap, since the old file may still be mapped by a reader. Where
+ * the old mapping blocks the rename (Windows, until it is collected), the
+ * merge keeps its own name and a later merge or the next start promotes it.
+ *
+ * <p>Reads are lock-free. Values must be immutable lists, since they are shared
+ * with a merge that may be running. Callers must serialize writes to the same
+ * word, which {@link DictionaryManager} already does.
+ */
+public class MappedDictionary extends AbstractMap<String, List<String>> {
+    // Marks a word removed in the overlay while it still exists in the mapped file.
+    private static final List<String> TOMBSTONE = Collections.unmodifiableList(new ArrayList<>());
+
+    private static final class State {
+        final ConcurrentHashMap<String, List<String>> active;
+        final Map<String, List<String>> frozen; // overlay being merged, or null
+        final BinaryDictionaryFile base;
+
+        State(ConcurrentHashMap<String, List<String>> active, Map<String, List<String>> frozen,
+              BinaryDictionaryFile base) {
+            this.active = active;
+            this.frozen = frozen;
+            this.base = base;
+        }
+    }
+
+    private final Path path;
+    private final int mergeThreshold;
+    // Writers share it; freezing and swapping the overlay take it exclusively so
+    // no write can land in an overlay that is already being merged.
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final Object mergeMonitor = new Object();
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+    private final AtomicInteger size;
+    private final ExecutorService merger;
+    private volatile State state;
+    private long generation;          // last merge written; guarded by mergeMonitor
+    private long publishedGeneration; // last merge renamed over path; guarded by mergeMonitor
+
+    private MappedDictionary(Path path, BinaryDictionaryFile base, int mergeThreshold, long generation) {
+        this.path = path;
+        this.mergeThreshold = mergeThreshold;
+        this.generation = generation;
+        this.publishedGeneration = generation;
+        this.state = new State(new ConcurrentHashMap<>(), null, base);
+        this.size = new AtomicInteger(base.size());
+        this.merger = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "mapped-dictionary-merger");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static MappedDictionary open(Path path, int mergeThreshold) throws IOException {
+        long generation = BinaryDictionaryFile.promoteMerges(path);
+        return new MappedDictionary(path, BinaryDictionaryFile.open(path), mergeThreshold, generation);
+    }
+
+    @Override
+    public List<String> get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        State s = state;
+        List<String> meanings = s.active.get(key);
+        if (meanings == null && s.frozen != null) {
+            meanings = s.frozen.get(key);
+        }
+        if (meanings == TOMBSTONE) {
+            return null;
+        }
+        if (meanings != null) {
+            return meanings;
+        }
+        return s.base.get((String) key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public List<String> put(String key, List<String> value) {
+        List<String> previous;
+        swapLock.readLock().lock();
+        try {
+            previous = get(key);
+            state.active.put(key, value);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if (previous == null) {
+            size.incrementAndGet();
+        }
+        maybeScheduleMerge();
+        return previous;
+    }
+
+    @Override
+    public List<String> remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        List<String> previous;
+        swapLock.readLock().lock();
+        try {
+            previous = get(key);
+            if (previous != null) {
+                state.active.put((String) key, TOMBSTONE);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if (previous != null) {
+            size.decrementAndGet();
+            maybeScheduleMerge();
+        }
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /** Materializes the merged view; meant for rare full scans, not the request path. */
+    @Override
+    public Set<Entry<String, List<String>>> entrySet() {
+        State s = state;
+        Map<String, List<String>> merged = new HashMap<>();
+        for (int i = 0; i < s.base.size(); i++) {
+            merged.put(s.base.keyAt(i), s.base.meaningsAt(i));
+        }
+        if (s.frozen != null) {
+            applyOverlay(merged, s.frozen);
+        }
+        applyOverlay(merged, s.active);
+        return Collections.unmodifiableMap(merged).entrySet();
+    }
+
+    /**
+     * Writes the mapped file plus every overlay entry into a new file, maps it,
+     * drops the merged overlay and then tries to rename the new file over the
+     * dictionary file. Blocks until done.
+     */
+    public void merge() throws IOException {
+        synchronized (mergeMonitor) {
+            State frozenState;
+            swapLock.writeLock().lock();
+            try {
+                State s = state;
+                Map<String, List<String>> toMerge = s.active;
+                if (s.frozen != null) {
+                    // A previous merge failed; fold its overlay in under the newer one.
+                    Map<String, List<String>> combined = new HashMap<>(s.frozen);
+                    combined.putAll(s.active);
+                    toMerge = combined;
+                }
+                frozenState = new State(new ConcurrentHashMap<>(), toMerge, s.base);
+                state = frozenState;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+
+            long next = generation + 1;
+            Path mergedPath = BinaryDictionaryFile.mergePath(path, next);
+            BinaryDictionaryFile.writeSorted(mergedPath, mergedEntries(frozenState.base, frozenState.frozen));
+            generation = next;
+            BinaryDictionaryFile merged = BinaryDictionaryFile.open(mergedPath);
+
+            swapLock.writeLock().lock();
+            try {
+                state = new State(state.active, null, merged);
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            // The old file is no longer reachable from state; readers that still
+            // hold it finish on the old mapping, which is released once collected.
+            publish(mergedPath);
+        }
+    }
+
+    // Renames the newest merge over the dictionary file. Older merges are
+    // deleted first, so a merge left on disk is always newer than the file and
+    // BinaryDictionaryFile.promoteMerges can simply take the newest. If a file
+    // cannot be deleted or replaced yet, everything stays as it is until the
+    // next merge or start. Called holding mergeMonitor.
+    private void publish(Path mergedPath) {
+        try {
+            for (long older = publishedGeneration + 1; older < generation; older++) {
+                Files.deleteIfExists(BinaryDictionaryFile.mergePath(path, older));
+            }
+            Files.move(mergedPath, path.toAbsolutePath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            publishedGeneration = generation;
+        } catch (IOException e) {
+            System.err.println("Could not yet replace " + path.getFileName() + " with " + mergedPath.getFileName()
+                    + "; it stays mapped under that name: " + e.getMessage());
+        }
+    }
+
+    /** Stops the background merger and merges whatever is left in the overlay. */
+    public void close() throws IOException {
+        merger.shutdown();
+        State s = state;
+        if (!s.active.isEmpty() || s.frozen != null) {
+            merge();
+        }
+    }
+
+    private void maybeScheduleMerge() {
+        if (state.active.size() < mergeThreshold || !mergeScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        merger.execute(() -> {
+            try {
+                merge();
+            } catch (IOException e) {
+                System.err.println("Background merge of " + path.getFileName() + " failed: " + e.getMessage());
+            } finally {
+                mergeScheduled.set(false);
+            }
+        });
+    }
+
+    private static void applyOverlay(Map<String, List<String>> target, Map<String, List<String>> overlay) {
+        for (Entry<String, List<String>> entry : overlay.entrySet()) {
+            if (entry.getValue() == TOMBSTONE) {
+                target.remove(entry.getKey());
+            } else {
+                target.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Merge-joins the (sorted) mapped file with the sorted overlay, overlay wins,
+     * tombstones are dropped. Only the overlay is sorted on the heap.
+     */
+    private static Iterator<Entry<byte[], List<String>>> mergedEntries(BinaryDictionaryFile base,
+                                                                       Map<String, List<String>> overlay) {
+        List<Entry<byte[], List<String>>> sortedOverlay = new ArrayList<>(overlay.size());
+        for (Entry<String, List<String>> entry : overlay.entrySet()) {
+            sortedOverlay.add(new SimpleImmutableEntry<>(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue()));
+        }
+        sortedOverlay.sort((a, b) -> BinaryDictionaryFile.compareUtf8(a.getKey(), b.getKey()));
+
+        return new Iterator<Entry<byte[], List<String>>>() {
+            private int baseIndex;
+            private int overlayIndex;
+            private Entry<byte[], List<String>> next = advance();
+
+            private Entry<byte[], List<String>> advance() {
+                while (baseIndex < base.size() || overlayIndex < sortedOverlay.size()) {
+                    Entry<byte[], List<String>> candidate;
+                    if (overlayIndex == sortedOverlay.size()) {
+                        candidate = new SimpleImmutableEntry<>(base.keyBytesAt(baseIndex), base.meaningsAt(baseIndex));
+                        baseIndex++;
+                    } else if (baseIndex == base.size()) {
+                        candidate = sortedOverlay.get(overlayIndex++);
+                    } else {
+                        byte[] baseKey = base.keyBytesAt(baseIndex);
+                        Entry<byte[], List<String>> overlayEntry = sortedOverlay.get(overlayIndex);
+                        int cmp = BinaryDictionaryFile.compareUtf8(baseKey, overlayEntry.getKey());
+                        if (cmp < 0) {
+                            candidate = new SimpleImmutableEntry<>(baseKey, base.meaningsAt(baseIndex));
+                            baseIndex++;
+                        } else {
+                            if (cmp == 0) {
+                                baseIndex++; // overridden by the overlay
+                            }
+                            candidate = overlayEntry;
+                            overlayIndex++;
+                        }
+                    }
+                    if (candidate.getValue() != TOMBSTONE) {
+                        return candidate;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Entry<byte[], List<String>> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Entry<byte[], List<String>> current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+}
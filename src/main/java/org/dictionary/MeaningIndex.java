@@ -0,0 +1,366 @@
+package org.dictionary;
+
+// --- MeaningIndex.java ---
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index from the terms in meanings to the words that have them, for
+ * the {@code searchMeanings} command. Terms are runs of letters and digits,
+ * lower-cased. Each version of a word's meanings gets an int id, and each term
+ * keeps a posting list of (id, term count) pairs in two int arrays. Ids are
+ * handed out in increasing order and only ever appended, so every posting
+ * list is sorted and lists are intersected by merging.
+ *
+ * <p>A search returns the words whose meanings contain every query term,
+ * ranked by BM25: rare terms and terms that come up often in a short
+ * definition score highest.
+ *
+ * <p>When a word changes, its old id is retired and the new meanings get a
+ * fresh id; retired ids are skipped in the postings until dead ids outnumber
+ * live ones and the postings are compacted. The index holds no meanings:
+ * each id keeps only its word, its length in terms and the posting lists it
+ * is in, and a page's meanings are read from the dictionary when the page is
+ * built. That keeps the index small next to the mapped and compact stores,
+ * which decode meanings on demand. Searches share a read lock and updates
+ * take the write lock.
+ */
+public class MeaningIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final class Postings {
+        final String term;
+        int[] ids = new int[2];
+        int[] counts = new int[2];
+        int size;
+        int live; // postings whose id is still current, i.e. the document frequency
+
+        Postings(String term) {
+            this.term = term;
+        }
+
+        void add(int id, int count) {
+            if (size == ids.length) {
+                int[] grownIds = new int[size * 2];
+                int[] grownCounts = new int[size * 2];
+                System.arraycopy(ids, 0, grownIds, 0, size);
+                System.arraycopy(counts, 0, grownCounts, 0, size);
+                ids = grownIds;
+                counts = grownCounts;
+            }
+            ids[size] = id;
+            counts[size] = count;
+            size++;
+            live++;
+        }
+    }
+
+    // A scored match; orders worse hits first (lower score, then later word).
+    private static final class Hit {
+        final int id;
+        final String word;
+        final double score;
+
+        Hit(int id, String word, double score) {
+            this.id = id;
+            this.word = word;
+            this.score = score;
+        }
+
+        int compareTo(Hit other) {
+            return compareTo(other.score, other.word);
+        }
+
+        int compareTo(double otherScore, String otherWord) {
+            int byScore = Double.compare(score, otherScore);
+            return byScore != 0 ? byScore : otherWord.compareTo(word);
+        }
+    }
+
+    /** One page of search results. */
+    public static final class Page {
+        private final int total;
+        private final Map<String, List<String>> results;
+        private final double[] scores;
+
+        Page(int total, Map<String, List<String>> results, double[] scores) {
+            this.total = total;
+            this.results = results;
+            this.scores = scores;
+        }
+
+        /** Number of words matching the query, across all pages. */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * The page's words, best first, with their meanings as the dictionary
+         * has them when the page is built. A word removed in the meantime is
+         * left out.
+         */
+        public Map<String, List<String>> getResults() {
+            return results;
+        }
+
+        /**
+         * The BM25 score of each result, in the same order. Scores use this
+         * index's own term statistics, so they only compare loosely with
+         * scores from another index.
+         */
+        public double[] getScores() {
+            return scores;
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, List<String>> dictionary;
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> currentIds = new HashMap<>();
+    private String[] words = new String[16];              // by id; null once retired
+    private Postings[][] lists = new Postings[16][];      // by id: the lists holding it, one per distinct term
+    private int[] lengths = new int[16];                  // terms per id
+    private int nextId;
+    private int live;
+    private long liveLength;
+
+    /**
+     * Indexes the dictionary's current contents. The index must then be told
+     * about every write with {@link #apply}; search results read their
+     * meanings from {@code dictionary}.
+     */
+    public MeaningIndex(Map<String, List<String>> dictionary) {
+        this.dictionary = dictionary;
+        for (Map.Entry<String, List<String>> entry : dictionary.entrySet()) {
+            insert(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /** Applies one write: the word's previous meanings are dropped and its new ones, if any, indexed. */
+    public void apply(Mutation mutation) {
+        lock.writeLock().lock();
+        try {
+            Integer previous = currentIds.remove(mutation.getWord());
+            if (previous != null) {
+                retire(previous);
+            }
+            if (!mutation.isRemoval()) {
+                insert(mutation.getWord(), mutation.getMeanings());
+            }
+            if (nextId - live > live) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the words whose meanings contain every term in {@code query},
+     * best match first and alphabetically among equal scores, and returns
+     * {@code limit} of them starting at {@code offset}.
+     */
+    public Page search(String query, int offset, int limit) {
+        List<String> terms = terms(query);
+        // Only the best offset + limit hits are kept, worst at the head, so a
+        // common term does not mean sorting every word that has it.
+        int keep = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(keep, 1024), (a, b) -> a.compareTo(b));
+        int total = 0;
+        lock.readLock().lock();
+        try {
+            List<Postings> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null || list.live == 0) {
+                    return new Page(0, new LinkedHashMap<>(), new double[0]);
+                }
+                if (!lists.contains(list)) {
+                    lists.add(list);
+                }
+            }
+            if (lists.isEmpty()) {
+                return new Page(0, new LinkedHashMap<>(), new double[0]);
+            }
+            // Drive the merge from the rarest term.
+            lists.sort((a, b) -> Integer.compare(a.size, b.size));
+            double averageLength = live == 0 ? 1 : (double) liveLength / live;
+            double[] idf = new double[lists.size()];
+            for (int l = 0; l < idf.length; l++) {
+                idf[l] = Math.log(1 + (live - lists.get(l).live + 0.5) / (lists.get(l).live + 0.5));
+            }
+            int[] positions = new int[lists.size()];
+            Postings first = lists.get(0);
+            for (int i = 0; i < first.size; i++) {
+                int id = first.ids[i];
+                if (words[id] == null) {
+                    continue;
+                }
+                double score = termScore(idf[0], first.counts[i], lengths[id], averageLength);
+                boolean all = true;
+                for (int l = 1; l < lists.size() && all; l++) {
+                    Postings list = lists.get(l);
+                    int p = positions[l];
+                    while (p < list.size && list.ids[p] < id) {
+                        p++;
+                    }
+                    positions[l] = p;
+                    if (p < list.size && list.ids[p] == id) {
+                        score += termScore(idf[l], list.counts[p], lengths[id], averageLength);
+                    } else {
+                        all = false;
+                    }
+                }
+                if (all) {
+                    total++;
+                    if (best.size() < keep) {
+                        best.add(new Hit(id, words[id], score));
+                    } else if (best.peek().compareTo(score, words[id]) < 0) {
+                        best.poll();
+                        best.add(new Hit(id, words[id], score));
+                    }
+                }
+            }
+
+            Hit[] ranked = best.toArray(new Hit[0]);
+            Arrays.sort(ranked, (a, b) -> b.compareTo(a));
+            Map<String, List<String>> page = new LinkedHashMap<>();
+            double[] scores = new double[Math.max(0, ranked.length - offset)];
+            for (int i = offset; i < ranked.length; i++) {
+                List<String> meanings = dictionary.get(ranked[i].word);
+                if (meanings != null) { // null if the word was removed and the index not yet told
+                    scores[page.size()] = ranked[i].score;
+                    page.put(ranked[i].word, meanings);
+                }
+            }
+            return new Page(total, page, Arrays.copyOf(scores, page.size()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Number of words indexed. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // BM25 contribution of one term that occurs count times in a definition of the given length.
+    private static double termScore(double idf, int count, int length, double averageLength) {
+        return idf * count * (K1 + 1) / (count + K1 * (1 - B + B * length / averageLength));
+    }
+
+    private void insert(String word, List<String> wordMeanings) {
+        Map<String, Integer> counts = new HashMap<>();
+        int length = 0;
+        for (String meaning : wordMeanings) {
+            for (String term : terms(meaning)) {
+                counts.merge(term, 1, Integer::sum);
+                length++;
+            }
+        }
+        if (nextId == words.length) {
+            int capacity = words.length * 2;
+            words = Arrays.copyOf(words, capacity);
+            lists = Arrays.copyOf(lists, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        int id = nextId++;
+        Postings[] in = new Postings[counts.size()];
+        int n = 0;
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            Postings list = postings.computeIfAbsent(count.getKey(), Postings::new);
+            list.add(id, count.getValue());
+            in[n++] = list;
+        }
+        words[id] = word;
+        lists[id] = in;
+        lengths[id] = length;
+        currentIds.put(word, id);
+        live++;
+        liveLength += length;
+    }
+
+    private void retire(int id) {
+        for (Postings list : lists[id]) {
+            if (--list.live == 0) {
+                postings.remove(list.term);
+            }
+        }
+        words[id] = null;
+        lists[id] = null;
+        live--;
+        liveLength -= lengths[id];
+    }
+
+    // Drops retired ids from every posting list and renumbers the live ones
+    // in their old order, so the lists stay sorted.
+    private void rebuild() {
+        int[] renumbered = new int[nextId]; // -1 for a retired id
+        int next = 0;
+        for (int id = 0; id < nextId; id++) {
+            if (words[id] == null) {
+                renumbered[id] = -1;
+            } else {
+                renumbered[id] = next;
+                words[next] = words[id];
+                lists[next] = lists[id];
+                lengths[next] = lengths[id];
+                currentIds.put(words[next], next);
+                next++;
+            }
+        }
+        for (Postings list : postings.values()) {
+            int kept = 0;
+            for (int i = 0; i < list.size; i++) {
+                int id = renumbered[list.ids[i]];
+                if (id >= 0) {
+                    list.ids[kept] = id;
+                    list.counts[kept] = list.counts[i];
+                    kept++;
+                }
+            }
+            list.size = kept;
+            if (kept < list.ids.length / 4) {
+                list.ids = Arrays.copyOf(list.ids, Math.max(2, kept));
+                list.counts = Arrays.copyOf(list.counts, Math.max(2, kept));
+            }
+        }
+        int capacity = Math.max(16, next);
+        words = Arrays.copyOf(words, capacity);
+        lists = Arrays.copyOf(lists, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        Arrays.fill(words, next, capacity, null);
+        Arrays.fill(lists, next, capacity, null);
+        nextId = next;
+    }
+
+    // Lower-cased runs of letters and digits.
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inTerm = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inTerm && start < 0) {
+                start = i;
+            } else if (!inTerm && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}
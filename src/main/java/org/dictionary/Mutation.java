@@ -0,0 +1,50 @@
+package org.dictionary;
+
+// --- Mutation.java ---
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of one successful write: the full meanings list a word ended up
+ * with, or a removal. Because it records the end state of the entry rather than
+ * the operation, applying the same mutation twice is harmless, which is what
+ * lets the journal be replayed over a snapshot that may already contain it.
+ */
+public final class Mutation {
+    private final String word;
+    private final List<String> meanings; // null when the word was removed
+
+    private Mutation(String word, List<String> meanings) {
+        this.word = word;
+        this.meanings = meanings;
+    }
+
+    /** {@code meanings} must be an immutable list; it is stored and applied as is. */
+    public static Mutation put(String word, List<String> meanings) {
+        return new Mutation(word, meanings);
+    }
+
+    public static Mutation remove(String word) {
+        return new Mutation(word, null);
+    }
+
+    public String getWord() {
+        return word;
+    }
+
+    public List<String> getMeanings() {
+        return meanings;
+    }
+
+    public boolean isRemoval() {
+        return meanings == null;
+    }
+
+    public void applyTo(Map<String, List<String>> dictionary) {
+        if (meanings == null) {
+            dictionary.remove(word);
+        } else {
+            dictionary.put(word, meanings);
+        }
+    }
+}
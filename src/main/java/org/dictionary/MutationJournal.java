@@ -0,0 +1,405 @@
+package org.dictionary;
+
+// --- MutationJournal.java ---
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of {@link Mutation}s that sits next to the dictionary snapshot
+ * (e.g. {@code dictionary.json.journal}). Each write appends one small record, so
+ * its cost depends on the entry being changed rather than on the dictionary size.
+ *
+ * <p>Record layout: {@code [int payloadLength][int crc32][payload]}, where the
+ * payload is an op byte followed by the word and, for puts, the meanings. A batch
+ * record holds several such mutations behind one op byte and count, so a batch
+ * is replayed entirely or, if its record is torn, not at all. A torn record at
+ * the tail (crash mid-write) fails its length or CRC check and is cut off
+ * during recovery.
+ *
+ * <p>Once the journal grows past the compaction threshold it is renamed to
+ * {@code .journal.compacting}, a fresh journal is started, and a background
+ * thread writes a new snapshot and then deletes the old segment.
+ */
+public class MutationJournal {
+
+    public enum FsyncPolicy {
+        ALWAYS,   // force the channel after every append
+        INTERVAL, // force at most once per fsync interval
+        OS        // leave flushing to the operating system
+    }
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_BATCH = 3;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private final Path journalPath;
+    private final Path compactingPath;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+    private final long compactThresholdBytes;
+    private final Runnable snapshotWriter;
+    private final ExecutorService compactor;
+
+    private ScheduledExecutorService fsyncScheduler;
+    private FileChannel channel;
+    private long size;
+    private boolean compacting;
+    private int unappliedRecords; // appended but not yet in the dictionary; guarded by this
+    private volatile boolean unsynced;
+    private long unsyncedBytes; // appended since the last sync; guarded by this
+
+    /**
+     * @param snapshotWriter writes a complete snapshot of the current dictionary;
+     *                       called from the compaction thread
+     */
+    public MutationJournal(String dictPath, FsyncPolicy fsyncPolicy, long fsyncIntervalMs,
+                           long compactThresholdBytes, Runnable snapshotWriter) {
+        this.journalPath = Paths.get(dictPath + ".journal");
+        this.compactingPath = Paths.get(dictPath + ".journal.compacting");
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.compactThresholdBytes = compactThresholdBytes;
+        this.snapshotWriter = snapshotWriter;
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "journal-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Replays any journal segments on top of the already loaded snapshot and
+     * opens the journal for appending. Returns the number of records replayed.
+     */
+    public synchronized int recover(Map<String, List<String>> dictionary) throws IOException {
+        int replayed = 0;
+        boolean leftoverSegment = Files.exists(compactingPath);
+        if (leftoverSegment) {
+            replayed += replay(compactingPath, dictionary);
+        }
+        replayed += replay(journalPath, dictionary);
+
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        size = channel.size();
+        channel.position(size);
+
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            fsyncScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-fsync");
+                t.setDaemon(true);
+                return t;
+            });
+            fsyncScheduler.scheduleAtFixedRate(this::syncIfNeeded, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
+        // A previous compaction did not finish; fold that segment into a snapshot now.
+        if (leftoverSegment) {
+            compacting = true;
+            compactor.execute(this::compact);
+        }
+        return replayed;
+    }
+
+    /**
+     * Appends one mutation. Like a batch it is logged before it is applied, so
+     * the caller must report it with {@link #recordsApplied} once it is in the
+     * dictionary; no compaction starts until then.
+     */
+    public void append(Mutation mutation) throws IOException {
+        byte[] payload = encode(mutation);
+        synchronized (this) {
+            unappliedRecords++;
+            try {
+                writeRecord(payload);
+            } catch (IOException e) {
+                unappliedRecords--;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Appends all the mutations as one record, so recovery applies either all of
+     * them or none. Fails without writing anything if the batch does not fit in
+     * one record.
+     *
+     * <p>A batch is logged before it is applied, so until the caller reports it
+     * with {@link #recordsApplied} no compaction starts: its snapshot could miss
+     * the batch and then delete the only copy of it.
+     */
+    public void appendBatch(List<Mutation> mutations) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_BATCH);
+        out.writeInt(mutations.size());
+        for (Mutation mutation : mutations) {
+            writeMutation(out, mutation);
+            if (out.size() > MAX_RECORD_BYTES) {
+                throw new IOException("Batch is larger than the " + (MAX_RECORD_BYTES >> 20) + "MB journal record limit");
+            }
+        }
+        byte[] payload = bytes.toByteArray();
+        synchronized (this) {
+            unappliedRecords++;
+            try {
+                writeRecord(payload);
+            } catch (IOException e) {
+                unappliedRecords--;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Tells the journal that {@code count} records appended with
+     * {@link #append} or {@link #appendBatch} are now in the dictionary, or
+     * were abandoned, and starts a compaction that was held back for them.
+     */
+    public synchronized void recordsApplied(int count) throws IOException {
+        unappliedRecords -= count;
+        maybeCompact();
+    }
+
+    // Must be called while holding this object's monitor.
+    private void writeRecord(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length);
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        size += 8 + payload.length;
+
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            ServerEvents.JournalSync event = new ServerEvents.JournalSync();
+            event.begin();
+            channel.force(false);
+            event.end();
+            if (event.shouldCommit()) {
+                event.bytes = 8 + payload.length;
+                event.commit();
+            }
+        } else {
+            unsyncedBytes += 8 + payload.length;
+            unsynced = true;
+        }
+
+        maybeCompact();
+    }
+
+    /** Forces every appended record to disk regardless of the fsync policy. */
+    public void flush() throws IOException {
+        FileChannel current;
+        long bytes;
+        synchronized (this) {
+            current = channel;
+            bytes = unsyncedBytes;
+            unsyncedBytes = 0;
+        }
+        if (current != null && current.isOpen()) {
+            ServerEvents.JournalSync event = new ServerEvents.JournalSync();
+            event.begin();
+            unsynced = false;
+            current.force(false);
+            event.end();
+            if (event.shouldCommit()) {
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        if (fsyncScheduler != null) {
+            fsyncScheduler.shutdownNow();
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    private void syncIfNeeded() {
+        if (!unsynced) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Journal fsync failed: " + e.getMessage());
+        }
+    }
+
+    // Must be called while holding this object's monitor.
+    private void maybeCompact() throws IOException {
+        if (compacting || unappliedRecords > 0 || size < compactThresholdBytes) {
+            return;
+        }
+        compacting = true;
+        // If an earlier compaction failed its segment is still there; retry it
+        // instead of rotating over it.
+        if (!Files.exists(compactingPath)) {
+            channel.force(false);
+            unsyncedBytes = 0;
+            channel.close();
+            Files.move(journalPath, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            size = 0;
+        }
+        compactor.execute(this::compact);
+    }
+
+    private void compact() {
+        try {
+            // The snapshot is taken after the rotation, so everything in the old
+            // segment is already reflected in it and the segment can go.
+            snapshotWriter.run();
+            Files.deleteIfExists(compactingPath);
+        } catch (Exception e) {
+            System.err.println("Journal compaction failed: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    private int replay(Path path, Map<String, List<String>> dictionary) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int count = 0;
+        long goodOffset = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+                int expectedCrc = in.readInt();
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+                for (Mutation mutation : decode(payload)) {
+                    mutation.applyTo(dictionary);
+                }
+                goodOffset += 8 + length;
+                count++;
+            }
+        } catch (EOFException e) {
+            // Truncated record at the tail; everything before goodOffset is intact.
+        }
+
+        if (goodOffset < Files.size(path)) {
+            System.out.println("Discarding torn journal tail in " + path.getFileName() + " at offset " + goodOffset);
+            try (FileChannel truncate = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                truncate.truncate(goodOffset);
+            }
+        }
+        return count;
+    }
+
+    private static byte[] encode(Mutation mutation) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeMutation(new DataOutputStream(bytes), mutation);
+        return bytes.toByteArray();
+    }
+
+    private static void writeMutation(DataOutputStream out, Mutation mutation) throws IOException {
+        out.writeByte(mutation.isRemoval() ? OP_REMOVE : OP_PUT);
+        writeString(out, mutation.getWord());
+        if (!mutation.isRemoval()) {
+            List<String> meanings = mutation.getMeanings();
+            out.writeInt(meanings.size());
+            for (String meaning : meanings) {
+                writeString(out, meaning);
+            }
+        }
+    }
+
+    private static List<Mutation> decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        if (op != OP_BATCH) {
+            return Collections.singletonList(readMutation(in, op));
+        }
+        int count = in.readInt();
+        List<Mutation> mutations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            mutations.add(readMutation(in, in.readByte()));
+        }
+        return mutations;
+    }
+
+    private static Mutation readMutation(DataInputStream in, byte op) throws IOException {
+        String word = readString(in);
+        if (op == OP_REMOVE) {
+            return Mutation.remove(word);
+        }
+        int count = in.readInt();
+        List<String> meanings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            meanings.add(readString(in));
+        }
+        return Mutation.put(word, Collections.unmodifiableList(meanings));
+    }
+
+    // DataOutputStream.writeUTF caps strings at 64KB, so lengths are written explicitly.
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
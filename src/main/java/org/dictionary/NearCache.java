@@ -0,0 +1,74 @@
+package org.dictionary;
+
+// --- NearCache.java ---
+
+/**
+ * The client side of query caching: recent {@code query} answers kept by a
+ * {@link PooledDictionaryClient}, so a hot word is read without a round
+ * trip. Like the server's {@link QueryResponseCache}, it is a bounded
+ * {@link SegmentedLruCache}, guarded against caching an answer that was
+ * invalidated while it was in flight: a lookup that misses takes a
+ * {@link #stamp} before asking the server and hands it back to {@link #put}.
+ *
+ * <p>Entries are dropped when the server pushes an invalidation for the
+ * word, when a write through the same client changes it, when any pooled
+ * connection closes (its pushes would be lost), and in any case once they
+ * are {@code ttlMillis} old. The last bounds staleness should a push be
+ * delayed.
+ */
+public class NearCache {
+    private final SegmentedLruCache<PooledDictionaryClient.Response> cache;
+
+    public NearCache(int capacity, long ttlMillis) {
+        this.cache = new SegmentedLruCache<>(capacity, ttlMillis);
+    }
+
+    /** Returns the cached answer for the word, or null; counts a hit or a miss. */
+    public PooledDictionaryClient.Response get(String word) {
+        return cache.get(word);
+    }
+
+    /** Taken before asking the server for an answer that is then passed to {@link #put}. */
+    public long stamp(String word) {
+        return cache.stamp(word);
+    }
+
+    /** Caches the answer unless the word was invalidated since {@code stamp} was taken. */
+    public void put(String word, long stamp, PooledDictionaryClient.Response response) {
+        cache.put(word, stamp, response);
+    }
+
+    public void invalidate(String word) {
+        cache.invalidate(word);
+    }
+
+    /** Drops everything, including answers still in flight. */
+    public void clear() {
+        cache.clear();
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    /** Invalidations received, pushed by the server or made by this client's own writes. */
+    public long getInvalidations() {
+        return cache.getInvalidations();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /** One-line summary, e.g. for a client's log. */
+    public String describe() {
+        long h = getHits();
+        long total = h + getMisses();
+        return String.format("Near cache: %d/%d entries, hit rate %.1f%% (%d of %d lookups), %d invalidations",
+                size(), cache.getCapacity(), total == 0 ? 0.0 : h * 100.0 / total, h, total, getInvalidations());
+    }
+}
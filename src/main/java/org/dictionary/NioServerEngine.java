@@ -0,0 +1,605 @@
+package org.dictionary;
+
+// --- NioServerEngine.java ---
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking server engine for {@code --engine=nio}. One thread accepts
+ * connections and hands them round-robin to a few selector event loops. The
+ * loops read newline-delimited frames incrementally and pass complete lines to
+ * a worker pool, which runs them through the shared {@link RequestProcessor}.
+ * Idle connections therefore cost a selection key and a small line buffer
+ * instead of a thread.
+ *
+ * <p>Requests from one connection are processed one at a time and answered in
+ * order, exactly like the blocking {@link ClientHandler}. Requests that carry an
+ * {@code id} are the exception: up to {@code maxInFlight} of them per
+ * connection run concurrently on the worker pool and are answered as they
+ * complete.
+ *
+ * <p>A client that sends faster than it reads is held back without blocking a
+ * thread. Once {@code maxInFlight} of its lines are waiting to be processed
+ * the loop stops reading from it, and once it has too much unsent response
+ * data its requests are left queued until the socket drains.
+ */
+public class NioServerEngine {
+    private static final int READ_BUFFER_BYTES = 16 * 1024;
+    private static final int MAX_LINE_BYTES = 16 * 1024 * 1024;
+    // Stop reading from, and processing requests for, a client that has this
+    // much unsent response data queued.
+    private static final long MAX_PENDING_WRITE_BYTES = 4L * 1024 * 1024;
+    private static final int POOLED_BUFFER_BYTES = 4 * 1024;
+
+    private final int port;
+    private final RequestProcessor processor;
+    private final ServerMetrics metrics;
+    private final Consumer<String> onConnect;
+    private final Consumer<String> onDisconnect;
+    private final EventLoop[] loops;
+    private final ExecutorService workers;
+    private final int maxInFlight;
+    private final BufferPool bufferPool = new BufferPool(POOLED_BUFFER_BYTES, 1024);
+    private volatile boolean running;
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * @param onConnect    called with the client's host address when a connection is accepted
+     * @param onDisconnect called with the client's host address when a connection closes
+     */
+    public NioServerEngine(int port, DictionaryManager manager, int eventLoopCount, int workerCount, int maxInFlight,
+                           Consumer<String> onConnect, Consumer<String> onDisconnect) throws IOException {
+        this.port = port;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.processor = new RequestProcessor(manager);
+        this.metrics = manager.getMetrics();
+        this.onConnect = onConnect;
+        this.onDisconnect = onDisconnect;
+        this.loops = new EventLoop[Math.max(1, eventLoopCount)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        AtomicInteger workerId = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, workerCount), r -> {
+            Thread t = new Thread(r, "nio-worker-" + workerId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Binds the port and accepts connections on the calling thread until {@link #stop()}. */
+    public void run() throws IOException {
+        running = true;
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+
+        int next = 0;
+        try {
+            while (running) {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                loops[next++ % loops.length].register(channel);
+            }
+        } catch (ClosedChannelException e) {
+            if (running) {
+                throw e;
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing server channel: " + e.getMessage());
+        }
+        for (EventLoop loop : loops) {
+            loop.execute(loop::shutdown);
+        }
+        workers.shutdownNow();
+    }
+
+    private final class EventLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // Only this loop's thread reads, so one buffer serves all of its connections.
+        final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+
+        EventLoop(int id) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "nio-event-loop-" + id);
+            this.thread.setDaemon(true);
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void register(SocketChannel channel) {
+            execute(() -> {
+                try {
+                    Connection connection = new Connection(this, channel);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    onConnect.accept(connection.host);
+                } catch (IOException e) {
+                    closeQuietly(channel);
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            while (selector.isOpen()) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    System.err.println("Selector failed: " + e.getMessage());
+                    break;
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                if (!selector.isOpen()) {
+                    break;
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isValid() && key.isReadable()) {
+                        connection.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        }
+
+        void shutdown() {
+            for (SelectionKey key : selector.keys()) {
+                ((Connection) key.attachment()).close();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Error closing selector: " + e.getMessage());
+            }
+        }
+    }
+
+    private final class Connection {
+        final EventLoop loop;
+        final SocketChannel channel;
+        final String host;
+        SelectionKey key;
+
+        // Bytes of the line currently being received (loop thread only).
+        byte[] line = new byte[256];
+        int lineLength;
+
+        final Queue<String> requests = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger(); // size of requests; reading stops at maxInFlight
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicInteger inFlight = new AtomicInteger(); // pipelined requests on other workers
+        final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+        final AtomicLong pendingBytes = new AtomicLong();
+        // Held while a response line is copied to out, which with output is
+        // reused for every response on this connection.
+        final Object responseLock = new Object();
+        final ResponseWriter out = new ResponseWriter(this);
+        final RequestProcessor.Output output;
+        volatile boolean closed;
+
+        Connection(EventLoop loop, SocketChannel channel) throws IOException {
+            this.loop = loop;
+            this.channel = channel;
+            this.host = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+            this.output = processor.newOutput(out, responseLock);
+        }
+
+        void onReadable() {
+            ByteBuffer buffer = loop.readBuffer;
+            buffer.clear();
+            int read;
+            try {
+                read = channel.read(buffer);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (read < 0) {
+                close();
+                return;
+            }
+
+            byte[] bytes = buffer.array();
+            boolean gotLine = false;
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') {
+                    append(bytes, start, i - start);
+                    int length = lineLength;
+                    if (length > 0 && line[length - 1] == '\r') {
+                        length--;
+                    }
+                    requests.add(new String(line, 0, length, StandardCharsets.UTF_8));
+                    queued.incrementAndGet();
+                    lineLength = 0;
+                    start = i + 1;
+                    gotLine = true;
+                }
+            }
+            append(bytes, start, read - start);
+            if (lineLength > MAX_LINE_BYTES) {
+                System.err.println("Closing connection from " + host + ": request line too long");
+                close();
+                return;
+            }
+            if (gotLine) {
+                scheduleDrain();
+                updateInterest();
+            }
+        }
+
+        private void append(byte[] bytes, int offset, int length) {
+            if (lineLength + length > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+            }
+            System.arraycopy(bytes, offset, line, lineLength, length);
+            lineLength += length;
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                workers.execute(this::drain);
+            }
+        }
+
+        // Runs on a worker; processes this connection's queued lines in order,
+        // except that requests with an id are fanned out while there is room.
+        // Returns early while the client is behind on reading its responses;
+        // flush() starts it again once the socket has drained.
+        private void drain() {
+            do {
+                String line;
+                while (!closed && writable() && (line = requests.poll()) != null) {
+                    if (queued.decrementAndGet() == maxInFlight - 1) {
+                        loop.execute(this::updateInterest); // below the cap again: resume reading
+                    }
+                    RequestProcessor.Request request = processor.parse(line);
+                    if (request == null) {
+                        continue;
+                    }
+                    if (request.hasId() && inFlight.incrementAndGet() <= maxInFlight) {
+                        dispatch(request);
+                    } else {
+                        if (request.hasId()) {
+                            inFlight.decrementAndGet();
+                        }
+                        respond(request);
+                    }
+                }
+                draining.set(false);
+            } while (!closed && writable() && !requests.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        private boolean writable() {
+            return pendingBytes.get() < MAX_PENDING_WRITE_BYTES;
+        }
+
+        private void dispatch(RequestProcessor.Request request) {
+            try {
+                workers.execute(() -> {
+                    try {
+                        if (!closed) {
+                            respond(request);
+                        }
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.decrementAndGet(); // shutting down
+            }
+        }
+
+        // The processor holds responseLock only while it copies a finished
+        // response out, so pipelined responses never interleave.
+        private void respond(RequestProcessor.Request request) {
+            ServerEvents.Request event = new ServerEvents.Request();
+            event.begin();
+            long start = System.nanoTime();
+            String status = null;
+            try {
+                status = processor.process(request, output);
+            } catch (IOException e) {
+                loop.execute(this::close);
+            }
+            metrics.recordCommand(request.getCommand(), System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.command = request.getCommand();
+                event.wordLength = request.getWordLength();
+                event.status = status;
+                event.commit();
+            }
+        }
+
+        void enqueue(ByteBuffer buffer) {
+            int length = buffer.remaining();
+            outbound.add(buffer);
+            pendingBytes.addAndGet(length);
+            loop.execute(this::flush);
+        }
+
+        // Loop thread only.
+        void flush() {
+            if (closed) {
+                releaseOutbound();
+                return;
+            }
+            try {
+                ByteBuffer buffer;
+                while ((buffer = outbound.peek()) != null) {
+                    int written = channel.write(buffer);
+                    pendingBytes.addAndGet(-written);
+                    if (buffer.hasRemaining()) {
+                        break;
+                    }
+                    outbound.poll();
+                    bufferPool.release(buffer);
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (writable() && !requests.isEmpty()) {
+                scheduleDrain();
+            }
+            updateInterest();
+        }
+
+        private void updateInterest() {
+            if (!key.isValid()) {
+                return;
+            }
+            int ops = 0;
+            if (writable() && queued.get() < maxInFlight) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (!outbound.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+
+        // Loop thread only.
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (key != null) {
+                key.cancel();
+            }
+            closeQuietly(channel);
+            releaseOutbound();
+            output.close();
+            onDisconnect.accept(host);
+        }
+
+        private void releaseOutbound() {
+            ByteBuffer buffer;
+            while ((buffer = outbound.poll()) != null) {
+                bufferPool.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Encodes responses to UTF-8 straight into pooled buffers, one chunk of
+     * chars at a time, and queues each buffer as it fills. A large streamed
+     * response therefore starts going out while it is still being written, and
+     * a small one costs no heap allocation. The writer never waits for the
+     * socket; the connection stops taking requests instead. Already-encoded bytes (cached responses) are
+     * copied in as they are. One per connection, used under its response lock.
+     */
+    private final class ResponseWriter extends Writer implements RequestProcessor.Utf8Sink {
+        private static final int CHUNK_CHARS = 1024;
+
+        private final Connection connection;
+        private final char[] chunk = new char[CHUNK_CHARS];
+        private final CharBuffer chars = CharBuffer.wrap(chunk);
+        // REPLACE matches String.getBytes for unpaired surrogates.
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private int length;
+        private ByteBuffer current; // being filled, not yet queued
+
+        ResponseWriter(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void write(int c) {
+            chunk[length++] = (char) c;
+            if (length == CHUNK_CHARS) {
+                encodeChunk(false);
+            }
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int count) {
+            while (count > 0) {
+                int n = Math.min(count, CHUNK_CHARS - length);
+                System.arraycopy(buffer, offset, chunk, length, n);
+                length += n;
+                offset += n;
+                count -= n;
+                if (length == CHUNK_CHARS) {
+                    encodeChunk(false);
+                }
+            }
+        }
+
+        @Override
+        public void write(String text, int offset, int count) {
+            while (count > 0) {
+                int n = Math.min(count, CHUNK_CHARS - length);
+                text.getChars(offset, offset + n, chunk, length);
+                length += n;
+                offset += n;
+                count -= n;
+                if (length == CHUNK_CHARS) {
+                    encodeChunk(false);
+                }
+            }
+        }
+
+        @Override
+        public void writeUtf8(byte[] bytes, int offset, int count) {
+            encodeChunk(true);
+            while (count > 0) {
+                ByteBuffer buffer = buffer();
+                int n = Math.min(count, buffer.remaining());
+                buffer.put(bytes, offset, n);
+                offset += n;
+                count -= n;
+            }
+        }
+
+        /** Queues everything written so far. */
+        @Override
+        public void flush() {
+            encodeChunk(true);
+            if (current != null) {
+                current.flip();
+                connection.enqueue(current);
+                current = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+
+        // Returns the buffer being filled, queueing it and starting a new one once it is full.
+        private ByteBuffer buffer() {
+            if (current != null && !current.hasRemaining()) {
+                return nextBuffer();
+            }
+            if (current == null) {
+                current = bufferPool.acquire(POOLED_BUFFER_BYTES);
+            }
+            return current;
+        }
+
+        // Queues the current buffer even if the encoder left a few bytes of it unused.
+        private ByteBuffer nextBuffer() {
+            current.flip();
+            connection.enqueue(current);
+            current = null;
+            return buffer();
+        }
+
+        private void encodeChunk(boolean all) {
+            int end = length;
+            // Never split a surrogate pair across two chunks.
+            if (!all && Character.isHighSurrogate(chunk[end - 1])) {
+                end--;
+            }
+            if (end == 0) {
+                return;
+            }
+            chars.limit(end).position(0);
+            encoder.reset();
+            ByteBuffer buffer = buffer();
+            while (encoder.encode(chars, buffer, true).isOverflow()) {
+                buffer = nextBuffer();
+            }
+            while (encoder.flush(buffer).isOverflow()) {
+                buffer = nextBuffer();
+            }
+            if (end < length) {
+                chunk[0] = chunk[end];
+            }
+            length -= end;
+        }
+    }
+
+    /** Recycles fixed-size direct buffers for responses; larger responses get a one-off heap buffer. */
+    private static final class BufferPool {
+        private final int bufferBytes;
+        private final int maxPooled;
+        private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pooled = new AtomicInteger();
+
+        BufferPool(int bufferBytes, int maxPooled) {
+            this.bufferBytes = bufferBytes;
+            this.maxPooled = maxPooled;
+        }
+
+        ByteBuffer acquire(int size) {
+            if (size > bufferBytes) {
+                return ByteBuffer.allocate(size);
+            }
+            ByteBuffer buffer = free.poll();
+            if (buffer == null) {
+                return ByteBuffer.allocateDirect(bufferBytes);
+            }
+            pooled.decrementAndGet();
+            buffer.clear();
+            return buffer;
+        }
+
+        void release(ByteBuffer buffer) {
+            if (buffer.isDirect() && buffer.capacity() == bufferBytes && pooled.incrementAndGet() <= maxPooled) {
+                free.add(buffer);
+            } else if (buffer.isDirect() && buffer.capacity() == bufferBytes) {
+                pooled.decrementAndGet();
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Already closed or broken; nothing left to release.
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package org.dictionary;
+
+// --- PooledDictionaryClient.java ---
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe client for programs that use the dictionary from many
+ * threads. It keeps up to {@code --pool-size} connections to one server, each
+ * an {@link AsyncDictionaryClient} that can carry many requests at once, and
+ * hands requests to them in turn. The constructor opens the first connection,
+ * so a bad address fails straight away; the others open when first used, and
+ * a connection that has closed is reopened the next time its turn comes.
+ *
+ * <p>The typed methods ({@link #query}, {@link #add}, {@link #remove},
+ * {@link #addMeaning}, {@link #updateMeaning}) wait for the answer and throw
+ * an IOException if the server cannot be reached or does not answer within
+ * {@code --request-timeout-ms}. {@link #send} takes any command and returns a
+ * future instead.
+ *
+ * <p>With {@code --near-cache-entries=N}, the client keeps a {@link NearCache}
+ * of up to N query answers. Each connection then opens with the
+ * {@code track} command, so the server pushes an invalidation when a cached
+ * word changes; entries also expire after {@code --near-cache-ttl-ms}.
+ * Queries that ask for suggestions always go to the server. If the server
+ * refuses to track (a {@link ShardRouter}, or {@code --client-tracking=false}),
+ * the cache stays off.
+ *
+ * <p>A background thread pings connections that have sat idle for
+ * {@code --validate-idle-ms}, and at once any connection on which a request
+ * just timed out. One that does not answer within the request timeout is
+ * closed, failing whatever it still had outstanding, and is reopened on its
+ * next use.
+ */
+public class PooledDictionaryClient implements AutoCloseable {
+
+    /** The server's answer to one of the typed calls. */
+    public static final class Response {
+        private final JsonObject json;
+
+        Response(JsonObject json) {
+            this.json = json;
+        }
+
+        /** "success", or what went wrong, e.g. "not_found", "duplicate", "read_only" or "error". */
+        public String getStatus() {
+            return json.get("status").getAsString();
+        }
+
+        public boolean isSuccess() {
+            return "success".equals(getStatus());
+        }
+
+        /** The server's explanation, or null if it sent none (a successful query sends meanings instead). */
+        public String getMessage() {
+            return json.has("message") ? json.get("message").getAsString() : null;
+        }
+
+        /** The meanings a successful query found; empty for anything else. */
+        public List<String> getMeanings() {
+            return strings("meanings");
+        }
+
+        /** Spelling suggestions sent with a missed query that asked for them. */
+        public List<String> getSuggestions() {
+            return strings("suggestions");
+        }
+
+        /** The whole response, for fields the getters do not cover. */
+        public JsonObject getJson() {
+            return json;
+        }
+
+        private List<String> strings(String field) {
+            if (!json.has(field)) {
+                return Collections.emptyList();
+            }
+            List<String> values = new ArrayList<>();
+            for (JsonElement value : json.getAsJsonArray(field)) {
+                values.add(value.getAsString());
+            }
+            return values;
+        }
+    }
+
+    // One place in the pool. The connection is replaced under the slot's lock.
+    private static final class Slot {
+        private AsyncDictionaryClient client;
+        private volatile long lastUsedNanos = System.nanoTime();
+        private volatile boolean suspect;  // a request timed out; ping it now
+        private volatile boolean checking; // a ping is out
+    }
+
+    private final String host;
+    private final int port;
+    private final int connectTimeoutMillis;
+    private final long requestTimeoutMillis;
+    private final long validateIdleNanos;
+    private final Slot[] slots;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Gson gson = new Gson();
+    private final ScheduledExecutorService healthChecker;
+    private final NearCache nearCache; // null unless --near-cache-entries is set
+    private volatile boolean tracking;
+    private volatile boolean closed;
+
+    public PooledDictionaryClient(String host, int port) throws IOException {
+        this(host, port, new ServerOptions());
+    }
+
+    public PooledDictionaryClient(String host, int port, ServerOptions options) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.connectTimeoutMillis = options.getInt("connect-timeout-ms", 2000);
+        this.requestTimeoutMillis = options.getLong("request-timeout-ms", 5000);
+        long validateIdleMillis = options.getLong("validate-idle-ms", 30000);
+        this.validateIdleNanos = TimeUnit.MILLISECONDS.toNanos(validateIdleMillis);
+        this.slots = new Slot[Math.max(1, options.getInt("pool-size", 4))];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+        int nearCacheEntries = options.getInt("near-cache-entries", 0);
+        this.nearCache = nearCacheEntries > 0
+                ? new NearCache(nearCacheEntries, options.getLong("near-cache-ttl-ms", 30000)) : null;
+        this.tracking = nearCache != null;
+        connection(slots[0]);
+
+        healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dictionary-pool-health");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(100, Math.min(1000, validateIdleMillis));
+        healthChecker.scheduleAtFixedRate(this::checkConnections, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Response query(String word) throws IOException {
+        return query(word, false);
+    }
+
+    /** With {@code suggest}, a word that is not found comes back with spelling suggestions. */
+    public Response query(String word, boolean suggest) throws IOException {
+        JsonObject request = request("query", word, 0);
+        if (suggest) {
+            request.addProperty("suggest", true);
+        }
+        if (!tracking || suggest) {
+            return call(request);
+        }
+        Response cached = nearCache.get(word);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = nearCache.stamp(word);
+        Response response = call(request);
+        nearCache.put(word, stamp, response);
+        return response;
+    }
+
+    public Response add(String word, List<String> meanings) throws IOException {
+        return add(word, meanings, 0);
+    }
+
+    /** {@code delayMillis} asks the server to hold the word's lock that long, for testing concurrency. */
+    public Response add(String word, List<String> meanings, long delayMillis) throws IOException {
+        JsonObject request = request("add", word, delayMillis);
+        request.add("meanings", gson.toJsonTree(meanings));
+        return write(word, request);
+    }
+
+    public Response remove(String word) throws IOException {
+        return remove(word, 0);
+    }
+
+    public Response remove(String word, long delayMillis) throws IOException {
+        return write(word, request("remove", word, delayMillis));
+    }
+
+    public Response addMeaning(String word, String newMeaning) throws IOException {
+        return addMeaning(word, newMeaning, 0);
+    }
+
+    public Response addMeaning(String word, String newMeaning, long delayMillis) throws IOException {
+        JsonObject request = request("addMeaning", word, delayMillis);
+        request.addProperty("newMeaning", newMeaning);
+        return write(word, request);
+    }
+
+    public Response updateMeaning(String word, String oldMeaning, String newMeaning) throws IOException {
+        return updateMeaning(word, oldMeaning, newMeaning, 0);
+    }
+
+    public Response updateMeaning(String word, String oldMeaning, String newMeaning, long delayMillis)
+            throws IOException {
+        JsonObject request = request("updateMeaning", word, delayMillis);
+        request.addProperty("oldMeaning", oldMeaning);
+        request.addProperty("newMeaning", newMeaning);
+        return write(word, request);
+    }
+
+    /**
+     * Sends any request on the next connection and returns a future for the
+     * response. The future fails with an IOException if no connection can be
+     * opened, the connection closes, or the request timeout passes first.
+     * Like {@link AsyncDictionaryClient#send}, it completes on a connection's
+     * reader thread.
+     */
+    public CompletableFuture<JsonObject> send(JsonObject request) {
+        CompletableFuture<JsonObject> answer = new CompletableFuture<>();
+        if (closed) {
+            answer.completeExceptionally(new IOException("Client is closed."));
+            return answer;
+        }
+        Slot slot = slots[Math.floorMod(next.getAndIncrement(), slots.length)];
+        AsyncDictionaryClient client;
+        try {
+            client = connection(slot);
+        } catch (IOException e) {
+            answer.completeExceptionally(new IOException("Could not connect to " + host + ":" + port + ": "
+                    + e.getMessage()));
+            return answer;
+        }
+        slot.lastUsedNanos = System.nanoTime();
+        client.send(request).orTimeout(requestTimeoutMillis, TimeUnit.MILLISECONDS).whenComplete((response, failure) -> {
+            if (failure == null) {
+                answer.complete(response);
+            } else if (failure instanceof TimeoutException) {
+                slot.suspect = true;
+                answer.completeExceptionally(new IOException("No response from " + host + ":" + port + " within "
+                        + requestTimeoutMillis + " ms"));
+            } else {
+                answer.completeExceptionally(failure);
+            }
+        });
+        return answer;
+    }
+
+    /** The near cache with its hit and miss counts, or null if --near-cache-entries was not set. */
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    /** Number of connections currently open. */
+    public int getOpenConnections() {
+        int open = 0;
+        for (Slot slot : slots) {
+            synchronized (slot) {
+                if (slot.client != null && !slot.client.isClosed()) {
+                    open++;
+                }
+            }
+        }
+        return open;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        healthChecker.shutdownNow();
+        for (Slot slot : slots) {
+            synchronized (slot) {
+                if (slot.client != null) {
+                    slot.client.close();
+                }
+            }
+        }
+    }
+
+    private AsyncDictionaryClient connection(Slot slot) throws IOException {
+        synchronized (slot) {
+            if (slot.client == null || slot.client.isClosed()) {
+                AsyncDictionaryClient client = new AsyncDictionaryClient(host, port, connectTimeoutMillis);
+                if (tracking) {
+                    startTracking(client);
+                }
+                slot.client = client;
+                slot.suspect = false;
+            }
+            return slot.client;
+        }
+    }
+
+    // Subscribes the new connection to invalidations before it carries any query.
+    private void startTracking(AsyncDictionaryClient client) throws IOException {
+        client.setPushListener(this::onPush);
+        client.setCloseListener(nearCache::clear); // its invalidations would be lost
+        JsonObject track = new JsonObject();
+        track.addProperty("command", "track");
+        JsonObject response;
+        try {
+            response = client.send(track).get(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            client.close();
+            throw new IOException("Could not start tracking: " + e.getMessage());
+        } catch (InterruptedException e) {
+            client.close();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while starting tracking");
+        }
+        if (!"success".equals(response.get("status").getAsString())) {
+            tracking = false;
+            nearCache.clear();
+            System.err.println("Near cache off; " + host + ":" + port + " does not track: "
+                    + (response.has("message") ? response.get("message").getAsString() : response));
+        }
+    }
+
+    private void onPush(JsonObject push) {
+        if (!"invalidate".equals(push.get("type").getAsString())) {
+            return;
+        }
+        if (push.has("all") && push.get("all").getAsBoolean()) {
+            nearCache.clear();
+        } else {
+            for (JsonElement word : push.getAsJsonArray("words")) {
+                nearCache.invalidate(word.getAsString());
+            }
+        }
+    }
+
+    // A write through this client drops the word at once rather than waiting for the push.
+    private Response write(String word, JsonObject request) throws IOException {
+        try {
+            return call(request);
+        } finally {
+            if (nearCache != null) {
+                nearCache.invalidate(word);
+            }
+        }
+    }
+
+    private Response call(JsonObject request) throws IOException {
+        try {
+            return new Response(send(request).get());
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the server");
+        }
+    }
+
+    private static JsonObject request(String command, String word, long delayMillis) {
+        JsonObject request = new JsonObject();
+        request.addProperty("command", command);
+        request.addProperty("word", word);
+        if (delayMillis > 0) {
+            request.addProperty("delay", delayMillis);
+        }
+        return request;
+    }
+
+    // Pings connections that are idle or suspect and closes any that stay silent.
+    // Any answer counts, so this works against servers that predate "ping".
+    private void checkConnections() {
+        long now = System.nanoTime();
+        for (Slot slot : slots) {
+            AsyncDictionaryClient client;
+            synchronized (slot) {
+                client = slot.client;
+            }
+            if (client == null || client.isClosed() || slot.checking
+                    || (!slot.suspect && now - slot.lastUsedNanos < validateIdleNanos)) {
+                continue;
+            }
+            slot.checking = true;
+            slot.lastUsedNanos = now;
+            JsonObject ping = new JsonObject();
+            ping.addProperty("command", "ping");
+            client.send(ping).orTimeout(requestTimeoutMillis, TimeUnit.MILLISECONDS).whenComplete((response, failure) -> {
+                if (failure instanceof TimeoutException) {
+                    System.err.println("Closing unresponsive connection to " + host + ":" + port);
+                }
+                if (failure != null) {
+                    client.close();
+                }
+                slot.suspect = false;
+                slot.checking = false;
+            });
+        }
+    }
+}
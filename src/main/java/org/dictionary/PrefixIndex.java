@@ -0,0 +1,66 @@
+package org.dictionary;
+
+// --- PrefixIndex.java ---
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Every word in the dictionary in sorted order, for the {@code prefix}
+ * command. Words sharing a prefix sit next to each other, so a lookup seeks
+ * to the first one in O(log n) and then walks forward only as far as the
+ * results it returns, however large the dictionary is.
+ *
+ * <p>It is a {@link ConcurrentSkipListSet}, so lookups take no lock and run
+ * alongside writes. {@link DictionaryManager} keeps it in step through its
+ * mutation listeners; the word strings are the dictionary's own keys, so the
+ * index only adds the skip list nodes.
+ */
+public class PrefixIndex {
+    private final ConcurrentSkipListSet<String> words;
+
+    public PrefixIndex(Collection<String> initialWords) {
+        this.words = new ConcurrentSkipListSet<>(initialWords);
+    }
+
+    /** Applies one write: a removal drops the word, anything else makes sure it is present. */
+    public void apply(Mutation mutation) {
+        if (mutation.isRemoval()) {
+            words.remove(mutation.getWord());
+        } else {
+            words.add(mutation.getWord());
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} words starting with {@code prefix}, in
+     * ascending order. An empty prefix matches every word.
+     */
+    public List<String> wordsWithPrefix(String prefix, int limit) {
+        List<String> found = new ArrayList<>(Math.min(limit, 64));
+        for (String word : words.tailSet(prefix)) {
+            if (found.size() >= limit || !word.startsWith(prefix)) {
+                break;
+            }
+            found.add(word);
+        }
+        return found;
+    }
+
+    /** Returns up to {@code limit} words that sort after {@code after}, in ascending order. */
+    public List<String> wordsAfter(String after, int limit) {
+        List<String> found = new ArrayList<>(Math.min(limit, 64));
+        for (String word : words.tailSet(after, false)) {
+            if (found.size() >= limit) {
+                break;
+            }
+            found.add(word);
+        }
+        return found;
+    }
+
+    public int size() {
+        return words.size();
+    }
+}
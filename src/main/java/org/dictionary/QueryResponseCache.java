@@ -0,0 +1,89 @@
+package org.dictionary;
+
+// --- QueryResponseCache.java ---
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ready-to-send {@code query} responses keyed by word, both for words that
+ * exist and for "not found" answers, so a hot word is serialized once rather
+ * than on every request. Bounded to a fixed number of entries, in a
+ * {@link SegmentedLruCache}.
+ *
+ * <p>{@link DictionaryManager} calls {@link #invalidate} after every
+ * successful write, while still holding the word's lock. A lookup that misses
+ * takes a {@link #stamp} before reading the dictionary and hands it back to
+ * {@link #put}; if the word was invalidated in between, the possibly stale
+ * response is simply not cached.
+ */
+public class QueryResponseCache {
+
+    /** One cached response, as JSON text and as UTF-8 bytes, without an id. */
+    public static final class CachedResponse {
+        private final String json;
+        private final byte[] utf8;
+        private final String status;
+
+        CachedResponse(String json, String status) {
+            this.json = json;
+            this.utf8 = json.getBytes(StandardCharsets.UTF_8);
+            this.status = status;
+        }
+
+        public String getJson() {
+            return json;
+        }
+
+        public byte[] getUtf8() {
+            return utf8;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+    }
+
+    private final SegmentedLruCache<CachedResponse> cache;
+
+    public QueryResponseCache(int capacity) {
+        this.cache = new SegmentedLruCache<>(capacity, 0);
+    }
+
+    /** Returns the cached response for the word, or null; counts a hit or a miss. */
+    public CachedResponse get(String word) {
+        return cache.get(word);
+    }
+
+    /** Taken before reading the dictionary for a response that is then passed to {@link #put}. */
+    public long stamp(String word) {
+        return cache.stamp(word);
+    }
+
+    /** Caches the response unless the word was invalidated since {@code stamp} was taken. */
+    public void put(String word, long stamp, CachedResponse response) {
+        cache.put(word, stamp, response);
+    }
+
+    public void invalidate(String word) {
+        cache.invalidate(word);
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /** One-line summary for the server log. */
+    public String describe() {
+        long h = getHits();
+        long total = h + getMisses();
+        return String.format("Query cache: %d/%d entries, hit rate %.1f%% (%d of %d lookups)",
+                size(), cache.getCapacity(), total == 0 ? 0.0 : h * 100.0 / total, h, total);
+    }
+}
@@ -0,0 +1,394 @@
+package org.dictionary;
+
+// --- ReplicationFollower.java ---
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps this server's dictionary a copy of a leader's, making it a read
+ * replica. Started with {@code --replicate-from=host:port}, where the port is
+ * the leader's {@code --replication-port} (see {@link ReplicationLeader} for
+ * the protocol). Queries are answered from the local copy; clients that try to
+ * write are told to go to the leader.
+ *
+ * <p>Writes arrive in order and are applied in groups: whatever has arrived by
+ * the time the previous group is done goes through
+ * {@link DictionaryManager#applyReplicated} as one batch, so a busy stream
+ * costs one persistence step per group rather than per write.
+ *
+ * <p>The position reached, the leader's log id and the last write applied, is
+ * checkpointed to {@code <dictionary>.replica} every
+ * {@code --replication-checkpoint-ms}, after flushing the dictionary so the
+ * file never claims more than is on disk. After a restart the follower loads
+ * its own dictionary file, sends that position, and the leader either streams
+ * on from it or, if it no longer holds the writes that follow (it restarted,
+ * or the gap is larger than its {@code --replication-backlog}), sends a fresh
+ * snapshot.
+ */
+public class ReplicationFollower {
+    // Most writes applied as one batch.
+    private static final int MAX_GROUP = 1000;
+
+    // The leader log id and the last write from it that has been applied.
+    private static final class Position {
+        final String leaderId;
+        final long sequence;
+
+        Position(String leaderId, long sequence) {
+            this.leaderId = leaderId;
+            this.sequence = sequence;
+        }
+    }
+
+    private final DictionaryManager manager;
+    private final String leaderHost;
+    private final int leaderPort;
+    private final Path positionPath;
+    private final long checkpointMillis;
+    private final long retryMillis;
+    private final int timeoutMillis;
+    private final LatencyHistogram lag = new LatencyHistogram();
+
+    private volatile Position applied;
+    private volatile long leaderSequence;
+    private volatile String leaderAddress; // the leader's client address, once it has told us its port
+    private volatile boolean connected;
+    private volatile long lastContactMillis;
+    private volatile long lastLagMillis;
+    private volatile long snapshotsLoaded;
+    private volatile boolean running;
+    private volatile Socket socket;
+    private Position checkpointed;
+    private Thread receiver;
+    private ScheduledExecutorService checkpointer;
+    private Consumer<String> logger = message -> { };
+
+    public ReplicationFollower(DictionaryManager manager, String dictPath, String replicateFrom,
+                               ServerOptions options) {
+        int colon = replicateFrom.lastIndexOf(':');
+        int port = -1;
+        try {
+            port = Integer.parseInt(replicateFrom.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+        if (colon <= 0 || port <= 0) {
+            throw new IllegalArgumentException("Option --replicate-from expects host:port but was '" + replicateFrom + "'");
+        }
+        this.manager = manager;
+        this.leaderHost = replicateFrom.substring(0, colon);
+        this.leaderPort = port;
+        this.positionPath = Paths.get(dictPath + ".replica");
+        this.checkpointMillis = options.getLong("replication-checkpoint-ms", 1000);
+        this.retryMillis = options.getLong("replication-retry-ms", 1000);
+        this.timeoutMillis = options.getInt("replication-timeout-ms", 5000);
+        this.applied = readPosition();
+        this.checkpointed = applied;
+        manager.setReplicationFollower(this);
+    }
+
+    /** Connects to the leader on a background thread, reconnecting whenever the connection drops. */
+    public void start(Consumer<String> logger) {
+        this.logger = logger;
+        running = true;
+        receiver = new Thread(this::receive, "replication-follower");
+        receiver.setDaemon(true);
+        receiver.start();
+        checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replication-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpoint, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Disconnects and checkpoints the position reached. */
+    public void stop() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // Closing only to wake the receiver.
+            }
+        }
+        if (receiver != null) {
+            try {
+                receiver.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (checkpointer != null) {
+            checkpointer.shutdown();
+        }
+        checkpoint();
+    }
+
+    /** Where clients should send writes: the leader's client address, or its replication address until it is known. */
+    public String getLeaderAddress() {
+        String address = leaderAddress;
+        return address != null ? address : leaderHost + ":" + leaderPort;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public String getLeaderId() {
+        return applied.leaderId;
+    }
+
+    /** Latest leader write applied here. */
+    public long getAppliedSequence() {
+        return applied.sequence;
+    }
+
+    /** Latest leader write this follower has heard of. */
+    public long getLeaderSequence() {
+        return leaderSequence;
+    }
+
+    /** How many writes the leader has made that are not applied here yet, as far as this follower knows. */
+    public long getLagWrites() {
+        return Math.max(0, leaderSequence - applied.sequence);
+    }
+
+    /** Time from the leader making the most recently applied write to it being applied here. */
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+
+    /** Time from the leader making each write to it being applied here, in nanoseconds (millisecond resolution). */
+    public LatencyHistogram getLag() {
+        return lag;
+    }
+
+    /** Time since the leader last sent anything, or -1 if it never has. */
+    public long getMillisSinceContact() {
+        long last = lastContactMillis;
+        return last == 0 ? -1 : System.currentTimeMillis() - last;
+    }
+
+    public long getSnapshotsLoaded() {
+        return snapshotsLoaded;
+    }
+
+    /** One line for the dashboard. */
+    public String describe() {
+        return String.format("Following %s (%s): at write %d, %d behind, last lag %d ms",
+                getLeaderAddress(), connected ? "connected" : "disconnected", getAppliedSequence(),
+                getLagWrites(), lastLagMillis);
+    }
+
+    private void receive() {
+        String lastError = null;
+        while (running) {
+            try {
+                follow();
+            } catch (IOException | RuntimeException e) {
+                String error = e.getMessage();
+                if (running && !String.valueOf(error).equals(lastError)) {
+                    logger.accept("Replication from " + leaderHost + ":" + leaderPort + " interrupted: " + error
+                            + "; retrying every " + retryMillis + " ms");
+                }
+                lastError = String.valueOf(error);
+            } finally {
+                connected = false;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // One connection: handshake, then apply the stream until it breaks.
+    private void follow() throws IOException {
+        try (Socket connection = new Socket()) {
+            socket = connection;
+            if (!running) {
+                return;
+            }
+            connection.connect(new InetSocketAddress(leaderHost, leaderPort), timeoutMillis);
+            // The leader sends at least a heartbeat every --replication-heartbeat-ms.
+            connection.setSoTimeout(timeoutMillis);
+            connection.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(),
+                    StandardCharsets.UTF_8), 64 * 1024);
+            Writer out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8));
+
+            Position position = applied;
+            JsonObject hello = new JsonObject();
+            hello.addProperty("leaderId", position.leaderId);
+            hello.addProperty("sequence", position.sequence);
+            out.write(hello + "\n");
+            out.flush();
+
+            List<Mutation> group = new ArrayList<>();
+            List<Long> times = new ArrayList<>();
+            long groupSequence = 0;
+            while (running) {
+                String line = in.readLine();
+                if (line == null) {
+                    throw new EOFException("leader closed the connection");
+                }
+                lastContactMillis = System.currentTimeMillis();
+                JsonObject message = JsonParser.parseString(line).getAsJsonObject();
+                if (message.has("type")) {
+                    if (!group.isEmpty()) {
+                        apply(group, times, groupSequence, out);
+                    }
+                    control(message, in, out);
+                } else {
+                    group.add(message.has("meanings")
+                            ? Mutation.put(message.get("word").getAsString(), meanings(message.getAsJsonArray("meanings")))
+                            : Mutation.remove(message.get("word").getAsString()));
+                    times.add(message.get("time").getAsLong());
+                    groupSequence = message.get("seq").getAsLong();
+                    if (group.size() >= MAX_GROUP || !in.ready()) {
+                        apply(group, times, groupSequence, out);
+                    }
+                }
+            }
+        } finally {
+            socket = null;
+        }
+    }
+
+    private void control(JsonObject message, BufferedReader in, Writer out) throws IOException {
+        String type = message.get("type").getAsString();
+        long sequence = message.get("sequence").getAsLong();
+        switch (type) {
+            case "snapshot":
+                loadSnapshot(message, in);
+                break;
+            case "resume":
+                connected = true;
+                leaderAddress = leaderHost + ":" + message.get("clientPort").getAsInt();
+                logger.accept("Resumed replication from " + getLeaderAddress() + " after write " + sequence);
+                break;
+            default: // heartbeat
+                if (applied.sequence == sequence) {
+                    lastLagMillis = 0;
+                }
+        }
+        leaderSequence = Math.max(leaderSequence, sequence);
+        acknowledge(out);
+    }
+
+    private void loadSnapshot(JsonObject header, BufferedReader in) throws IOException {
+        long start = System.nanoTime();
+        int words = header.get("words").getAsInt();
+        Map<String, List<String>> entries = new HashMap<>(Math.max(16, (int) (words / 0.75f) + 1));
+        for (int i = 0; i < words; i++) {
+            String line = in.readLine();
+            if (line == null) {
+                throw new EOFException("leader closed the connection during a snapshot");
+            }
+            JsonObject entry = JsonParser.parseString(line).getAsJsonObject();
+            entries.put(entry.get("word").getAsString(), meanings(entry.getAsJsonArray("meanings")));
+        }
+        int changed = manager.replaceAll(entries);
+        String leaderId = header.get("leaderId").getAsString();
+        long sequence = header.get("sequence").getAsLong();
+        applied = new Position(leaderId, sequence);
+        leaderSequence = sequence;
+        leaderAddress = leaderHost + ":" + header.get("clientPort").getAsInt();
+        connected = true;
+        snapshotsLoaded++;
+        logger.accept(String.format("Loaded a snapshot of %d words (%d changed) from %s at write %d in %.1f ms",
+                words, changed, getLeaderAddress(), sequence, (System.nanoTime() - start) / 1e6));
+    }
+
+    private void apply(List<Mutation> group, List<Long> times, long sequence, Writer out) throws IOException {
+        manager.applyReplicated(group);
+        applied = new Position(applied.leaderId, sequence);
+        leaderSequence = Math.max(leaderSequence, sequence);
+        long now = System.currentTimeMillis();
+        for (long time : times) {
+            lag.record(TimeUnit.MILLISECONDS.toNanos(now - time));
+        }
+        lastLagMillis = Math.max(0, now - times.get(times.size() - 1));
+        group.clear();
+        times.clear();
+        acknowledge(out);
+    }
+
+    private void acknowledge(Writer out) throws IOException {
+        out.write("{\"ack\":" + applied.sequence + "}\n");
+        out.flush();
+    }
+
+    private static List<String> meanings(JsonArray array) {
+        List<String> meanings = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            meanings.add(array.get(i).getAsString());
+        }
+        return Collections.unmodifiableList(meanings);
+    }
+
+    // Flushes the dictionary, then records the position it is now durable up to.
+    private synchronized void checkpoint() {
+        Position position = applied;
+        if (position == checkpointed) {
+            return;
+        }
+        manager.flush();
+        JsonObject json = new JsonObject();
+        json.addProperty("leaderId", position.leaderId);
+        json.addProperty("sequence", position.sequence);
+        Path temp = positionPath.resolveSibling(positionPath.getFileName() + ".tmp");
+        try {
+            Files.write(temp, json.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, positionPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointed = position;
+        } catch (IOException e) {
+            logger.accept("Could not save replication position: " + e.getMessage());
+        }
+    }
+
+    private Position readPosition() {
+        try {
+            JsonObject json = JsonParser.parseString(
+                    new String(Files.readAllBytes(positionPath), StandardCharsets.UTF_8)).getAsJsonObject();
+            return new Position(json.get("leaderId").getAsString(), json.get("sequence").getAsLong());
+        } catch (NoSuchFileException e) {
+            return new Position("", 0);
+        } catch (IOException | RuntimeException e) {
+            // A position that cannot be read just means starting over from a snapshot.
+            System.err.println("Ignoring unreadable replication position " + positionPath + ": " + e.getMessage());
+            return new Position("", 0);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package org.dictionary;
+
+// --- ReplicationLeader.java ---
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Streams this server's writes to read replicas. Started with
+ * {@code --replication-port=N}; followers ({@link ReplicationFollower})
+ * connect there rather than to the client port. Every successful write is
+ * numbered by a {@link ReplicationLog}, and each follower gets a thread that
+ * sends it the writes it has not seen yet.
+ *
+ * <p>The protocol is one JSON object per line, like the client protocol. The
+ * follower opens with its position, {@code {"leaderId":..,"sequence":N}}. If
+ * the id is this log's and the writes after N are still held, the leader
+ * answers {@code {"type":"resume",..}} and carries on from N. Otherwise it
+ * answers {@code {"type":"snapshot","sequence":S,"words":W,..}}, then W lines
+ * of {@code {"word":..,"meanings":[..]}}, then the writes after S. Writes are
+ * {@code {"seq":N,"time":ms,"word":..,"meanings":[..]}}, with no meanings
+ * for a removal. An idle stream gets a {@code {"type":"heartbeat",..}} every
+ * {@code --replication-heartbeat-ms}. Followers send back
+ * {@code {"ack":N}} as they apply writes, which is how the leader knows each
+ * one's lag.
+ *
+ * <p>The snapshot is taken without stopping writers, so it may already hold
+ * some writes numbered after S. Replaying those over it is harmless, because
+ * a {@link Mutation} is the end state of its word.
+ */
+public class ReplicationLeader {
+    // Most writes sent in one go before the stream is flushed.
+    private static final int SEND_BATCH = 1000;
+
+    /** One connected follower, as the leader sees it. */
+    public static final class FollowerStatus {
+        private final String address;
+        private volatile String state = "handshake";
+        private volatile long ackedSequence;
+
+        FollowerStatus(String address) {
+            this.address = address;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        /** "handshake", "snapshot" while a snapshot is being sent, then "streaming". */
+        public String getState() {
+            return state;
+        }
+
+        /** Latest write the follower reported applying. */
+        public long getAckedSequence() {
+            return ackedSequence;
+        }
+    }
+
+    private final DictionaryManager manager;
+    private final ReplicationLog log;
+    private final int port;
+    private final int clientPort;
+    private final long heartbeatMillis;
+    private final Gson gson = new Gson();
+    private final List<FollowerStatus> followers = new CopyOnWriteArrayList<>();
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running;
+    private Consumer<String> logger = message -> { };
+
+    /**
+     * Starts numbering the manager's writes straight away, so none made before
+     * {@link #start} is missed.
+     *
+     * @param clientPort the port clients use, passed on to followers so they
+     *                   can tell clients where to send writes
+     */
+    public ReplicationLeader(DictionaryManager manager, int port, int clientPort, ServerOptions options) {
+        this.manager = manager;
+        this.port = port;
+        this.clientPort = clientPort;
+        this.heartbeatMillis = options.getLong("replication-heartbeat-ms", 1000);
+        this.log = new ReplicationLog(options.getInt("replication-backlog", 100000));
+        manager.addMutationListener(log::append);
+        manager.setReplicationLeader(this);
+    }
+
+    /** Opens the replication port and accepts followers on a background thread. */
+    public void start(Consumer<String> logger) throws IOException {
+        this.logger = logger;
+        serverSocket = new ServerSocket(port);
+        running = true;
+        Thread acceptor = new Thread(this::acceptFollowers, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.accept("Replication leader listening on port " + port);
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            // Shutting down anyway.
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getLogId() {
+        return log.getId();
+    }
+
+    /** Sequence number of the latest write. */
+    public long getSequence() {
+        return log.getSequence();
+    }
+
+    public List<FollowerStatus> getFollowers() {
+        return new ArrayList<>(followers);
+    }
+
+    /** One line for the dashboard. */
+    public String describe() {
+        StringBuilder text = new StringBuilder("Leader at write ").append(getSequence()).append(", ")
+                .append(followers.size()).append(followers.size() == 1 ? " follower" : " followers");
+        for (FollowerStatus follower : followers) {
+            text.append(String.format("; %s %s, %d behind", follower.getAddress(), follower.getState(),
+                    Math.max(0, getSequence() - follower.getAckedSequence())));
+        }
+        return text.toString();
+    }
+
+    private void acceptFollowers() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread sender = new Thread(() -> serve(socket),
+                        "replication-sender-" + socket.getInetAddress().getHostAddress() + ":" + socket.getPort());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (running) {
+                    logger.accept("Replication accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        FollowerStatus follower = new FollowerStatus(
+                socket.getInetAddress().getHostAddress() + ":" + socket.getPort());
+        sockets.add(socket);
+        followers.add(follower);
+        try {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),
+                    64 * 1024);
+            JsonWriter json = gson.newJsonWriter(out);
+            json.setLenient(true); // one top-level value per line
+
+            String hello = in.readLine();
+            if (hello == null) {
+                return;
+            }
+            JsonObject position = JsonParser.parseString(hello).getAsJsonObject();
+            String followerLogId = position.has("leaderId") ? position.get("leaderId").getAsString() : "";
+            long next = position.has("sequence") ? position.get("sequence").getAsLong() : 0;
+            if (log.getId().equals(followerLogId) && log.canReadAfter(next)) {
+                json.beginObject().name("type").value("resume").name("leaderId").value(log.getId())
+                        .name("sequence").value(next).name("clientPort").value(clientPort).endObject();
+                out.write('\n');
+                follower.ackedSequence = next;
+                logger.accept("Follower " + follower.getAddress() + " resumed after write " + next);
+            } else {
+                next = sendSnapshot(follower, json, out);
+            }
+            follower.state = "streaming";
+            out.flush();
+
+            while (running) {
+                readAcks(in, follower);
+                List<ReplicationLog.Entry> entries = log.readAfter(next, SEND_BATCH, heartbeatMillis);
+                if (entries == null) {
+                    logger.accept("Follower " + follower.getAddress() + " fell more than the replication backlog "
+                            + "behind; sending a new snapshot");
+                    next = sendSnapshot(follower, json, out);
+                    follower.state = "streaming";
+                } else if (entries.isEmpty()) {
+                    json.beginObject().name("type").value("heartbeat").name("sequence").value(next)
+                            .name("time").value(System.currentTimeMillis()).endObject();
+                    out.write('\n');
+                } else {
+                    for (ReplicationLog.Entry entry : entries) {
+                        writeEntry(json, entry);
+                        out.write('\n');
+                    }
+                    next = entries.get(entries.size() - 1).getSequence();
+                }
+                out.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (running) {
+                logger.accept("Follower " + follower.getAddress() + " disconnected: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            followers.remove(follower);
+            sockets.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Nothing more to release.
+            }
+        }
+    }
+
+    // Sends the whole dictionary and returns the sequence number it is current to.
+    private long sendSnapshot(FollowerStatus follower, JsonWriter json, Writer out) throws IOException {
+        follower.state = "snapshot";
+        long start = System.nanoTime();
+        // Read before the copy: every write numbered up to here is already in the map.
+        long sequence = log.getSequence();
+        Map<String, List<String>> snapshot = manager.snapshot();
+        json.beginObject().name("type").value("snapshot").name("leaderId").value(log.getId())
+                .name("sequence").value(sequence).name("words").value(snapshot.size())
+                .name("clientPort").value(clientPort).endObject();
+        out.write('\n');
+        for (Map.Entry<String, List<String>> entry : snapshot.entrySet()) {
+            json.beginObject().name("word").value(entry.getKey());
+            writeMeanings(json, entry.getValue());
+            json.endObject();
+            out.write('\n');
+        }
+        out.flush();
+        logger.accept(String.format("Sent follower %s a snapshot of %d words at write %d in %.1f ms",
+                follower.getAddress(), snapshot.size(), sequence, (System.nanoTime() - start) / 1e6));
+        return sequence;
+    }
+
+    private static void writeEntry(JsonWriter json, ReplicationLog.Entry entry) throws IOException {
+        Mutation mutation = entry.getMutation();
+        json.beginObject().name("seq").value(entry.getSequence()).name("time").value(entry.getTimeMillis())
+                .name("word").value(mutation.getWord());
+        if (!mutation.isRemoval()) {
+            writeMeanings(json, mutation.getMeanings());
+        }
+        json.endObject();
+    }
+
+    private static void writeMeanings(JsonWriter json, List<String> meanings) throws IOException {
+        json.name("meanings").beginArray();
+        for (String meaning : meanings) {
+            json.value(meaning);
+        }
+        json.endArray();
+    }
+
+    // Takes in whatever acknowledgements the follower has sent so far, without blocking.
+    private static void readAcks(BufferedReader in, FollowerStatus follower) throws IOException {
+        while (in.ready()) {
+            String line = in.readLine();
+            if (line == null) {
+                throw new IOException("Follower closed the connection");
+            }
+            JsonObject ack = JsonParser.parseString(line).getAsJsonObject();
+            if (ack.has("ack")) {
+                follower.ackedSequence = ack.get("ack").getAsLong();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.dictionary;
+
+// --- ReplicationLog.java ---
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The leader's numbered stream of successful writes, kept in memory for the
+ * followers to read. Every {@link Mutation} the dictionary reports gets the
+ * next sequence number; the most recent {@code capacity} are kept in a ring,
+ * so a follower that is briefly behind, or reconnects after a restart, reads
+ * on from where it stopped. One that has fallen further behind than that is
+ * sent a fresh snapshot instead.
+ *
+ * <p>Sequence numbers start at 1 each time the leader starts, so the log has
+ * a random id as well: a position is only meaningful with the id it came from.
+ */
+public class ReplicationLog {
+
+    /** One numbered write and the leader's wall-clock time when it was made. */
+    public static final class Entry {
+        private final long sequence;
+        private final long timeMillis;
+        private final Mutation mutation;
+
+        Entry(long sequence, long timeMillis, Mutation mutation) {
+            this.sequence = sequence;
+            this.timeMillis = timeMillis;
+            this.mutation = mutation;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public Mutation getMutation() {
+            return mutation;
+        }
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Entry[] ring;
+    private long sequence; // last sequence handed out; guarded by this
+
+    public ReplicationLog(int capacity) {
+        this.ring = new Entry[Math.max(1, capacity)];
+    }
+
+    /**
+     * Numbers and keeps one write. Called from the dictionary's mutation
+     * listener, under the word's write lock, so writes to the same word are
+     * numbered in the order they were made.
+     */
+    public synchronized void append(Mutation mutation) {
+        sequence++;
+        ring[(int) (sequence % ring.length)] = new Entry(sequence, System.currentTimeMillis(), mutation);
+        notifyAll();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /** Sequence number of the latest write, or 0 if there has been none. */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /** True if every write after {@code after} is still in the ring. */
+    public synchronized boolean canReadAfter(long after) {
+        return after <= sequence && after >= sequence - ring.length;
+    }
+
+    /**
+     * Returns up to {@code max} writes following {@code after}, waiting up to
+     * {@code waitMillis} for one if there is none yet; an empty list means the
+     * wait ran out. Returns null if some of the writes following {@code after}
+     * have already left the ring.
+     */
+    public synchronized List<Entry> readAfter(long after, int max, long waitMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        long remaining = waitMillis;
+        while (sequence <= after && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        if (!canReadAfter(after)) {
+            return null;
+        }
+        long last = Math.min(sequence, after + max);
+        List<Entry> entries = new ArrayList<>((int) (last - after));
+        for (long next = after + 1; next <= last; next++) {
+            entries.add(ring[(int) (next % ring.length)]);
+        }
+        return entries;
+    }
+}
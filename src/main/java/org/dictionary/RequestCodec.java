@@ -0,0 +1,154 @@
+package org.dictionary;
+
+// --- RequestCodec.java ---
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fast-path decoder for the single-word commands (query, add, remove,
+ * updateMeaning, addMeaning). It pulls the fields straight off a streaming
+ * {@link JsonReader} instead of building a {@code JsonObject} tree.
+ *
+ * <p>It only accepts requests whose answer it can reproduce exactly: scalar
+ * fields that are strings or numbers, meanings that are an array of them, an
+ * id that is a string or number, and every field the command needs. Anything
+ * else (other commands, nulls, missing fields, trailing data, syntax errors)
+ * makes {@link #decode} return null, and {@link RequestProcessor} handles the
+ * line on its general path, so error responses and logging do not change.
+ */
+final class RequestCodec {
+
+    /** The fields of one request, decoded. */
+    static final class Decoded {
+        String command;
+        String word;
+        List<String> meanings;
+        String oldMeaning;
+        String newMeaning;
+        long delay;
+        String id;          // raw text of the id, or null
+        boolean idIsNumber; // written back as a number rather than a string
+    }
+
+    private RequestCodec() {
+    }
+
+    /** Returns the decoded request, or null if the line must take the general path. */
+    static Decoded decode(String line) {
+        if (!startsWithObject(line)) {
+            return null;
+        }
+        Decoded request = new Decoded();
+        boolean hasMeanings = false;
+        try (JsonReader reader = new JsonReader(new StringReader(line))) {
+            // Gson.fromJson reads leniently too, so both paths accept the same input.
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                switch (name) {
+                    case "command":
+                        if ((request.command = scalar(reader)) == null) return null;
+                        break;
+                    case "word":
+                        if ((request.word = scalar(reader)) == null) return null;
+                        break;
+                    case "oldMeaning":
+                        if ((request.oldMeaning = scalar(reader)) == null) return null;
+                        break;
+                    case "newMeaning":
+                        if ((request.newMeaning = scalar(reader)) == null) return null;
+                        break;
+                    case "delay": {
+                        String delay = scalar(reader);
+                        if (delay == null) return null;
+                        request.delay = Long.parseLong(delay);
+                        break;
+                    }
+                    case "meanings":
+                        if ((request.meanings = scalarArray(reader)) == null) return null;
+                        hasMeanings = true;
+                        break;
+                    case "id":
+                        request.idIsNumber = reader.peek() == JsonToken.NUMBER;
+                        if ((request.id = scalar(reader)) == null) return null;
+                        break;
+                    case "suggest":
+                        return null; // a query asking for suggestions on a miss
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                return null;
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            return null;
+        }
+        return hasRequiredFields(request, hasMeanings) ? request : null;
+    }
+
+    private static boolean hasRequiredFields(Decoded request, boolean hasMeanings) {
+        if (request.command == null || request.word == null) {
+            return false;
+        }
+        switch (request.command) {
+            case "query":
+            case "remove":
+                return true;
+            case "add":
+                return hasMeanings;
+            case "addMeaning":
+                return request.newMeaning != null;
+            case "updateMeaning":
+                return request.oldMeaning != null && request.newMeaning != null;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean startsWithObject(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '{') {
+                return true;
+            }
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Strings and numbers read as their text, like JsonPrimitive.getAsString(); null for anything else.
+    private static String scalar(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static List<String> scalarArray(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String value = scalar(reader);
+            if (value == null) {
+                return null;
+            }
+            values.add(value);
+        }
+        reader.endArray();
+        return values;
+    }
+}
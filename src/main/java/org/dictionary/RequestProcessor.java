@@ -0,0 +1,1061 @@
+package org.dictionary;
+
+// --- RequestProcessor.java ---
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns one line of the JSON protocol into its response line. Shared by the
+ * blocking {@link ClientHandler} and the NIO server engine, so both speak
+ * exactly the same protocol. Safe to use from several threads.
+ *
+ * <p>A request may carry an {@code id} of any JSON type. It is copied into the
+ * response unchanged, which lets a client keep several requests in flight on
+ * one connection and match the answers up however they arrive. Requests with
+ * an id may be answered out of order; requests without one are answered in the
+ * order they were sent.
+ *
+ * <p>Single-word commands normally go through {@link RequestCodec}, which reads
+ * the fields off a streaming parser, and their responses are written field by
+ * field to the connection's {@link Output}. No JSON tree is built for them.
+ * Every other line takes the general path, which parses it into a
+ * {@code JsonObject}. Both paths give byte-identical responses.
+ */
+public class RequestProcessor {
+    // Default and largest number of words one prefix request returns.
+    private static final int DEFAULT_PREFIX_LIMIT = 10;
+    private static final int MAX_PREFIX_LIMIT = 1000;
+    // Defaults for suggest, and for a query with "suggest":true that misses.
+    private static final int DEFAULT_SUGGEST_DISTANCE = 2;
+    private static final int DEFAULT_SUGGEST_LIMIT = 5;
+    private static final int MAX_SUGGEST_LIMIT = 100;
+    // Default and largest page size for searchMeanings.
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    // Default and largest page size for scan.
+    private static final int DEFAULT_SCAN_LIMIT = 1000;
+    private static final int MAX_SCAN_LIMIT = 10000;
+    // For a write the journal could not record; it was not applied either.
+    private static final String SAVE_FAILED_MESSAGE = "The change could not be saved; nothing was applied.";
+
+    private final DictionaryManager dictionaryManager;
+    private final Gson gson = new Gson();
+    private final boolean fastPath;
+    private final QueryResponseCache queryCache; // null when disabled
+    private final ServerMetrics metrics;
+
+    /** A request line that has been parsed but not yet executed. */
+    public static final class Request {
+        private final String line;
+        private final RequestCodec.Decoded decoded; // set when the fast path took the line
+        private final JsonObject json; // general path; null if the line was not valid JSON
+
+        private Request(String line, RequestCodec.Decoded decoded, JsonObject json) {
+            this.line = line;
+            this.decoded = decoded;
+            this.json = json;
+        }
+
+        /** True if the client tagged the request with an id, so its response may be sent out of order. */
+        public boolean hasId() {
+            if (decoded != null) {
+                return decoded.id != null;
+            }
+            return json != null && json.has("id");
+        }
+
+        /** The request's word, or null if it has none. */
+        public String getWord() {
+            if (decoded != null) {
+                return decoded.word;
+            }
+            JsonElement word = json == null ? null : json.get("word");
+            return word != null && word.isJsonPrimitive() ? word.getAsString() : null;
+        }
+
+        /** Length of the request's word, or -1 if it has none. */
+        public int getWordLength() {
+            if (decoded != null) {
+                return decoded.word.length();
+            }
+            JsonElement word = json == null ? null : json.get("word");
+            return word != null && word.isJsonPrimitive() ? word.getAsString().length() : -1;
+        }
+
+        /** The request's command name, or null if it has none (e.g. the line is not JSON). */
+        public String getCommand() {
+            if (decoded != null) {
+                return decoded.command;
+            }
+            JsonElement command = json == null ? null : json.get("command");
+            return command != null && command.isJsonPrimitive() ? command.getAsString() : null;
+        }
+    }
+
+    /**
+     * Implemented by connection writers that can take already-encoded UTF-8
+     * bytes, so a cached response is copied out as is instead of re-encoded.
+     */
+    public interface Utf8Sink {
+        void writeUtf8(byte[] bytes, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Where one connection's responses go: its writer, plus a JsonWriter over it
+     * that is reused for every response. Not thread-safe; use it under the
+     * connection's response lock.
+     */
+    public static final class Output {
+        private final Writer out;
+        private final JsonWriter json;
+        private final Object lock;
+        private InvalidationTracker.Subscription subscription; // set by the track command
+
+        private Output(Writer out, JsonWriter json, Object lock) {
+            this.out = out;
+            this.json = json;
+            this.lock = lock;
+            // Lenient so the one writer accepts a top-level value per response.
+            json.setLenient(true);
+        }
+
+        /** Releases what the connection holds on the server, e.g. its tracked words; call when it closes. */
+        public void close() {
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+
+        private void writeLine(String response) throws IOException {
+            synchronized (lock) {
+                out.write(response);
+                endLine();
+            }
+        }
+
+        // Must be called while holding lock.
+        private void endLine() throws IOException {
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    public RequestProcessor(DictionaryManager manager) {
+        this(manager, true);
+    }
+
+    // fastPath=false sends every line down the general path; used to compare the two.
+    RequestProcessor(DictionaryManager manager, boolean fastPath) {
+        this.dictionaryManager = manager;
+        this.fastPath = fastPath;
+        this.queryCache = manager.getQueryCache();
+        this.metrics = manager.getMetrics();
+    }
+
+    /**
+     * Handles one request line and returns the JSON response without a line
+     * terminator, or null if the line should be ignored (e.g. it is empty).
+     */
+    public String process(String line) {
+        Request request = parse(line);
+        return request == null ? null : process(request);
+    }
+
+    /** Creates the reusable response output for one connection's writer, which is also its response lock. */
+    public Output newOutput(Writer out) throws IOException {
+        return newOutput(out, out);
+    }
+
+    /**
+     * Creates the reusable response output for one connection's writer.
+     * {@code lock} is the monitor held while a response line is copied to
+     * {@code out}; anything else writing to {@code out} must hold it too.
+     */
+    public Output newOutput(Writer out, Object lock) throws IOException {
+        return new Output(out, gson.newJsonWriter(out), lock);
+    }
+
+    /** Parses a request line, or returns null if the line should be ignored (e.g. it is empty). */
+    public Request parse(String line) {
+        RequestCodec.Decoded decoded = fastPath ? RequestCodec.decode(line) : null;
+        if (decoded != null) {
+            return new Request(line, decoded, null);
+        }
+        JsonObject json;
+        try {
+            json = gson.fromJson(line, JsonObject.class);
+        } catch (Exception e) {
+            return new Request(line, null, null);
+        }
+        if (json == null) return null; // Ignore empty lines
+        return new Request(line, null, json);
+    }
+
+    /**
+     * Executes a parsed request and writes the JSON response, followed by a
+     * newline, to {@code output}, then flushes it. Fast-path and multiQuery
+     * responses are written field by field (a multiQuery entry by entry)
+     * instead of being built up in memory first; everything else is written
+     * in one go.
+     *
+     * <p>The request is executed without the output's lock, which is held only
+     * while the finished response is copied out. Pipelined requests therefore
+     * run side by side, and a slow one (e.g. a write with a delay) does not
+     * hold up the responses of the others.
+     *
+     * @return the response's status, e.g. "success" or "error"
+     */
+    public String process(Request parsed, Output output) throws IOException {
+        if (output.subscription != null && "query".equals(parsed.getCommand())) {
+            String word = parsed.getWord();
+            if (word != null) {
+                output.subscription.track(word); // before the read, so a later write is always pushed
+            }
+        }
+        if (parsed.json != null && "track".equals(parsed.getCommand())) {
+            return track(parsed.json, output);
+        }
+        if (parsed.decoded != null) {
+            return processDecoded(parsed, output);
+        }
+        MultiQuery multiQuery = parsed.json == null ? null : multiQuery(parsed);
+        if (multiQuery != null) {
+            synchronized (output.lock) {
+                multiQuery.writeTo(output.json);
+                output.endLine();
+            }
+            return "success";
+        }
+        String response = process(parsed);
+        output.writeLine(response);
+        return statusOf(response);
+    }
+
+    // Starts pushing invalidations for the words this connection queries.
+    private String track(JsonObject request, Output output) throws IOException {
+        InvalidationTracker tracker = dictionaryManager.getInvalidationTracker();
+        JsonObject response = new JsonObject();
+        if (request.has("id")) {
+            response.add("id", request.get("id"));
+        }
+        if (tracker == null) {
+            response.addProperty("status", "error");
+            response.addProperty("message", "Client tracking is disabled on this server.");
+        } else {
+            if (output.subscription == null) {
+                output.subscription = tracker.subscribe(output.out, output.lock);
+            }
+            response.addProperty("status", "success");
+            response.addProperty("message", "Queried words will be invalidated when they change.");
+        }
+        output.writeLine(gson.toJson(response));
+        return response.get("status").getAsString();
+    }
+
+    // Reads the status field out of a general-path response. It is always
+    // the first field, or the second after an id.
+    private static String statusOf(String response) {
+        int start = response.indexOf("\"status\":\"");
+        if (start < 0) {
+            return null;
+        }
+        start += "\"status\":\"".length();
+        int end = response.indexOf('"', start);
+        return end < 0 ? null : response.substring(start, end);
+    }
+
+    /** Executes a parsed request and returns the JSON response without a line terminator. */
+    public String process(Request parsed) {
+        if (parsed.decoded != null) {
+            StringWriter out = new StringWriter();
+            try {
+                processDecoded(parsed, new Output(out, gson.newJsonWriter(out), out));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // a StringWriter never throws
+            }
+            return out.getBuffer().substring(0, out.getBuffer().length() - 1); // without the newline
+        }
+        JsonElement id = parsed.json == null ? null : parsed.json.get("id");
+        try {
+            JsonObject request = parsed.json;
+            if (request == null) throw new IllegalArgumentException("Not a JSON object");
+
+            String command = request.get("command").getAsString();
+            JsonObject response = new JsonObject();
+            if (id != null) {
+                response.add("id", id);
+            }
+
+            ReplicationFollower follower = dictionaryManager.getReplicationFollower();
+            if (follower != null && isWrite(command)) {
+                response.addProperty("status", "read_only");
+                response.addProperty("message", readOnlyMessage(follower));
+                response.addProperty("leader", follower.getLeaderAddress());
+                return gson.toJson(response);
+            }
+
+            // --- Your existing switch statement goes here ---
+            switch (command) {
+                case "query": {
+                    String wordToSearch = request.get("word").getAsString();
+                    List<String> meanings = dictionaryManager.query(wordToSearch);
+
+                    if (meanings != null) {
+                        // Word was found, so build a success response.
+                        response.addProperty("status", "success");
+
+                        // 4. Convert the List<String> to a JsonElement (which will be a JsonArray).
+                        JsonElement meaningsElement = gson.toJsonTree(meanings);
+
+                        // 5. Add the JSON array to the response object under the "meanings" key.
+                        response.add("meanings", meaningsElement);
+
+                    } else {
+                        // Word was not found, so build an error response.
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "Word '" + wordToSearch + "' not found.");
+                        SuggestionIndex index = dictionaryManager.getSuggestionIndex();
+                        if (index != null && request.has("suggest") && request.get("suggest").getAsBoolean()) {
+                            response.add("suggestions", gson.toJsonTree(
+                                    index.suggest(wordToSearch, DEFAULT_SUGGEST_DISTANCE, DEFAULT_SUGGEST_LIMIT)));
+                        }
+                    }
+                    break;
+                }
+                case "add": {
+                    String wordToAdd = request.get("word").getAsString();
+                    JsonArray meaningsArray = request.getAsJsonArray("meanings");
+                    Type listType = new TypeToken<List<String>>() {}.getType();
+                    List<String> meanings = gson.fromJson(meaningsArray, listType);
+
+                    long delay = request.has("delay") ? request.get("delay").getAsLong() : 0;
+
+                    // NEW: Check if any of the meanings in the list are empty or just whitespace.
+                    boolean hasEmptyMeaning = meanings.stream().anyMatch(m -> m == null || m.trim().isEmpty());
+
+                    if (wordToAdd == null || wordToAdd.trim().isEmpty() || meanings.isEmpty() || hasEmptyMeaning) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "Word or meanings cannot be empty.");
+                    } else {
+                        String status = dictionaryManager.add(wordToAdd, meanings, delay);
+
+                        response.addProperty("status", status.toLowerCase());
+                        if ("SUCCESS".equals(status)) {
+                            response.addProperty("message", "Word '" + wordToAdd + "' added successfully.");
+                        } else if ("SAVE_FAILED".equals(status)) {
+                            response.addProperty("message", SAVE_FAILED_MESSAGE);
+                        } else {
+                            response.addProperty("message", "Word '" + wordToAdd + "' already exists.");
+                        }
+                    }
+                    break;
+                }
+
+                case "remove": {
+                    long delay = request.has("delay") ? request.get("delay").getAsLong() : 0;
+
+                    String wordToRemove = request.get("word").getAsString();
+
+                    String status = dictionaryManager.remove(wordToRemove, delay);
+
+                    response.addProperty("status", status.toLowerCase());
+                    if ("SUCCESS".equals(status)) {
+                        response.addProperty("message", "Word '" + wordToRemove + "' removed successfully.");
+                    } else if ("SAVE_FAILED".equals(status)) {
+                        response.addProperty("message", SAVE_FAILED_MESSAGE);
+                    } else { // Assumes DUPLICATE status
+                        response.addProperty("message", "Word '" + wordToRemove + "' doesn't exist.");
+                    }
+                    break;
+                }
+                case "updateMeaning": {
+                    String word = request.get("word").getAsString();
+                    String oldMeaning = request.get("oldMeaning").getAsString();
+                    String newMeaning = request.get("newMeaning").getAsString();
+                    long delay = request.has("delay") ? request.get("delay").getAsLong() : 0;
+
+
+                    // NEW: Add validation for the new meaning.
+                    if (newMeaning == null || newMeaning.trim().isEmpty()) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "New meaning cannot be empty.");
+                    } else {
+                        String status = dictionaryManager.updateMeaning(word, oldMeaning, newMeaning, delay);
+
+                        response.addProperty("status", status.toLowerCase());
+                        switch (status) {
+                            case "SUCCESS":
+                                response.addProperty("message", "Meaning updated successfully for '" + word + "'.");
+                                break;
+                            case "WORD_NOT_FOUND":
+                                response.addProperty("message", "Word '" + word + "' not found.");
+                                break;
+                            case "MEANING_EXISTS":
+                                response.addProperty("message", "This meaning already exists for the word '" + word + "'.");
+                                break;
+                            case "MEANING_NOT_FOUND":
+                                response.addProperty("message", "The specified meaning to update was not found.");
+                                break;
+                            case "SAVE_FAILED":
+                                response.addProperty("message", SAVE_FAILED_MESSAGE);
+                                break;
+                        }
+                    }
+                    break;
+                }
+                case "addMeaning": {
+                    String word = request.get("word").getAsString();
+                    String newMeaning = request.get("newMeaning").getAsString();
+                    long delay = request.has("delay") ? request.get("delay").getAsLong() : 0;
+
+
+                    // NEW: Add validation for the new meaning.
+                    if (newMeaning == null || newMeaning.trim().isEmpty()) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "New meaning cannot be empty.");
+                    } else {
+                        String status = dictionaryManager.addNewMeaning(word, newMeaning, delay);
+                        response.addProperty("status", status.toLowerCase());
+                        switch (status) {
+                            case "SUCCESS":
+                                response.addProperty("message", "New meaning added successfully to '" + word + "'.");
+                                break;
+                            case "WORD_NOT_FOUND":
+                                response.addProperty("message", "Word '" + word + "' not found.");
+                                break;
+                            case "MEANING_EXISTS":
+                                response.addProperty("message", "This meaning already exists for the word '" + word + "'.");
+                                break;
+                            case "SAVE_FAILED":
+                                response.addProperty("message", SAVE_FAILED_MESSAGE);
+                                break;
+                        }
+                    }
+                    break;
+                }
+                case "applyBatch": {
+                    WriteBatch batch = new WriteBatch();
+                    String invalid = null;
+                    JsonArray operations = request.getAsJsonArray("operations");
+                    for (int i = 0; i < operations.size() && invalid == null; i++) {
+                        invalid = addToBatch(batch, operations.get(i).getAsJsonObject());
+                        if (invalid != null) {
+                            invalid = "Operation " + (i + 1) + ": " + invalid;
+                        }
+                    }
+                    if (invalid != null) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", invalid);
+                        break;
+                    }
+
+                    List<String> statuses;
+                    try {
+                        statuses = dictionaryManager.applyBatch(batch);
+                    } catch (IOException e) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "Batch could not be saved: " + e.getMessage());
+                        break;
+                    }
+                    int failed = -1;
+                    JsonArray results = new JsonArray();
+                    for (int i = 0; i < statuses.size(); i++) {
+                        results.add(statuses.get(i).toLowerCase());
+                        if (failed < 0 && !"SUCCESS".equals(statuses.get(i))) {
+                            failed = i;
+                        }
+                    }
+                    if (failed < 0) {
+                        response.addProperty("status", "success");
+                        response.addProperty("message", "Applied " + statuses.size() + " operations.");
+                    } else {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "Operation " + (failed + 1) + " failed ("
+                                + statuses.get(failed).toLowerCase() + "); nothing was applied.");
+                    }
+                    response.add("results", results);
+                    break;
+                }
+                case "prefix": {
+                    String prefix = request.get("prefix").getAsString();
+                    int limit = request.has("limit") ? request.get("limit").getAsInt() : DEFAULT_PREFIX_LIMIT;
+                    boolean withMeanings = request.has("withMeanings") && request.get("withMeanings").getAsBoolean();
+                    PrefixIndex index = dictionaryManager.getPrefixIndex();
+                    if (index == null) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "Prefix search is disabled on this server.");
+                    } else if (limit < 1 || limit > MAX_PREFIX_LIMIT) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "Limit must be between 1 and " + MAX_PREFIX_LIMIT + ".");
+                    } else {
+                        // One extra word tells the client whether there are more to page through.
+                        List<String> words = index.wordsWithPrefix(prefix, limit + 1);
+                        boolean more = words.size() > limit;
+                        if (more) {
+                            words = words.subList(0, limit);
+                        }
+                        response.addProperty("status", "success");
+                        if (withMeanings) {
+                            JsonObject results = new JsonObject();
+                            for (String word : words) {
+                                List<String> meanings = dictionaryManager.query(word);
+                                if (meanings != null) { // skips a word removed since the index was read
+                                    results.add(word, gson.toJsonTree(meanings));
+                                }
+                            }
+                            response.add("results", results);
+                        } else {
+                            response.add("words", gson.toJsonTree(words));
+                        }
+                        response.addProperty("more", more);
+                    }
+                    break;
+                }
+                case "suggest": {
+                    String word = request.get("word").getAsString();
+                    int maxDistance = request.has("maxDistance")
+                            ? request.get("maxDistance").getAsInt() : DEFAULT_SUGGEST_DISTANCE;
+                    int limit = request.has("limit") ? request.get("limit").getAsInt() : DEFAULT_SUGGEST_LIMIT;
+                    SuggestionIndex index = dictionaryManager.getSuggestionIndex();
+                    if (index == null) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "Suggestions are disabled on this server.");
+                    } else if (maxDistance < 0 || maxDistance > SuggestionIndex.MAX_DISTANCE) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "maxDistance must be between 0 and "
+                                + SuggestionIndex.MAX_DISTANCE + ".");
+                    } else if (limit < 1 || limit > MAX_SUGGEST_LIMIT) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "Limit must be between 1 and " + MAX_SUGGEST_LIMIT + ".");
+                    } else {
+                        response.addProperty("status", "success");
+                        response.add("suggestions", gson.toJsonTree(index.suggest(word, maxDistance, limit)));
+                    }
+                    break;
+                }
+                case "searchMeanings": {
+                    String query = request.get("query").getAsString();
+                    int offset = request.has("offset") ? request.get("offset").getAsInt() : 0;
+                    int limit = request.has("limit") ? request.get("limit").getAsInt() : DEFAULT_SEARCH_LIMIT;
+                    MeaningIndex index = dictionaryManager.getMeaningIndex();
+                    if (index == null) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "Meaning search is disabled on this server.");
+                    } else if (offset < 0 || limit < 1 || limit > MAX_SEARCH_LIMIT) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "Offset must not be negative and limit must be between 1 and "
+                                + MAX_SEARCH_LIMIT + ".");
+                    } else {
+                        MeaningIndex.Page page = index.search(query, offset, limit);
+                        response.addProperty("status", "success");
+                        response.addProperty("total", page.getTotal());
+                        response.add("results", gson.toJsonTree(page.getResults()));
+                        if (request.has("withScores") && request.get("withScores").getAsBoolean()) {
+                            response.add("scores", gson.toJsonTree(page.getScores()));
+                        }
+                        if ((long) offset + limit < page.getTotal()) {
+                            response.addProperty("nextOffset", offset + limit);
+                        }
+                    }
+                    break;
+                }
+                case "scan": {
+                    // Pages through every word in order, e.g. to move words between shards.
+                    String after = request.has("after") ? request.get("after").getAsString() : "";
+                    int limit = request.has("limit") ? request.get("limit").getAsInt() : DEFAULT_SCAN_LIMIT;
+                    PrefixIndex index = dictionaryManager.getPrefixIndex();
+                    if (index == null) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "Scanning needs the prefix index, which is disabled on this server.");
+                    } else if (limit < 1 || limit > MAX_SCAN_LIMIT) {
+                        response.addProperty("status", "error");
+                        response.addProperty("message", "Limit must be between 1 and " + MAX_SCAN_LIMIT + ".");
+                    } else {
+                        List<String> words = index.wordsAfter(after, limit);
+                        JsonObject results = new JsonObject();
+                        for (String word : words) {
+                            List<String> meanings = dictionaryManager.query(word);
+                            if (meanings != null) { // skips a word removed since the index was read
+                                results.add(word, gson.toJsonTree(meanings));
+                            }
+                        }
+                        response.addProperty("status", "success");
+                        response.add("results", results);
+                        if (words.size() == limit) {
+                            response.addProperty("next", words.get(words.size() - 1));
+                        }
+                    }
+                    break;
+                }
+                case "stats":
+                    response.addProperty("status", "success");
+                    addStats(response);
+                    break;
+                case "track":
+                    response.addProperty("status", "error");
+                    response.addProperty("message", "Tracking needs a client connection.");
+                    break;
+                case "ping": // lets a client check a connection is alive
+                    response.addProperty("status", "success");
+                    break;
+                case "multiQuery": {
+                    StringWriter out = new StringWriter();
+                    multiQuery(parsed).writeTo(gson.newJsonWriter(out));
+                    return out.toString();
+                }
+                default:
+                    response.addProperty("status", "error");
+                    response.addProperty("message", "Unknown command");
+            }
+
+            return gson.toJson(response);
+
+        } catch (Exception e) { // Catch JsonSyntaxException or a general Exception
+            // This block now catches the bad JSON error
+            System.err.println("Error parsing JSON from client: " + parsed.line);
+            metrics.recordMalformedRequest();
+
+            // Build and send a proper error response to the client
+            JsonObject errorResponse = new JsonObject();
+            if (id != null) {
+                errorResponse.add("id", id);
+            }
+            errorResponse.addProperty("status", "error");
+            errorResponse.addProperty("message", "Malformed JSON request received.");
+            return gson.toJson(errorResponse);
+        }
+    }
+
+    // The fast path for the single-word commands. Mirrors the switch in
+    // process(Request) exactly: same checks, statuses, messages and field order.
+    private String processDecoded(Request parsed, Output output) throws IOException {
+        RequestCodec.Decoded request = parsed.decoded;
+        if (queryCache != null && "query".equals(request.command)) {
+            return writeCachedQuery(request, output);
+        }
+        ReplicationFollower follower = dictionaryManager.getReplicationFollower();
+        if (follower != null && isWrite(request.command)) {
+            synchronized (output.lock) {
+                JsonWriter json = output.json;
+                json.beginObject();
+                writeId(json, request);
+                json.name("status").value("read_only");
+                json.name("message").value(readOnlyMessage(follower));
+                json.name("leader").value(follower.getLeaderAddress());
+                json.endObject();
+                output.endLine();
+            }
+            return "read_only";
+        }
+        String status;
+        String message = null;
+        List<String> meanings = null;
+        try {
+            String word = request.word;
+            switch (request.command) {
+                case "query":
+                    meanings = dictionaryManager.query(word);
+                    if (meanings != null) {
+                        status = "success";
+                    } else {
+                        status = "error";
+                        message = "Word '" + word + "' not found.";
+                    }
+                    break;
+                case "add": {
+                    boolean hasEmptyMeaning = false;
+                    for (String meaning : request.meanings) {
+                        hasEmptyMeaning |= meaning.trim().isEmpty();
+                    }
+                    if (word.trim().isEmpty() || request.meanings.isEmpty() || hasEmptyMeaning) {
+                        status = "error";
+                        message = "Word or meanings cannot be empty.";
+                    } else {
+                        String result = dictionaryManager.add(word, request.meanings, request.delay);
+                        status = result.toLowerCase();
+                        message = "SUCCESS".equals(result)
+                                ? "Word '" + word + "' added successfully."
+                                : "SAVE_FAILED".equals(result)
+                                ? SAVE_FAILED_MESSAGE
+                                : "Word '" + word + "' already exists.";
+                    }
+                    break;
+                }
+                case "remove": {
+                    String result = dictionaryManager.remove(word, request.delay);
+                    status = result.toLowerCase();
+                    message = "SUCCESS".equals(result)
+                            ? "Word '" + word + "' removed successfully."
+                            : "SAVE_FAILED".equals(result)
+                            ? SAVE_FAILED_MESSAGE
+                            : "Word '" + word + "' doesn't exist.";
+                    break;
+                }
+                case "updateMeaning": {
+                    if (request.newMeaning.trim().isEmpty()) {
+                        status = "error";
+                        message = "New meaning cannot be empty.";
+                        break;
+                    }
+                    String result = dictionaryManager.updateMeaning(word, request.oldMeaning, request.newMeaning,
+                            request.delay);
+                    status = result.toLowerCase();
+                    switch (result) {
+                        case "SUCCESS":
+                            message = "Meaning updated successfully for '" + word + "'.";
+                            break;
+                        case "WORD_NOT_FOUND":
+                            message = "Word '" + word + "' not found.";
+                            break;
+                        case "MEANING_EXISTS":
+                            message = "This meaning already exists for the word '" + word + "'.";
+                            break;
+                        case "MEANING_NOT_FOUND":
+                            message = "The specified meaning to update was not found.";
+                            break;
+                        case "SAVE_FAILED":
+                            message = SAVE_FAILED_MESSAGE;
+                            break;
+                    }
+                    break;
+                }
+                default: { // addMeaning; RequestCodec accepts no other command
+                    if (request.newMeaning.trim().isEmpty()) {
+                        status = "error";
+                        message = "New meaning cannot be empty.";
+                        break;
+                    }
+                    String result = dictionaryManager.addNewMeaning(word, request.newMeaning, request.delay);
+                    status = result.toLowerCase();
+                    switch (result) {
+                        case "SUCCESS":
+                            message = "New meaning added successfully to '" + word + "'.";
+                            break;
+                        case "WORD_NOT_FOUND":
+                            message = "Word '" + word + "' not found.";
+                            break;
+                        case "MEANING_EXISTS":
+                            message = "This meaning already exists for the word '" + word + "'.";
+                            break;
+                        case "SAVE_FAILED":
+                            message = SAVE_FAILED_MESSAGE;
+                            break;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error parsing JSON from client: " + parsed.line);
+            metrics.recordMalformedRequest();
+            status = "error";
+            message = "Malformed JSON request received.";
+            meanings = null;
+        }
+
+        synchronized (output.lock) {
+            writeResponse(output.json, request, status, message, meanings);
+            output.endLine();
+        }
+        return status;
+    }
+
+    private static void writeResponse(JsonWriter json, RequestCodec.Decoded request, String status,
+                                      String message, List<String> meanings) throws IOException {
+        json.beginObject();
+        if (request != null) {
+            writeId(json, request);
+        }
+        json.name("status").value(status);
+        if (meanings != null) {
+            json.name("meanings").beginArray();
+            for (String meaning : meanings) {
+                json.value(meaning);
+            }
+            json.endArray();
+        }
+        if (message != null) {
+            json.name("message").value(message);
+        }
+        json.endObject();
+    }
+
+    private static void writeId(JsonWriter json, RequestCodec.Decoded request) throws IOException {
+        if (request.id != null) {
+            json.name("id");
+            if (request.idIsNumber) {
+                json.jsonValue(request.id);
+            } else {
+                json.value(request.id);
+            }
+        }
+    }
+
+    // The commands a read replica refuses.
+    private static boolean isWrite(String command) {
+        switch (command) {
+            case "add":
+            case "remove":
+            case "updateMeaning":
+            case "addMeaning":
+            case "applyBatch":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static String readOnlyMessage(ReplicationFollower follower) {
+        return "This server is a read replica; send writes to the leader at " + follower.getLeaderAddress() + ".";
+    }
+
+    // Serves a query from the response cache, filling the cache on a miss. The
+    // cached text has no id, so one is spliced in after the opening brace.
+    private String writeCachedQuery(RequestCodec.Decoded request, Output output) throws IOException {
+        String word = request.word;
+        QueryResponseCache.CachedResponse entry = queryCache.get(word);
+        if (entry == null) {
+            long stamp = queryCache.stamp(word);
+            List<String> meanings = dictionaryManager.query(word);
+            StringWriter text = new StringWriter();
+            String status = meanings != null ? "success" : "error";
+            if (meanings != null) {
+                writeResponse(gson.newJsonWriter(text), null, status, null, meanings);
+            } else {
+                writeResponse(gson.newJsonWriter(text), null, status, "Word '" + word + "' not found.", null);
+            }
+            entry = new QueryResponseCache.CachedResponse(text.toString(), status);
+            queryCache.put(word, stamp, entry);
+        }
+
+        Writer out = output.out;
+        synchronized (output.lock) {
+            int skip = 0;
+            if (request.id != null) {
+                out.write("{\"id\":");
+                if (request.idIsNumber) {
+                    out.write(request.id);
+                } else {
+                    output.json.value(request.id); // a bare string value, escaped exactly like in a full response
+                }
+                out.write(',');
+                skip = 1;
+            }
+            if (out instanceof Utf8Sink) {
+                ((Utf8Sink) out).writeUtf8(entry.getUtf8(), skip, entry.getUtf8().length - skip);
+            } else {
+                out.write(entry.getJson(), skip, entry.getJson().length() - skip);
+            }
+            output.endLine();
+        }
+        return entry.getStatus();
+    }
+
+    // The stats response body. Times are in microseconds and cover everything
+    // since the server started. lockWait only counts acquisitions that had to
+    // wait; lockHold counts them all.
+    private void addStats(JsonObject response) {
+        response.addProperty("uptimeSeconds", metrics.getUptimeMillis() / 1000);
+        response.addProperty("words", dictionaryManager.size());
+        JsonObject commands = new JsonObject();
+        for (Map.Entry<String, LatencyHistogram> command : metrics.getCommandLatencies().entrySet()) {
+            commands.add(command.getKey(), histogramJson(command.getValue()));
+        }
+        response.add("commands", commands);
+        response.addProperty("malformedRequests", metrics.getMalformedRequests());
+        response.add("lockWait", histogramJson(metrics.getLockWait()));
+        response.add("lockHold", histogramJson(metrics.getLockHold()));
+        JsonObject saves = histogramJson(metrics.getSaves());
+        saves.addProperty("bytesWritten", metrics.getSavedBytes());
+        saves.addProperty("lastFileBytes", metrics.getLastSaveBytes());
+        response.add("saves", saves);
+        JsonObject replication = replicationStats();
+        if (replication != null) {
+            response.add("replication", replication);
+        }
+        if (queryCache != null) {
+            JsonObject cache = new JsonObject();
+            cache.addProperty("entries", queryCache.size());
+            cache.addProperty("hits", queryCache.getHits());
+            cache.addProperty("misses", queryCache.getMisses());
+            response.add("queryCache", cache);
+        }
+        InvalidationTracker tracker = dictionaryManager.getInvalidationTracker();
+        if (tracker != null) {
+            JsonObject tracking = new JsonObject();
+            tracking.addProperty("connections", tracker.getSubscriptionCount());
+            tracking.addProperty("trackedWords", tracker.getTrackedWordCount());
+            tracking.addProperty("pushedMessages", tracker.getPushedMessages());
+            tracking.addProperty("pushedWords", tracker.getPushedWords());
+            response.add("tracking", tracking);
+        }
+    }
+
+    // The follower's position and lag and the leader's followers, whichever
+    // this server is; null if it takes no part in replication.
+    private JsonObject replicationStats() {
+        ReplicationFollower follower = dictionaryManager.getReplicationFollower();
+        ReplicationLeader leader = dictionaryManager.getReplicationLeader();
+        if (follower == null && leader == null) {
+            return null;
+        }
+        JsonObject replication = new JsonObject();
+        if (follower != null) {
+            JsonObject following = new JsonObject();
+            following.addProperty("leader", follower.getLeaderAddress());
+            following.addProperty("connected", follower.isConnected());
+            following.addProperty("leaderId", follower.getLeaderId());
+            following.addProperty("appliedSequence", follower.getAppliedSequence());
+            following.addProperty("leaderSequence", follower.getLeaderSequence());
+            following.addProperty("lagWrites", follower.getLagWrites());
+            following.addProperty("lastLagMillis", follower.getLastLagMillis());
+            following.addProperty("millisSinceContact", follower.getMillisSinceContact());
+            following.addProperty("snapshotsLoaded", follower.getSnapshotsLoaded());
+            following.add("lag", histogramJson(follower.getLag()));
+            replication.add("following", following);
+        }
+        if (leader != null) {
+            JsonObject leading = new JsonObject();
+            leading.addProperty("port", leader.getPort());
+            leading.addProperty("logId", leader.getLogId());
+            leading.addProperty("sequence", leader.getSequence());
+            JsonArray followers = new JsonArray();
+            for (ReplicationLeader.FollowerStatus status : leader.getFollowers()) {
+                JsonObject entry = new JsonObject();
+                entry.addProperty("address", status.getAddress());
+                entry.addProperty("state", status.getState());
+                entry.addProperty("ackedSequence", status.getAckedSequence());
+                entry.addProperty("lagWrites", Math.max(0, leader.getSequence() - status.getAckedSequence()));
+                followers.add(entry);
+            }
+            leading.add("followers", followers);
+            replication.add("leading", leading);
+        }
+        return replication;
+    }
+
+    private static JsonObject histogramJson(LatencyHistogram histogram) {
+        JsonObject json = new JsonObject();
+        json.addProperty("count", histogram.getCount());
+        json.addProperty("mean", micros(histogram.getMean()));
+        json.addProperty("p50", micros(histogram.getValueAtPercentile(50)));
+        json.addProperty("p99", micros(histogram.getValueAtPercentile(99)));
+        json.addProperty("p99.9", micros(histogram.getValueAtPercentile(99.9)));
+        json.addProperty("max", micros(histogram.getMax()));
+        return json;
+    }
+
+    // Nanoseconds to microseconds, to one decimal place.
+    private static double micros(double nanos) {
+        return Math.round(nanos / 100) / 10.0;
+    }
+
+    // Adds one applyBatch operation, checked like the matching single command.
+    // Returns an error message if it is invalid, or null once it is added.
+    private String addToBatch(WriteBatch batch, JsonObject operation) {
+        String command = operation.get("command").getAsString();
+        String word = operation.get("word").getAsString();
+        switch (command) {
+            case "add": {
+                Type listType = new TypeToken<List<String>>() {}.getType();
+                List<String> meanings = gson.fromJson(operation.getAsJsonArray("meanings"), listType);
+                boolean hasEmptyMeaning = meanings.stream().anyMatch(m -> m == null || m.trim().isEmpty());
+                if (word.trim().isEmpty() || meanings.isEmpty() || hasEmptyMeaning) {
+                    return "Word or meanings cannot be empty.";
+                }
+                batch.add(word, meanings);
+                return null;
+            }
+            case "remove":
+                batch.remove(word);
+                return null;
+            case "addMeaning":
+            case "updateMeaning": {
+                String newMeaning = operation.get("newMeaning").getAsString();
+                if (newMeaning.trim().isEmpty()) {
+                    return "New meaning cannot be empty.";
+                }
+                if ("addMeaning".equals(command)) {
+                    batch.addMeaning(word, newMeaning);
+                } else {
+                    batch.updateMeaning(word, operation.get("oldMeaning").getAsString(), newMeaning);
+                }
+                return null;
+            }
+            default:
+                return "Unknown command";
+        }
+    }
+
+    // Runs the lookup for a multiQuery request, or returns null for any other
+    // command. A malformed multiQuery is answered with the usual error response.
+    private MultiQuery multiQuery(Request parsed) {
+        JsonElement command = parsed.json.get("command");
+        if (command == null || !command.isJsonPrimitive() || !"multiQuery".equals(command.getAsString())) {
+            return null;
+        }
+        try {
+            Set<String> words = new LinkedHashSet<>();
+            for (JsonElement word : parsed.json.getAsJsonArray("words")) {
+                words.add(word.getAsString());
+            }
+            return new MultiQuery(parsed.json.get("id"), words, dictionaryManager.multiQuery(words));
+        } catch (Exception e) {
+            return null; // falls through to process(Request), which reports it as malformed
+        }
+    }
+
+    /** A multiQuery result; the lookup is already done, only the writing is left. */
+    private final class MultiQuery {
+        private final JsonElement id;
+        private final Set<String> words;
+        private final Map<String, List<String>> found;
+
+        MultiQuery(JsonElement id, Set<String> words, Map<String, List<String>> found) {
+            this.id = id;
+            this.words = words;
+            this.found = found;
+        }
+
+        // The writer must come from gson.newJsonWriter, which applies the same
+        // settings as gson.toJson, so the output matches the general path.
+        void writeTo(JsonWriter json) throws IOException {
+            json.beginObject();
+            if (id != null) {
+                json.name("id");
+                gson.toJson(id, json);
+            }
+            json.name("status").value("success");
+            json.name("results").beginObject();
+            for (Map.Entry<String, List<String>> entry : found.entrySet()) {
+                json.name(entry.getKey()).beginArray();
+                for (String meaning : entry.getValue()) {
+                    json.value(meaning);
+                }
+                json.endArray();
+            }
+            json.endObject();
+            json.name("missing").beginArray();
+            for (String word : words) {
+                if (!found.containsKey(word)) {
+                    json.value(word);
+                }
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
+}
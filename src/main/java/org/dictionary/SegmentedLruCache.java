@@ -0,0 +1,159 @@
+package org.dictionary;
+
+// --- SegmentedLruCache.java ---
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache keyed by word, behind both {@link QueryResponseCache} and
+ * {@link NearCache}. It is split into segments, each an LRU map under its own
+ * lock, so concurrent hits on different words rarely contend.
+ *
+ * <p>Values are computed outside the cache while the word may change, so a
+ * lookup that misses takes a {@link #stamp} before computing the value and
+ * hands it back to {@link #put}. If the word's segment was invalidated in
+ * between, the possibly stale value is simply not cached. Entries can also
+ * be given a time to live.
+ *
+ * @param <V> the cached values; they are handed out as they are, so they
+ *            should be immutable
+ */
+public class SegmentedLruCache<V> {
+    private static final int SEGMENTS = 16;
+
+    private static final class CachedValue<V> {
+        private final V value;
+        private final long expiresAtNanos; // unused without a time to live
+
+        CachedValue(V value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private static final class Segment<V> extends LinkedHashMap<String, CachedValue<V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        private long invalidations;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedValue<V>> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private final List<Segment<V>> segments = new ArrayList<>(SEGMENTS);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+    private final int capacity;
+    private final long ttlNanos;
+
+    /** @param ttlMillis how long an entry may be served, or 0 to keep it until it is evicted or invalidated */
+    public SegmentedLruCache(int capacity, long ttlMillis) {
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        int perSegment = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments.add(new Segment<>(perSegment));
+        }
+    }
+
+    /** Returns the cached value for the word, or null; counts a hit or a miss. */
+    public V get(String word) {
+        Segment<V> segment = segmentFor(word);
+        CachedValue<V> cached;
+        synchronized (segment) {
+            cached = segment.get(word);
+            if (cached != null && ttlNanos > 0 && System.nanoTime() - cached.expiresAtNanos > 0) {
+                segment.remove(word);
+                cached = null;
+            }
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached.value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /** Taken before computing a value that is then passed to {@link #put}. */
+    public long stamp(String word) {
+        Segment<V> segment = segmentFor(word);
+        synchronized (segment) {
+            return segment.invalidations;
+        }
+    }
+
+    /** Caches the value unless the word was invalidated since {@code stamp} was taken. */
+    public void put(String word, long stamp, V value) {
+        Segment<V> segment = segmentFor(word);
+        synchronized (segment) {
+            if (segment.invalidations == stamp) {
+                segment.put(word, new CachedValue<>(value, ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0));
+            }
+        }
+    }
+
+    public void invalidate(String word) {
+        Segment<V> segment = segmentFor(word);
+        synchronized (segment) {
+            segment.invalidations++;
+            segment.remove(word);
+        }
+        invalidated.increment();
+    }
+
+    /** Drops everything, including values still being computed. */
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                segment.invalidations++;
+                segment.clear();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidated.sum();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment<V> segmentFor(String word) {
+        int h = word.hashCode();
+        h ^= (h >>> 16);
+        return segments.get(h & (SEGMENTS - 1));
+    }
+}
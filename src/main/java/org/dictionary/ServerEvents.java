@@ -0,0 +1,99 @@
+package org.dictionary;
+
+// --- ServerEvents.java ---
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events emitted by the server, under the "Dictionary
+ * Server" category. Each call site creates the event, times the work with
+ * {@code begin()} and only fills in the fields and commits if
+ * {@code shouldCommit()} says a recording wants it. When no recording is
+ * running the JIT removes the event object entirely, so the hooks cost
+ * nothing measurable.
+ *
+ * <p>Start a rolling recording with {@code --jfr=true} (see
+ * {@link FlightRecording}) or with the JVM's own {@code -XX:StartFlightRecording}.
+ */
+public final class ServerEvents {
+
+    private ServerEvents() {
+    }
+
+    @Name("org.dictionary.Request")
+    @Label("Request")
+    @Category("Dictionary Server")
+    @Description("One request, from starting on it to handing its response to the connection")
+    @StackTrace(false)
+    public static final class Request extends Event {
+        @Label("Command")
+        public String command;
+
+        @Label("Word Length")
+        @Description("Length of the request's word, or -1 if it has none")
+        public int wordLength;
+
+        @Label("Status")
+        public String status;
+    }
+
+    @Name("org.dictionary.LockWait")
+    @Label("Write Lock Wait")
+    @Category("Dictionary Server")
+    @Description("A writer waiting for a write lock that another thread held")
+    public static final class LockWait extends Event {
+        @Label("Lock")
+        @Description("\"global\", \"stripe <n>\", or \"<n> stripes\" for a multi-word operation")
+        public String lock;
+    }
+
+    @Name("org.dictionary.Save")
+    @Label("Dictionary Save")
+    @Category("Dictionary Server")
+    @Description("A full write of the dictionary file")
+    @StackTrace(false)
+    public static final class Save extends Event {
+        @Label("Kind")
+        @Description("\"snapshot\" for a save after each write, \"background\" for write-behind and journal compaction")
+        public String kind;
+
+        @Label("File Size")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("org.dictionary.JournalSync")
+    @Label("Journal Sync")
+    @Category("Dictionary Server")
+    @Description("An fsync of the mutation journal")
+    @StackTrace(false)
+    public static final class JournalSync extends Event {
+        @Label("Bytes Synced")
+        @Description("Bytes appended since the previous sync")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("org.dictionary.ConnectionAccepted")
+    @Label("Connection Accepted")
+    @Category("Dictionary Server")
+    @StackTrace(false)
+    public static final class ConnectionAccepted extends Event {
+        @Label("Client Address")
+        public String host;
+    }
+
+    @Name("org.dictionary.ConnectionClosed")
+    @Label("Connection Closed")
+    @Category("Dictionary Server")
+    @StackTrace(false)
+    public static final class ConnectionClosed extends Event {
+        @Label("Client Address")
+        public String host;
+    }
+}
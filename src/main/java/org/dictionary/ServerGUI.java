@@ -2,42 +2,78 @@ package org.dictionary;
 
 // --- ServerGUI.java ---
 import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 public class ServerGUI extends JFrame {
     private final JButton startButton;
     private final JButton stopButton;
+    private final JButton dumpRecordingButton;
     private final JTextArea logArea;
     private final JLabel clientCountLabel;
+    private final JLabel connectionStatsLabel;
     private final DictionaryServer dictionaryServer;
+    private final DefaultTableModel metricsModel;
+    private final JLabel metricsSummaryLabel;
+    // Counts at the previous refresh, for the per-second column.
+    private final Map<String, Long> lastCounts = new HashMap<>();
+    private long lastRefreshNanos;
 
-    public ServerGUI(int port, String dictPath) {
+    public ServerGUI(int port, String dictPath, ServerOptions options) {
         super("Dictionary Server Dashboard");
 
         // --- Initialize the server logic ---
-        dictionaryServer = new DictionaryServer(port, dictPath);
+        dictionaryServer = new DictionaryServer(port, dictPath, options);
 
         // --- Create GUI Components ---
         startButton = new JButton("Start Server");
         stopButton = new JButton("Stop Server");
         stopButton.setEnabled(false); // Can't stop a server that hasn't started
+        dumpRecordingButton = new JButton("Dump Flight Recording");
+        dumpRecordingButton.setEnabled(dictionaryServer.isFlightRecording());
+        dumpRecordingButton.setToolTipText(dictionaryServer.isFlightRecording()
+                ? "Write the last minutes of JFR data to a file" : "Start the server with --jfr=true to record");
 
         logArea = new JTextArea(20, 50);
         logArea.setEditable(false);
         clientCountLabel = new JLabel("Active Clients: 0");
+        connectionStatsLabel = new JLabel("Handlers: 0 active, 0 queued, 0 rejected");
+        metricsModel = new DefaultTableModel(new Object[]{"Metric", "Count", "Per second", "Mean ms", "p50 ms",
+                "p99 ms", "p99.9 ms", "Max ms"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        metricsSummaryLabel = new JLabel(" ");
 
         // --- Layout ---
         JPanel controlPanel = new JPanel();
         controlPanel.add(startButton);
         controlPanel.add(stopButton);
+        controlPanel.add(dumpRecordingButton);
         controlPanel.add(clientCountLabel);
+        controlPanel.add(connectionStatsLabel);
+
+        JPanel metricsPanel = new JPanel(new BorderLayout());
+        metricsPanel.setBorder(BorderFactory.createTitledBorder("Metrics since start"));
+        JScrollPane metricsScroll = new JScrollPane(new JTable(metricsModel));
+        metricsScroll.setPreferredSize(new Dimension(700, 230));
+        metricsPanel.add(metricsScroll, BorderLayout.CENTER);
+        metricsPanel.add(metricsSummaryLabel, BorderLayout.SOUTH);
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(logArea), metricsPanel);
+        splitPane.setResizeWeight(0.5);
 
         add(controlPanel, BorderLayout.NORTH);
-        add(new JScrollPane(logArea), BorderLayout.CENTER);
+        add(splitPane, BorderLayout.CENTER);
 
         // --- Add Action Listeners ---
         startButton.addActionListener(e -> startServer());
         stopButton.addActionListener(e -> stopServer());
+        dumpRecordingButton.addActionListener(e -> dumpFlightRecording());
 
         // --- Window Setup ---
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -47,6 +83,44 @@ public class ServerGUI extends JFrame {
 
         // --- Link server logic to GUI components for updates ---
         setupServerCallbacks();
+        new Timer(1000, e -> refreshMetrics()).start();
+    }
+
+    // Redraws the metrics table; runs on the event dispatch thread once a second.
+    private void refreshMetrics() {
+        ServerMetrics metrics = dictionaryServer.getMetrics();
+        long now = System.nanoTime();
+        double seconds = lastRefreshNanos == 0 ? 0 : (now - lastRefreshNanos) / 1e9;
+        lastRefreshNanos = now;
+        metricsModel.setRowCount(0);
+        for (Map.Entry<String, LatencyHistogram> command : metrics.getCommandLatencies().entrySet()) {
+            addMetricsRow(command.getKey(), command.getValue(), seconds);
+        }
+        addMetricsRow("lock wait (contended)", metrics.getLockWait(), seconds);
+        addMetricsRow("lock hold", metrics.getLockHold(), seconds);
+        addMetricsRow("file save", metrics.getSaves(), seconds);
+        ReplicationFollower follower = dictionaryServer.getReplicationFollower();
+        if (follower != null) {
+            addMetricsRow("replication lag", follower.getLag(), seconds);
+        }
+        String replication = dictionaryServer.getReplicationSummary();
+        metricsSummaryLabel.setText(String.format("Up %d s    Malformed requests: %d    Last save: %.1f MB    "
+                        + "Saved in total: %.1f MB%s", metrics.getUptimeMillis() / 1000, metrics.getMalformedRequests(),
+                metrics.getLastSaveBytes() / 1e6, metrics.getSavedBytes() / 1e6,
+                replication == null ? "" : "    " + replication));
+    }
+
+    private void addMetricsRow(String name, LatencyHistogram histogram, double seconds) {
+        long count = histogram.getCount();
+        Long last = lastCounts.put(name, count);
+        String perSecond = seconds > 0 && last != null ? String.format("%.0f", (count - last) / seconds) : "";
+        metricsModel.addRow(new Object[]{name, count, perSecond, millis(histogram.getMean()),
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMax())});
+    }
+
+    private static String millis(double nanos) {
+        return String.format("%.3f", nanos / 1e6);
     }
 
     private void setupServerCallbacks() {
@@ -57,6 +131,11 @@ public class ServerGUI extends JFrame {
         dictionaryServer.setClientCountUpdater(count ->
                 SwingUtilities.invokeLater(() -> clientCountLabel.setText("Active Clients: " + count))
         );
+        dictionaryServer.setConnectionStatsUpdater(stats ->
+                SwingUtilities.invokeLater(() -> connectionStatsLabel.setText("Handlers: " + stats.getActive()
+                        + " active, " + stats.getQueued() + " queued, " + stats.getRejected() + " rejected"))
+        );
+        logArea.append(dictionaryServer.getLoadSummary() + "\n");
     }
 
     private void startServer() {
@@ -66,6 +145,24 @@ public class ServerGUI extends JFrame {
         stopButton.setEnabled(true);
     }
 
+    // Dumping copies up to --jfr-max-size-mb of data, so it runs off the event thread.
+    private void dumpFlightRecording() {
+        dumpRecordingButton.setEnabled(false);
+        new Thread(() -> {
+            String message;
+            try {
+                message = "Flight recording written to " + dictionaryServer.dumpFlightRecording();
+            } catch (IOException | RuntimeException e) {
+                message = "Could not dump flight recording: " + e.getMessage();
+            }
+            String logLine = message;
+            SwingUtilities.invokeLater(() -> {
+                logArea.append(logLine + "\n");
+                dumpRecordingButton.setEnabled(true);
+            });
+        }, "jfr-dump").start();
+    }
+
     private void stopServer() {
         dictionaryServer.stopServer();
         startButton.setEnabled(true);
@@ -73,14 +170,64 @@ public class ServerGUI extends JFrame {
     }
 
     public static void main(String[] args) {
-        if (args.length != 2) {
-            System.out.println("Usage: java ServerGUI <port> <dictionary-file-path>");
+        if (args.length < 2) {
+            System.out.println("Usage: java ServerGUI <port> <dictionary-file-path> [--option=value ...]");
+            System.out.println("Options:");
+            System.out.println("  --engine=blocking|nio             thread per connection or selector event loops (default blocking)");
+            System.out.println("  --nio-event-loops=N               selector threads for --engine=nio");
+            System.out.println("  --nio-workers=N                   request worker threads for --engine=nio");
+            System.out.println("  --executor=thread|virtual|bounded connection handling for the blocking engine (default thread)");
+            System.out.println("  --max-connections=N               handler threads for --executor=bounded (default 200)");
+            System.out.println("  --connection-queue=N              connections that may wait for a handler (default 50)");
+            System.out.println("  --max-in-flight=N                 pipelined requests (with an id) run concurrently per connection (default 64)");
+            System.out.println("  --pipeline-workers=N              threads running pipelined requests for the blocking engine");
+            System.out.println("  --query-cache-entries=N           cached serialized query responses, 0 disables (default 10000)");
+            System.out.println("  --client-tracking=true|false      push invalidations to client near caches that send track (default true)");
+            System.out.println("  --tracking-max-words=N            words tracked per connection before it is told to drop all (default 100000)");
+            System.out.println("  --prefix-index=true|false         keep the sorted word index for the prefix and scan commands");
+            System.out.println("  --suggest-index=true|false        keep the edit-distance index for the suggest command");
+            System.out.println("  --meaning-index=true|false        keep the inverted index for the searchMeanings command");
+            System.out.println("                                    (each default true, false with --storage=mapped: they are");
+            System.out.println("                                    built on the heap from every word and meaning in the file)");
+            System.out.println("  --persistence=snapshot|journal|write-behind");
+            System.out.println("                                    how writes are persisted (default snapshot; journal with");
+            System.out.println("                                    --storage=mapped, which does not allow snapshot)");
+            System.out.println("  --fsync=always|interval|os        journal fsync policy (default interval)");
+            System.out.println("  --fsync-interval-ms=N             fsync period for --fsync=interval (default 1000)");
+            System.out.println("  --journal-compact-bytes=N         journal size that triggers compaction (default 64MB)");
+            System.out.println("  --storage=heap|mapped|compact     mapped serves reads from a memory-mapped .dict file;");
+            System.out.println("                                    compact keeps UTF-8 bytes with shared meanings (default heap)");
+            System.out.println("  --mapped-merge-entries=N          overlay size that triggers a background merge (default 10000)");
+            System.out.println("  --locking=global|striped          one dictionary-wide lock or per-word lock stripes (default global)");
+            System.out.println("  --lock-stripes=N                  number of stripes for --locking=striped (default 64)");
+            System.out.println("  --load-threads=N                  threads used to parse the dictionary at startup (default 1)");
+            System.out.println("  --write-behind-staleness-ms=N     max age of unsaved writes in write-behind mode (default 1000)");
+            System.out.println("  --jfr=true|false                  keep a rolling JDK Flight Recorder recording to dump (default false)");
+            System.out.println("  --jfr-max-age-seconds=N           how much recent history the recording keeps (default 600)");
+            System.out.println("  --jfr-max-size-mb=N               disk the recording may use (default 100)");
+            System.out.println("  --jfr-request-threshold-ms=N      only record requests at least this slow (default 0, all)");
+            System.out.println("  --jfr-settings=default|profile    JVM event settings for the recording (default default)");
+            System.out.println("  --jfr-dump-dir=DIR                where dumps are written (default the working directory)");
+            System.out.println("  --replication-port=N              stream writes to read replicas on this port (default off)");
+            System.out.println("  --replication-backlog=N           recent writes kept for followers to catch up from (default 100000)");
+            System.out.println("  --replication-heartbeat-ms=N      heartbeat interval on an idle replication stream (default 1000)");
+            System.out.println("  --replicate-from=HOST:PORT        run as a read replica of the leader's replication port");
+            System.out.println("  --replication-checkpoint-ms=N     how often a replica saves its position (default 1000)");
+            System.out.println("  --replication-retry-ms=N          delay before a replica reconnects to its leader (default 1000)");
+            System.out.println("  --replication-timeout-ms=N        replica connect timeout and longest silence from the leader (default 5000)");
             return;
         }
         int port = Integer.parseInt(args[0]);
         String dictPath = args[1];
+        ServerOptions options;
+        try {
+            options = ServerOptions.parse(args, 2);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
 
         // Start the GUI
-        SwingUtilities.invokeLater(() -> new ServerGUI(port, dictPath));
+        SwingUtilities.invokeLater(() -> new ServerGUI(port, dictPath, options));
     }
 }
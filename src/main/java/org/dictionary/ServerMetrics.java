@@ -0,0 +1,118 @@
+package org.dictionary;
+
+// --- ServerMetrics.java ---
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for a running server: how long each
+ * command takes, how long writers wait for and then hold the dictionary's
+ * write locks, how long snapshot saves take and how many bytes they write,
+ * and how many requests could not be understood. Everything is recorded with
+ * {@link LongAdder}s and lock-free {@link LatencyHistogram}s, so recording
+ * from the request path costs a few atomic adds and never blocks.
+ *
+ * <p>Values accumulate from server start. Read them through the
+ * {@code stats} command or the server dashboard.
+ */
+public class ServerMetrics {
+    // Commands with their own histogram; any other command name is counted as "other".
+    private static final String[] COMMANDS = {
+            "query", "add", "remove", "addMeaning", "updateMeaning", "multiQuery", "applyBatch",
+            "prefix", "suggest", "searchMeanings", "scan", "stats", "ping", "track", "other"};
+
+    private final long startMillis = System.currentTimeMillis();
+    private final LatencyHistogram[] commandLatency = new LatencyHistogram[COMMANDS.length];
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+    private final LatencyHistogram lockHold = new LatencyHistogram();
+    private final LatencyHistogram saves = new LatencyHistogram();
+    private final LongAdder savedBytes = new LongAdder();
+    private volatile long lastSaveBytes;
+    private final LongAdder malformedRequests = new LongAdder();
+
+    public ServerMetrics() {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            commandLatency[i] = new LatencyHistogram();
+        }
+    }
+
+    /** Records how long one request took, from starting on it to handing its response to the connection. */
+    public void recordCommand(String command, long nanos) {
+        commandLatency[commandIndex(command)].record(nanos);
+    }
+
+    public void recordMalformedRequest() {
+        malformedRequests.increment();
+    }
+
+    /** Records how long a thread waited for a read or write lock that another thread held. */
+    public void recordLockWait(long nanos) {
+        lockWait.record(nanos);
+    }
+
+    /** Records how long a read or write lock was held, from acquiring it to releasing it. */
+    public void recordLockHold(long nanos) {
+        lockHold.record(nanos);
+    }
+
+    /** Records one full write of the dictionary file. */
+    public void recordSave(long nanos, long bytes) {
+        saves.record(nanos);
+        savedBytes.add(bytes);
+        lastSaveBytes = bytes;
+    }
+
+    /** Latency of every command seen so far, in a fixed order. */
+    public Map<String, LatencyHistogram> getCommandLatencies() {
+        Map<String, LatencyHistogram> seen = new LinkedHashMap<>();
+        for (int i = 0; i < COMMANDS.length; i++) {
+            if (commandLatency[i].getCount() > 0) {
+                seen.put(COMMANDS[i], commandLatency[i]);
+            }
+        }
+        return seen;
+    }
+
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    public LatencyHistogram getLockHold() {
+        return lockHold;
+    }
+
+    public LatencyHistogram getSaves() {
+        return saves;
+    }
+
+    /** Bytes written by every save so far. */
+    public long getSavedBytes() {
+        return savedBytes.sum();
+    }
+
+    /** Size of the file written by the most recent save. */
+    public long getLastSaveBytes() {
+        return lastSaveBytes;
+    }
+
+    /** Requests that were not valid JSON or were missing a field their command needs. */
+    public long getMalformedRequests() {
+        return malformedRequests.sum();
+    }
+
+    public long getUptimeMillis() {
+        return System.currentTimeMillis() - startMillis;
+    }
+
+    private static int commandIndex(String command) {
+        if (command != null) {
+            for (int i = 0; i < COMMANDS.length - 1; i++) {
+                if (COMMANDS[i].equals(command)) {
+                    return i;
+                }
+            }
+        }
+        return COMMANDS.length - 1;
+    }
+}
@@ -0,0 +1,97 @@
+package org.dictionary;
+
+// --- ServerOptions.java ---
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Optional server settings passed on the command line as {@code --name=value}
+ * after the port and dictionary path, e.g. {@code --persistence=journal}.
+ * Each component reads the options it cares about and falls back to a default.
+ */
+public class ServerOptions {
+    private final Map<String, String> values;
+
+    public ServerOptions() {
+        this(Collections.emptyMap());
+    }
+
+    public ServerOptions(Map<String, String> values) {
+        this.values = new HashMap<>(values);
+    }
+
+    /**
+     * Parses every argument from {@code offset} onwards. A bare {@code --flag}
+     * is treated as {@code --flag=true}.
+     */
+    public static ServerOptions parse(String[] args, int offset) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = offset; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || arg.length() == 2) {
+                throw new IllegalArgumentException("Unrecognised option: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq == -1) {
+                values.put(arg.substring(2), "true");
+            } else {
+                values.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return new ServerOptions(values);
+    }
+
+    public String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " expects a number but was '" + value + "'");
+        }
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " expects a number but was '" + value + "'");
+        }
+    }
+
+    public int getInt(String name, int defaultValue) {
+        return (int) getLong(name, defaultValue);
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Reads an enum-valued option. Values are matched case-insensitively and
+     * dashes map to underscores, so {@code write-behind} selects {@code WRITE_BEHIND}.
+     */
+    public <E extends Enum<E>> E getEnum(String name, Class<E> type, E defaultValue) {
+        String value = values.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown value '" + value + "' for option --" + name);
+        }
+    }
+}
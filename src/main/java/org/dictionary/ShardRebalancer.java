@@ -0,0 +1,161 @@
+package org.dictionary;
+
+// --- ShardRebalancer.java ---
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Moves words between shards after the shard list changes. Every shard in the
+ * old list is read with the {@code scan} command; each word the new
+ * {@link ShardRing} places elsewhere is added to its new shard and then
+ * removed from the old one. With consistent hashing, adding a shard to N
+ * moves roughly 1/(N+1) of the words, all of them onto the new shard.
+ *
+ * <p>The move is an operator step: pause writes (or point clients at nothing
+ * but the routers and stop those), run the rebalancer, then restart the
+ * routers with the new {@code --shards} list. A word that already exists on
+ * its new shard keeps the value it has there. Running it again after an
+ * interruption is safe; it only moves what is still misplaced.
+ *
+ * <p>Usage: {@code java org.dictionary.ShardRebalancer --from=host:port,... --to=host:port,...}
+ */
+public class ShardRebalancer {
+    private static final int PAGE_SIZE = 1000;
+
+    private final ShardRing from;
+    private final ShardRing to;
+    private final Map<String, AsyncDictionaryClient> clients = new LinkedHashMap<>();
+
+    public ShardRebalancer(ShardRing from, ShardRing to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Moves every misplaced word and returns how many left each old shard.
+     */
+    public Map<String, Integer> run() throws IOException, InterruptedException {
+        Map<String, Integer> moved = new LinkedHashMap<>();
+        try {
+            for (String shard : from.getShards()) {
+                moved.put(shard, drain(shard));
+            }
+        } finally {
+            for (AsyncDictionaryClient client : clients.values()) {
+                client.close();
+            }
+            clients.clear();
+        }
+        return moved;
+    }
+
+    private int drain(String shard) throws IOException, InterruptedException {
+        AsyncDictionaryClient source = client(shard);
+        int scanned = 0;
+        int moved = 0;
+        String after = "";
+        while (after != null) {
+            JsonObject scan = new JsonObject();
+            scan.addProperty("command", "scan");
+            scan.addProperty("after", after);
+            scan.addProperty("limit", PAGE_SIZE);
+            JsonObject page = call(source, scan);
+            if (!"success".equals(page.get("status").getAsString())) {
+                throw new IOException("Scanning " + shard + " failed: " + page.get("message").getAsString());
+            }
+            after = page.has("next") ? page.get("next").getAsString() : null;
+
+            List<String> words = new ArrayList<>();
+            List<CompletableFuture<JsonObject>> copies = new ArrayList<>();
+            for (Map.Entry<String, JsonElement> entry : page.getAsJsonObject("results").entrySet()) {
+                scanned++;
+                String owner = to.shardFor(entry.getKey());
+                if (!owner.equals(shard)) {
+                    JsonObject add = new JsonObject();
+                    add.addProperty("command", "add");
+                    add.addProperty("word", entry.getKey());
+                    add.add("meanings", entry.getValue());
+                    words.add(entry.getKey());
+                    copies.add(client(owner).send(add));
+                }
+            }
+            // Only remove a word from its old shard once its new shard holds it.
+            List<CompletableFuture<JsonObject>> removals = new ArrayList<>();
+            for (int i = 0; i < words.size(); i++) {
+                JsonObject copied = join(copies.get(i));
+                String status = copied.get("status").getAsString();
+                if (!"success".equals(status) && !"duplicate".equals(status)) {
+                    throw new IOException("Copying '" + words.get(i) + "' failed: " + copied.get("message").getAsString());
+                }
+                JsonObject remove = new JsonObject();
+                remove.addProperty("command", "remove");
+                remove.addProperty("word", words.get(i));
+                removals.add(source.send(remove));
+            }
+            for (CompletableFuture<JsonObject> removal : removals) {
+                join(removal);
+            }
+            moved += words.size();
+        }
+        System.out.println("Shard " + shard + ": scanned " + scanned + " words, moved " + moved);
+        return moved;
+    }
+
+    private AsyncDictionaryClient client(String shard) throws IOException {
+        AsyncDictionaryClient client = clients.get(shard);
+        if (client == null) {
+            int colon = shard.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Shard address must be host:port, got '" + shard + "'");
+            }
+            client = new AsyncDictionaryClient(shard.substring(0, colon), Integer.parseInt(shard.substring(colon + 1)));
+            clients.put(shard, client);
+        }
+        return client;
+    }
+
+    private static JsonObject call(AsyncDictionaryClient client, JsonObject request)
+            throws IOException, InterruptedException {
+        return join(client.send(request));
+    }
+
+    private static JsonObject join(CompletableFuture<JsonObject> response) throws IOException, InterruptedException {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    public static void main(String[] args) {
+        ServerOptions options = ServerOptions.parse(args, 0);
+        String fromList = options.get("from", null);
+        String toList = options.get("to", null);
+        if (fromList == null || toList == null) {
+            System.out.println("Usage: java ShardRebalancer --from=host:port,... --to=host:port,... [--virtual-nodes=N]");
+            System.out.println("Moves each word to the shard the new list assigns it. Pause writes while it runs,");
+            System.out.println("then restart the routers with --shards set to the new list.");
+            return;
+        }
+        int virtualNodes = options.getInt("virtual-nodes", ShardRing.DEFAULT_VIRTUAL_NODES);
+        long start = System.nanoTime();
+        try {
+            Map<String, Integer> moved = new ShardRebalancer(ShardRing.parse(fromList, virtualNodes),
+                    ShardRing.parse(toList, virtualNodes)).run();
+            int total = moved.values().stream().mapToInt(Integer::intValue).sum();
+            System.out.printf("Moved %d words in %.1f s%n", total, (System.nanoTime() - start) / 1e9);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Rebalancing stopped: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.dictionary;
+
+// --- ShardRing.java ---
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Consistent hashing of words onto shards. Each shard is placed on a 64-bit
+ * ring at {@code virtualNodes} points hashed from its name, and a word
+ * belongs to the shard owning the first point at or after the word's own
+ * hash. Adding a shard only takes over the arcs just before its new points,
+ * so about 1/N of the words move and all of them move to the new shard;
+ * removing one hands its arcs to the shards that follow. With the default
+ * 160 points per shard, shard sizes typically stay within about 10% of each
+ * other.
+ *
+ * <p>Routers and the rebalancer must agree on the shard names (their
+ * {@code host:port} addresses) and the number of virtual nodes; the hash is
+ * fixed, so every JVM computes the same owners.
+ */
+public class ShardRing {
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final List<String> shards;
+    private final long[] points;    // sorted
+    private final String[] owners;  // owner of each point
+
+    public ShardRing(List<String> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A shard ring needs at least one shard");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        int count = shards.size() * virtualNodes;
+        long[] hashes = new long[count];
+        Integer[] order = new Integer[count];
+        for (int s = 0; s < shards.size(); s++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                int i = s * virtualNodes + v;
+                hashes[i] = hash(shards.get(s) + "#" + v);
+                order[i] = i;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Long.compareUnsigned(hashes[a], hashes[b]));
+        this.points = new long[count];
+        this.owners = new String[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = shards.get(order[i] / virtualNodes);
+        }
+    }
+
+    /** Parses a comma-separated shard list, e.g. {@code localhost:5001,localhost:5002}. */
+    public static ShardRing parse(String shardList, int virtualNodes) {
+        List<String> shards = new ArrayList<>();
+        for (String shard : shardList.split(",")) {
+            if (!shard.trim().isEmpty()) {
+                shards.add(shard.trim());
+            }
+        }
+        return new ShardRing(shards, virtualNodes);
+    }
+
+    public List<String> getShards() {
+        return shards;
+    }
+
+    /** The shard that owns {@code word}. */
+    public String shardFor(String word) {
+        long hash = hash(word);
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], hash) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    // 64-bit FNV-1a over the UTF-16 code units, then the MurmurHash3
+    // finalizer so that similar strings land far apart on the ring.
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
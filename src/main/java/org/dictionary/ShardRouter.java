@@ -0,0 +1,584 @@
+package org.dictionary;
+
+// --- ShardRouter.java ---
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A proxy that speaks the client line protocol and spreads the dictionary
+ * over several {@link DictionaryServer}s, each holding the words a
+ * {@link ShardRing} assigns to it in its own dictionary file. Clients connect
+ * to the router exactly as they would to a single server.
+ *
+ * <p>Single-word commands go to the word's shard. {@code multiQuery} is split
+ * by shard and the answers are put back in request order; {@code prefix},
+ * {@code suggest}, {@code searchMeanings} and {@code stats} go to every shard
+ * and the results are merged. An {@code applyBatch} is forwarded if all its
+ * words live on one shard and refused otherwise, since a batch is only
+ * atomic within one server. Likewise a {@code multiQuery} across shards is
+ * not a single point-in-time read, and meaning search ranks with each
+ * shard's own term statistics.
+ *
+ * <p>Each shard is reached through a {@link PooledDictionaryClient} shared by
+ * all clients; its {@code --pool-size}, timeout and health-check options are
+ * passed through from the router's command line. As on a server, requests with an
+ * {@code id} may be answered out of order; requests without one are sent on
+ * one at a time and answered in order.
+ *
+ * <p>Usage: {@code java org.dictionary.ShardRouter <port> --shards=host:port,...}.
+ * When the shard list changes, move the affected words first with
+ * {@link ShardRebalancer}, then restart the routers with the new list.
+ */
+public class ShardRouter implements Runnable {
+    private static final String MALFORMED = "Malformed JSON request received.";
+    // Mirrors RequestProcessor's defaults and limits, so errors read the same.
+    private static final int DEFAULT_PREFIX_LIMIT = 10;
+    private static final int DEFAULT_SUGGEST_DISTANCE = 2;
+    private static final int DEFAULT_SUGGEST_LIMIT = 5;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 100;
+
+    /** The connection pool for one shard, created on first use so the router starts while a shard is down. */
+    private static final class Shard {
+        private final String address;
+        private final String host;
+        private final int port;
+        private final ServerOptions options;
+        private PooledDictionaryClient pool;
+
+        Shard(String address, ServerOptions options) {
+            int colon = address.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Shard address must be host:port, got '" + address + "'");
+            }
+            this.address = address;
+            this.host = address.substring(0, colon);
+            this.port = Integer.parseInt(address.substring(colon + 1));
+            this.options = options;
+        }
+
+        CompletableFuture<JsonObject> send(JsonObject request) {
+            try {
+                return pool().send(request);
+            } catch (IOException e) {
+                CompletableFuture<JsonObject> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new IOException("Shard " + address + " is unavailable: " + e.getMessage()));
+                return failed;
+            }
+        }
+
+        private synchronized PooledDictionaryClient pool() throws IOException {
+            if (pool == null) {
+                pool = new PooledDictionaryClient(host, port, options);
+            }
+            return pool;
+        }
+
+        synchronized void close() {
+            if (pool != null) {
+                pool.close();
+            }
+        }
+    }
+
+    // One shard's share of a meaning search: its total and its best hits, or
+    // the error it answered with instead.
+    private static final class SearchHits {
+        JsonObject error;
+        int total;
+        final List<String> words = new ArrayList<>();
+        final List<JsonElement> meanings = new ArrayList<>();
+        final List<Double> scores = new ArrayList<>();
+    }
+
+    private final int port;
+    private final ShardRing ring;
+    private final Map<String, Shard> shards = new LinkedHashMap<>();
+    private final int maxInFlight;
+    private final Gson gson = new Gson();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public ShardRouter(int port, ServerOptions options) {
+        String shardList = options.get("shards", null);
+        if (shardList == null) {
+            throw new IllegalArgumentException("Option --shards=host:port,... is required");
+        }
+        this.port = port;
+        this.ring = ShardRing.parse(shardList, options.getInt("virtual-nodes", ShardRing.DEFAULT_VIRTUAL_NODES));
+        for (String address : ring.getShards()) {
+            shards.put(address, new Shard(address, options));
+        }
+        this.maxInFlight = options.getInt("max-in-flight", 64);
+    }
+
+    @Override
+    public void run() {
+        running = true;
+        try (ServerSocket socket = new ServerSocket(port)) {
+            serverSocket = socket;
+            System.out.println("Routing port " + port + " across " + shards.size() + " shards: " + ring.getShards());
+            while (running) {
+                Socket client = socket.accept();
+                Thread handler = new Thread(() -> serve(client), "router-connection-" + connectionCount.incrementAndGet());
+                handler.setDaemon(true);
+                handler.start();
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Router error: " + e.getMessage());
+            }
+        } finally {
+            stop();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+            // Shutting down anyway.
+        }
+        for (Shard shard : shards.values()) {
+            shard.close();
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket client = socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8)));
+            Semaphore inFlight = new Semaphore(maxInFlight);
+            CompletableFuture<Void> ordered = CompletableFuture.completedFuture(null);
+            String line;
+            while ((line = in.readLine()) != null) {
+                JsonObject request;
+                try {
+                    request = gson.fromJson(line, JsonObject.class);
+                    if (request == null) {
+                        continue; // empty line
+                    }
+                } catch (RuntimeException e) {
+                    request = null;
+                }
+                inFlight.acquire();
+                JsonObject parsed = request;
+                JsonElement id = request == null ? null : request.get("id");
+                if (id != null) {
+                    route(parsed).handle((response, failure) -> {
+                        respond(out, id, response, failure);
+                        inFlight.release();
+                        return null;
+                    });
+                } else {
+                    ordered = ordered.thenCompose(ignored -> route(parsed)).handle((response, failure) -> {
+                        respond(out, null, response, failure);
+                        inFlight.release();
+                        return null;
+                    });
+                }
+            }
+            inFlight.acquire(maxInFlight); // let the last responses go out before closing
+        } catch (IOException e) {
+            // The client went away.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respond(PrintWriter out, JsonElement id, JsonObject response, Throwable failure) {
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            response = error(cause.getMessage());
+        }
+        // The shard's answer carries the router's own id; the client gets its id back, first.
+        JsonObject answer = new JsonObject();
+        if (id != null) {
+            answer.add("id", id);
+        }
+        for (Map.Entry<String, JsonElement> field : response.entrySet()) {
+            if (!field.getKey().equals("id")) {
+                answer.add(field.getKey(), field.getValue());
+            }
+        }
+        synchronized (out) {
+            out.println(gson.toJson(answer));
+            out.flush();
+        }
+    }
+
+    private CompletableFuture<JsonObject> route(JsonObject request) {
+        try {
+            if (request == null) {
+                throw new IllegalArgumentException("Not a JSON object");
+            }
+            String command = request.get("command").getAsString();
+            switch (command) {
+                case "query":
+                case "add":
+                case "remove":
+                case "updateMeaning":
+                case "addMeaning":
+                    return shardFor(request.get("word").getAsString()).send(request);
+                case "multiQuery":
+                    return multiQuery(request);
+                case "applyBatch":
+                    return applyBatch(request);
+                case "prefix":
+                    return prefix(request);
+                case "suggest":
+                    return suggest(request);
+                case "searchMeanings":
+                    return searchMeanings(request);
+                case "stats":
+                    return stats(request);
+                case "ping": { // answered here: it checks the client's connection to the router
+                    JsonObject pong = new JsonObject();
+                    pong.addProperty("status", "success");
+                    return CompletableFuture.completedFuture(pong);
+                }
+                default:
+                    return CompletableFuture.completedFuture(error("Unknown command"));
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(error(MALFORMED));
+        }
+    }
+
+    private Shard shardFor(String word) {
+        return shards.get(ring.shardFor(word));
+    }
+
+    // Sends the request to every shard and collects the answers in shard order.
+    private CompletableFuture<List<JsonObject>> all(JsonObject request) {
+        List<CompletableFuture<JsonObject>> answers = new ArrayList<>();
+        for (Shard shard : shards.values()) {
+            answers.add(shard.send(request));
+        }
+        return joinAll(answers);
+    }
+
+    // Completes with every answer, in order, once all of them are in.
+    private static <T> CompletableFuture<List<T>> joinAll(List<CompletableFuture<T>> answers) {
+        return CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<T> results = new ArrayList<>(answers.size());
+            for (CompletableFuture<T> answer : answers) {
+                results.add(answer.join());
+            }
+            return results;
+        });
+    }
+
+    // The first answer that is not a success, e.g. a validation error every shard gives alike.
+    private static JsonObject firstError(List<JsonObject> responses) {
+        for (JsonObject response : responses) {
+            if (!"success".equals(response.get("status").getAsString())) {
+                return response;
+            }
+        }
+        return null;
+    }
+
+    private CompletableFuture<JsonObject> multiQuery(JsonObject request) {
+        Set<String> words = new LinkedHashSet<>();
+        for (JsonElement word : request.getAsJsonArray("words")) {
+            words.add(word.getAsString());
+        }
+        Map<Shard, JsonArray> byShard = new LinkedHashMap<>();
+        for (String word : words) {
+            byShard.computeIfAbsent(shardFor(word), shard -> new JsonArray()).add(word);
+        }
+        List<CompletableFuture<JsonObject>> answers = new ArrayList<>();
+        for (Map.Entry<Shard, JsonArray> entry : byShard.entrySet()) {
+            JsonObject part = new JsonObject();
+            part.addProperty("command", "multiQuery");
+            part.add("words", entry.getValue());
+            answers.add(entry.getKey().send(part));
+        }
+        return joinAll(answers).thenApply(responses -> {
+            JsonObject found = new JsonObject();
+            for (JsonObject response : responses) {
+                if (!"success".equals(response.get("status").getAsString())) {
+                    return response;
+                }
+                for (Map.Entry<String, JsonElement> entry : response.getAsJsonObject("results").entrySet()) {
+                    found.add(entry.getKey(), entry.getValue());
+                }
+            }
+            JsonObject results = new JsonObject();
+            JsonArray missing = new JsonArray();
+            for (String word : words) {
+                if (found.has(word)) {
+                    results.add(word, found.get(word));
+                } else {
+                    missing.add(word);
+                }
+            }
+            JsonObject response = new JsonObject();
+            response.addProperty("status", "success");
+            response.add("results", results);
+            response.add("missing", missing);
+            return response;
+        });
+    }
+
+    private CompletableFuture<JsonObject> applyBatch(JsonObject request) {
+        Set<Shard> touched = new LinkedHashSet<>();
+        for (JsonElement operation : request.getAsJsonArray("operations")) {
+            touched.add(shardFor(operation.getAsJsonObject().get("word").getAsString()));
+        }
+        if (touched.size() > 1) {
+            return CompletableFuture.completedFuture(error("Batch touches words on " + touched.size()
+                    + " shards; a batch is only atomic within one shard."));
+        }
+        // An empty batch still goes to a shard, which answers it as usual.
+        Shard shard = touched.isEmpty() ? shards.values().iterator().next() : touched.iterator().next();
+        return shard.send(request);
+    }
+
+    private CompletableFuture<JsonObject> prefix(JsonObject request) {
+        int limit = request.has("limit") ? request.get("limit").getAsInt() : DEFAULT_PREFIX_LIMIT;
+        boolean withMeanings = request.has("withMeanings") && request.get("withMeanings").getAsBoolean();
+        return all(request).thenApply(responses -> {
+            JsonObject failed = firstError(responses);
+            if (failed != null) {
+                return failed;
+            }
+            TreeMap<String, JsonElement> merged = new TreeMap<>();
+            boolean more = false;
+            for (JsonObject response : responses) {
+                if (withMeanings) {
+                    for (Map.Entry<String, JsonElement> entry : response.getAsJsonObject("results").entrySet()) {
+                        merged.put(entry.getKey(), entry.getValue());
+                    }
+                } else {
+                    for (JsonElement word : response.getAsJsonArray("words")) {
+                        merged.put(word.getAsString(), null);
+                    }
+                }
+                more |= response.get("more").getAsBoolean();
+            }
+            more |= merged.size() > limit;
+            JsonObject results = new JsonObject();
+            JsonArray words = new JsonArray();
+            for (Map.Entry<String, JsonElement> entry : merged.entrySet()) {
+                if (words.size() + results.size() == limit) {
+                    break;
+                }
+                if (withMeanings) {
+                    results.add(entry.getKey(), entry.getValue());
+                } else {
+                    words.add(entry.getKey());
+                }
+            }
+            JsonObject response = new JsonObject();
+            response.addProperty("status", "success");
+            response.add(withMeanings ? "results" : "words", withMeanings ? results : words);
+            response.addProperty("more", more);
+            return response;
+        });
+    }
+
+    private CompletableFuture<JsonObject> suggest(JsonObject request) {
+        String word = request.get("word").getAsString();
+        int maxDistance = request.has("maxDistance")
+                ? request.get("maxDistance").getAsInt() : DEFAULT_SUGGEST_DISTANCE;
+        int limit = request.has("limit") ? request.get("limit").getAsInt() : DEFAULT_SUGGEST_LIMIT;
+        return all(request).thenApply(responses -> {
+            JsonObject failed = firstError(responses);
+            if (failed != null) {
+                return failed;
+            }
+            // Shards do not send distances, so they are worked out again to merge in the same order.
+            List<String> candidates = new ArrayList<>();
+            for (JsonObject response : responses) {
+                for (JsonElement suggestion : response.getAsJsonArray("suggestions")) {
+                    candidates.add(suggestion.getAsString());
+                }
+            }
+            Map<String, Integer> distances = new LinkedHashMap<>();
+            for (String candidate : candidates) {
+                distances.put(candidate, SuggestionIndex.distance(word, candidate, maxDistance));
+            }
+            candidates.sort((a, b) -> {
+                int byDistance = Integer.compare(distances.get(a), distances.get(b));
+                return byDistance != 0 ? byDistance : a.compareTo(b);
+            });
+            JsonArray suggestions = new JsonArray();
+            for (int i = 0; i < candidates.size() && i < limit; i++) {
+                suggestions.add(candidates.get(i));
+            }
+            JsonObject response = new JsonObject();
+            response.addProperty("status", "success");
+            response.add("suggestions", suggestions);
+            return response;
+        });
+    }
+
+    // Every shard is asked for its best offset + limit hits, with scores, in
+    // pages of at most MAX_SEARCH_LIMIT; the merged list is then paged here.
+    private CompletableFuture<JsonObject> searchMeanings(JsonObject request) {
+        String query = request.get("query").getAsString();
+        int offset = request.has("offset") ? request.get("offset").getAsInt() : 0;
+        int limit = request.has("limit") ? request.get("limit").getAsInt() : DEFAULT_SEARCH_LIMIT;
+        boolean withScores = request.has("withScores") && request.get("withScores").getAsBoolean();
+        if (offset < 0 || limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            return CompletableFuture.completedFuture(error("Offset must not be negative and limit must be between 1 and "
+                    + MAX_SEARCH_LIMIT + "."));
+        }
+        int keep = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        List<CompletableFuture<SearchHits>> answers = new ArrayList<>();
+        for (Shard shard : shards.values()) {
+            answers.add(searchShard(shard, query, keep, new SearchHits()));
+        }
+        return joinAll(answers).thenApply(perShard -> {
+            for (SearchHits shardHits : perShard) {
+                if (shardHits.error != null) {
+                    return shardHits.error;
+                }
+            }
+            List<int[]> hits = new ArrayList<>(); // {shard, index}
+            long total = 0;
+            for (int s = 0; s < perShard.size(); s++) {
+                total += perShard.get(s).total;
+                for (int i = 0; i < perShard.get(s).words.size(); i++) {
+                    hits.add(new int[]{s, i});
+                }
+            }
+            hits.sort((a, b) -> {
+                SearchHits x = perShard.get(a[0]);
+                SearchHits y = perShard.get(b[0]);
+                int byScore = Double.compare(y.scores.get(b[1]), x.scores.get(a[1]));
+                return byScore != 0 ? byScore : x.words.get(a[1]).compareTo(y.words.get(b[1]));
+            });
+            JsonObject results = new JsonObject();
+            JsonArray scores = new JsonArray();
+            for (int i = offset; i < hits.size() && i < keep; i++) {
+                SearchHits from = perShard.get(hits.get(i)[0]);
+                int index = hits.get(i)[1];
+                results.add(from.words.get(index), from.meanings.get(index));
+                scores.add(from.scores.get(index));
+            }
+            JsonObject response = new JsonObject();
+            response.addProperty("status", "success");
+            response.addProperty("total", total);
+            response.add("results", results);
+            if (withScores) {
+                response.add("scores", scores);
+            }
+            if ((long) offset + limit < total) {
+                response.addProperty("nextOffset", offset + limit);
+            }
+            return response;
+        });
+    }
+
+    // Fetches the shard's best keep hits into hits, page by page, stopping at
+    // the first error response.
+    private CompletableFuture<SearchHits> searchShard(Shard shard, String query, int keep, SearchHits hits) {
+        JsonObject page = new JsonObject();
+        page.addProperty("command", "searchMeanings");
+        page.addProperty("query", query);
+        page.addProperty("offset", hits.words.size());
+        page.addProperty("limit", Math.min(MAX_SEARCH_LIMIT, keep - hits.words.size()));
+        page.addProperty("withScores", true);
+        return shard.send(page).thenCompose(response -> {
+            if (!"success".equals(response.get("status").getAsString())) {
+                hits.error = response;
+                return CompletableFuture.completedFuture(hits);
+            }
+            hits.total = response.get("total").getAsInt();
+            JsonArray scores = response.getAsJsonArray("scores");
+            int i = 0;
+            for (Map.Entry<String, JsonElement> entry : response.getAsJsonObject("results").entrySet()) {
+                hits.words.add(entry.getKey());
+                hits.meanings.add(entry.getValue());
+                hits.scores.add(scores.get(i++).getAsDouble());
+            }
+            if (i == 0 || hits.words.size() >= Math.min(keep, hits.total)) {
+                return CompletableFuture.completedFuture(hits);
+            }
+            return searchShard(shard, query, keep, hits);
+        });
+    }
+
+    private CompletableFuture<JsonObject> stats(JsonObject request) {
+        return all(request).thenApply(responses -> {
+            JsonObject perShard = new JsonObject();
+            long words = 0;
+            int i = 0;
+            for (String address : shards.keySet()) {
+                JsonObject stats = responses.get(i++);
+                stats.remove("id");
+                stats.remove("status");
+                words += stats.has("words") ? stats.get("words").getAsLong() : 0;
+                perShard.add(address, stats);
+            }
+            JsonObject response = new JsonObject();
+            response.addProperty("status", "success");
+            response.addProperty("words", words);
+            response.add("shards", perShard);
+            return response;
+        });
+    }
+
+    private static JsonObject error(String message) {
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "error");
+        response.addProperty("message", message);
+        return response;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java ShardRouter <port> --shards=host:port,host:port,... [--option=value ...]");
+            System.out.println("Options:");
+            System.out.println("  --shards=LIST                     the dictionary servers holding the shards (required)");
+            System.out.println("  --virtual-nodes=N                 ring points per shard; must match ShardRebalancer (default "
+                    + ShardRing.DEFAULT_VIRTUAL_NODES + ")");
+            System.out.println("  --pool-size=N                     pipelined connections to each shard (default 4)");
+            System.out.println("  --connect-timeout-ms=N            give up connecting to a shard after N ms (default 2000)");
+            System.out.println("  --request-timeout-ms=N            fail a request a shard has not answered in N ms (default 5000)");
+            System.out.println("  --validate-idle-ms=N              ping shard connections idle for N ms (default 30000)");
+            System.out.println("  --max-in-flight=N                 requests one client connection may have outstanding (default 64)");
+            return;
+        }
+        ShardRouter router;
+        try {
+            router = new ShardRouter(Integer.parseInt(args[0]), ServerOptions.parse(args, 1));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        router.run();
+    }
+}
@@ -0,0 +1,272 @@
+package org.dictionary;
+
+// --- SuggestionIndex.java ---
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bigram postings over every word in the dictionary, for the {@code suggest}
+ * command. Each word gets an int id, and each two-character gram of the word
+ * (padded with a boundary marker at both ends) lists the ids of the words it
+ * occurs in.
+ *
+ * <p>One edit destroys at most two bigrams, so two words within k edits share
+ * at least {@code max(length) + 1 - 2k} of them. A search counts shared
+ * bigrams by walking only the postings of the query's own bigrams, and
+ * computes the exact edit distance only for the few words that pass that
+ * count and whose length is within k. Queries too short for the count to
+ * rule anything out (shorter than 2k) fall back to checking the length
+ * filter against every word.
+ *
+ * <p>Adds append a new id to the postings of the word's bigrams. Removes clear
+ * the word from the id table, leaving its postings to be skipped; once dead
+ * ids outnumber live ones the postings are rebuilt from the live words.
+ * Searches share a read lock and updates take the write lock. A put for a
+ * word that is already indexed, i.e. any change to its meanings, is answered
+ * from the word-to-id map without taking the lock.
+ */
+public class SuggestionIndex {
+    /** Largest maxDistance a search accepts; beyond it the count filter rules out almost nothing. */
+    public static final int MAX_DISTANCE = 3;
+
+    private static final char BOUNDARY = '\u0000';
+
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(ids, 0, grown, 0, size);
+                ids = grown;
+            }
+            ids[size++] = id;
+        }
+    }
+
+    private static final class Match {
+        final String word;
+        final int distance;
+
+        Match(String word, int distance) {
+            this.word = word;
+            this.distance = distance;
+        }
+    }
+
+    // Shared-bigram count per candidate id for one search. Open addressing
+    // over id + 1 (0 marks a free slot), sized up front for the number of
+    // distinct ids the search can see, so it never grows and stays as small
+    // as the postings the query touches. Ids are dense and each postings list
+    // is in id order, so slotting by the low bits keeps probes sequential.
+    private static final class CandidateCounts {
+        final int[] keys;
+        final int[] counts;
+
+        CandidateCounts(int maxIds) {
+            int capacity = 16;
+            while (capacity < maxIds * 2) {
+                capacity <<= 1;
+            }
+            keys = new int[capacity];
+            counts = new int[capacity];
+        }
+
+        void increment(int id) {
+            int mask = keys.length - 1;
+            int slot = id & mask;
+            while (keys[slot] != 0 && keys[slot] != id + 1) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = id + 1;
+            counts[slot]++;
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Postings> postings = new HashMap<>();
+    private String[] words = new String[16]; // by id; null once removed
+    // Live word to id. Changed under the write lock; read without it by apply.
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private int nextId;
+    private int live;
+
+    public SuggestionIndex(Collection<String> initialWords) {
+        words = new String[Math.max(16, initialWords.size())];
+        for (String word : initialWords) {
+            insert(word);
+        }
+    }
+
+    /** Applies one write: a removal drops the word, anything else makes sure it is present. */
+    public void apply(Mutation mutation) {
+        // Writes to one word are serialized by the caller, so a word found here
+        // stays indexed until this mutation is done.
+        if (!mutation.isRemoval() && ids.containsKey(mutation.getWord())) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer id = ids.get(mutation.getWord());
+            if (mutation.isRemoval()) {
+                if (id != null) {
+                    ids.remove(mutation.getWord());
+                    words[id] = null;
+                    live--;
+                    if (nextId - live > live) {
+                        rebuild();
+                    }
+                }
+            } else if (id == null) {
+                insert(mutation.getWord());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} words within {@code maxDistance} edits
+     * (insertions, deletions or substitutions) of {@code word}, closest first
+     * and alphabetically among equals. The word itself is included if present.
+     */
+    public List<String> suggest(String word, int maxDistance, int limit) {
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (word.length() + 1 - 2 * maxDistance <= 0) {
+                for (int id = 0; id < nextId; id++) {
+                    check(word, id, maxDistance, matches);
+                }
+            } else {
+                List<Postings> lists = new ArrayList<>(word.length() + 1);
+                long touched = 0;
+                for (int i = 0; i <= word.length(); i++) {
+                    Postings list = postings.get(gram(word, i));
+                    if (list != null) {
+                        lists.add(list);
+                        touched += list.size;
+                    }
+                }
+                CandidateCounts counts = new CandidateCounts((int) Math.min(touched, nextId));
+                for (Postings list : lists) {
+                    for (int i = 0; i < list.size; i++) {
+                        counts.increment(list.ids[i]);
+                    }
+                }
+                for (int slot = 0; slot < counts.keys.length; slot++) {
+                    if (counts.keys[slot] == 0) {
+                        continue;
+                    }
+                    int id = counts.keys[slot] - 1;
+                    String candidate = words[id];
+                    if (candidate != null
+                            && counts.counts[slot] >= Math.max(word.length(), candidate.length()) + 1 - 2 * maxDistance) {
+                        check(word, id, maxDistance, matches);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort((a, b) -> a.distance != b.distance
+                ? Integer.compare(a.distance, b.distance) : a.word.compareTo(b.word));
+        List<String> found = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            found.add(matches.get(i).word);
+        }
+        return found;
+    }
+
+    /** Number of words that can be suggested. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void check(String word, int id, int maxDistance, List<Match> matches) {
+        String candidate = words[id];
+        if (candidate == null || Math.abs(candidate.length() - word.length()) > maxDistance) {
+            return;
+        }
+        int distance = distance(word, candidate, maxDistance);
+        if (distance <= maxDistance) {
+            matches.add(new Match(candidate, distance));
+        }
+    }
+
+    private void insert(String word) {
+        if (nextId == words.length) {
+            String[] grown = new String[words.length * 2];
+            System.arraycopy(words, 0, grown, 0, nextId);
+            words = grown;
+        }
+        int id = nextId++;
+        words[id] = word;
+        ids.put(word, id);
+        live++;
+        for (int i = 0; i <= word.length(); i++) {
+            postings.computeIfAbsent(gram(word, i), g -> new Postings()).add(id);
+        }
+    }
+
+    private void rebuild() {
+        String[] old = words;
+        int oldCount = nextId;
+        postings.clear();
+        ids.clear();
+        words = new String[Math.max(16, live)];
+        nextId = 0;
+        live = 0;
+        for (int id = 0; id < oldCount; id++) {
+            if (old[id] != null) {
+                insert(old[id]);
+            }
+        }
+    }
+
+    // The i-th bigram of the word padded with a boundary at each end, i from 0 to length.
+    private static Integer gram(String word, int i) {
+        char first = i == 0 ? BOUNDARY : word.charAt(i - 1);
+        char second = i == word.length() ? BOUNDARY : word.charAt(i);
+        return (first << 16) | second;
+    }
+
+    // Levenshtein distance keeping two rows of the table; stops early and
+    // returns maxDistance + 1 once every cell in a row is past maxDistance.
+    static int distance(String a, String b, int maxDistance) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] t = previous;
+            previous = current;
+            current = t;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,63 @@
+package org.dictionary;
+
+// --- WriteBatch.java ---
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ordered list of write operations for {@link DictionaryManager#applyBatch}.
+ * Each operation sees the effect of the ones before it, e.g. a batch may add a
+ * word and then add a second meaning to it.
+ */
+public final class WriteBatch {
+
+    public enum Type { ADD, REMOVE, ADD_MEANING, UPDATE_MEANING }
+
+    static final class Operation {
+        final Type type;
+        final String word;
+        final List<String> meanings;  // ADD only
+        final String oldMeaning;      // UPDATE_MEANING only
+        final String newMeaning;      // ADD_MEANING and UPDATE_MEANING
+
+        Operation(Type type, String word, List<String> meanings, String oldMeaning, String newMeaning) {
+            this.type = type;
+            this.word = word;
+            this.meanings = meanings;
+            this.oldMeaning = oldMeaning;
+            this.newMeaning = newMeaning;
+        }
+    }
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    public WriteBatch add(String word, List<String> meanings) {
+        operations.add(new Operation(Type.ADD, word,
+                Collections.unmodifiableList(new ArrayList<>(meanings)), null, null));
+        return this;
+    }
+
+    public WriteBatch remove(String word) {
+        operations.add(new Operation(Type.REMOVE, word, null, null, null));
+        return this;
+    }
+
+    public WriteBatch addMeaning(String word, String newMeaning) {
+        operations.add(new Operation(Type.ADD_MEANING, word, null, null, newMeaning));
+        return this;
+    }
+
+    public WriteBatch updateMeaning(String word, String oldMeaning, String newMeaning) {
+        operations.add(new Operation(Type.UPDATE_MEANING, word, null, oldMeaning, newMeaning));
+        return this;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    List<Operation> operations() {
+        return operations;
+    }
+}
@@ -0,0 +1,109 @@
+package org.dictionary;
+
+// --- WriteBehindPersister.java ---
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background snapshot writer for the write-behind persistence mode. Writers only
+ * call {@link #markDirty()}; a dedicated thread notices the change, waits out the
+ * staleness window so a burst of writes collapses into one snapshot, and then
+ * runs the snapshot writer outside the dictionary's write lock.
+ */
+public class WriteBehindPersister {
+    private final Runnable snapshotWriter;
+    private final long maxStalenessMs;
+    private final Thread worker;
+    private final Object snapshotMutex = new Object();
+
+    // Bumped on every mutation; the thread persists up to the version it saw.
+    private long dirtyVersion;
+    private long persistedVersion;
+    private long firstDirtyAt;
+    private volatile boolean running = true;
+
+    public WriteBehindPersister(Runnable snapshotWriter, long maxStalenessMs) {
+        this.snapshotWriter = snapshotWriter;
+        this.maxStalenessMs = maxStalenessMs;
+        this.worker = new Thread(this::runLoop, "write-behind-persister");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public synchronized void markDirty() {
+        if (dirtyVersion == persistedVersion) {
+            firstDirtyAt = System.nanoTime();
+        }
+        dirtyVersion++;
+        notifyAll();
+    }
+
+    /** Writes a snapshot right away if anything changed since the last one. */
+    public void flush() {
+        persistPending();
+    }
+
+    public void close() {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                synchronized (this) {
+                    while (running && dirtyVersion == persistedVersion) {
+                        wait();
+                    }
+                    // Let the burst that made us dirty finish, but never longer
+                    // than the configured staleness bound.
+                    long deadline = firstDirtyAt + TimeUnit.MILLISECONDS.toNanos(maxStalenessMs);
+                    long remaining;
+                    while (running && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                }
+                if (running) {
+                    persistPending();
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void persistPending() {
+        synchronized (snapshotMutex) {
+            long target;
+            synchronized (this) {
+                if (dirtyVersion == persistedVersion) {
+                    return;
+                }
+                target = dirtyVersion;
+            }
+            try {
+                // The snapshot writer copies the dictionary after this point, so it
+                // contains at least every change up to target.
+                snapshotWriter.run();
+                synchronized (this) {
+                    persistedVersion = target;
+                    if (dirtyVersion != persistedVersion) {
+                        firstDirtyAt = System.nanoTime();
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Write-behind snapshot failed: " + e.getMessage());
+                synchronized (this) {
+                    firstDirtyAt = System.nanoTime(); // back off for one window before retrying
+                }
+            }
+        }
+    }
+}
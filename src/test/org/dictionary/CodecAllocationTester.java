@@ -0,0 +1,96 @@
+package org.dictionary;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures heap bytes allocated per request by RequestProcessor, with the
+ * streaming fast path and with every line forced down the general
+ * JsonObject path, the way ClientHandler drives it (parse, then process
+ * into the connection's writer). It also checks that both paths write
+ * byte-identical responses for the same requests.
+ */
+public class CodecAllocationTester {
+
+    private static final int WARMUP = 200_000;
+    private static final int MEASURED = 200_000;
+
+    private static final String[] REQUESTS = {
+            "{\"command\":\"query\",\"word\":\"apple\"}",
+            "{\"command\":\"query\",\"word\":\"missing\"}",
+            "{\"id\":42,\"command\":\"query\",\"word\":\"apple\"}",
+            "{\"command\":\"addMeaning\",\"word\":\"apple\",\"newMeaning\":\"a fruit\"}",
+            "{\"command\":\"updateMeaning\",\"word\":\"apple\",\"oldMeaning\":\"x\",\"newMeaning\":\"y\"}",
+            "{\"command\":\"add\",\"word\":\"pear\",\"meanings\":[\"a fruit\",\"a shape\"]}",
+            "{\"command\":\"remove\",\"word\":\"pear\"}",
+    };
+
+    public static void main(String[] args) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        String fast = responses(true);
+        String general = responses(false);
+        System.out.println("Responses identical: " + fast.equals(general));
+
+        System.out.printf("%-14s %-8s %15s%n", "request", "path", "bytes/request");
+        for (String request : REQUESTS) {
+            for (boolean fastPath : new boolean[]{false, true}) {
+                RequestProcessor processor = newProcessor(fastPath);
+                PrintWriter writer = new PrintWriter(OutputStream.nullOutputStream(), true);
+                RequestProcessor.Output output = processor.newOutput(writer);
+                for (int i = 0; i < WARMUP; i++) {
+                    handle(processor, output, request);
+                }
+                long threadId = Thread.currentThread().getId();
+                long before = threads.getThreadAllocatedBytes(threadId);
+                for (int i = 0; i < MEASURED; i++) {
+                    handle(processor, output, request);
+                }
+                long perRequest = (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED;
+                String name = request.substring(12, request.indexOf('"', 12));
+                if (request.startsWith("{\"id\"")) {
+                    name = "query+id";
+                } else if (request.contains("missing")) {
+                    name = "query(miss)";
+                }
+                System.out.printf("%-14s %-8s %,15d%n", name, fastPath ? "fast" : "general", perRequest);
+            }
+        }
+    }
+
+    private static void handle(RequestProcessor processor, RequestProcessor.Output output, String line)
+            throws Exception {
+        processor.process(processor.parse(line), output);
+    }
+
+    private static String responses(boolean fastPath) throws Exception {
+        RequestProcessor processor = newProcessor(fastPath);
+        StringWriter text = new StringWriter();
+        PrintWriter writer = new PrintWriter(text);
+        RequestProcessor.Output output = processor.newOutput(writer);
+        for (String request : REQUESTS) {
+            handle(processor, output, request);
+        }
+        writer.flush();
+        return text.toString();
+    }
+
+    private static RequestProcessor newProcessor(boolean fastPath) throws Exception {
+        File dictFile = File.createTempFile("codec-allocation", ".json");
+        dictFile.delete();
+        dictFile.deleteOnExit();
+        Map<String, String> values = new HashMap<>();
+        // Write-behind keeps file writes out of the allocation figures.
+        values.put("persistence", "write-behind");
+        values.put("write-behind-staleness-ms", "600000");
+        DictionaryManager manager = new DictionaryManager(dictFile.getPath(), new ServerOptions(values));
+        manager.add("apple", java.util.Arrays.asList("x", "a fruit"), 0);
+        return new RequestProcessor(manager, fastPath);
+    }
+}
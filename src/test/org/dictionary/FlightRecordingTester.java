@@ -0,0 +1,57 @@
+package org.dictionary;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Starts a server with {@code --jfr=true}, one global write lock and snapshot
+ * persistence, drives it with LoadTester for a couple of seconds, then dumps
+ * the flight recording and prints how many of each dictionary event it holds
+ * plus one sample of each. Requests, lock waits, saves and connection events
+ * should all be there.
+ */
+public class FlightRecordingTester {
+
+    private static final int PORT = 4556;
+
+    public static void main(String[] args) throws Exception {
+        File dictFile = File.createTempFile("flight-recording", ".json");
+        dictFile.delete();
+        dictFile.deleteOnExit();
+        File dumpDir = Files.createTempDirectory("flight-recording-dumps").toFile();
+        DictionaryServer server = new DictionaryServer(PORT, dictFile.getPath(), ServerOptions.parse(new String[]{
+                "--jfr=true", "--persistence=snapshot", "--locking=global",
+                "--jfr-dump-dir=" + dumpDir.getPath()}, 0));
+        server.setLogUpdater(System.out::println);
+        server.setClientCountUpdater(count -> { });
+        new Thread(server).start();
+        Thread.sleep(1000);
+
+        LoadTester.main(new String[]{"localhost", String.valueOf(PORT),
+                "--connections=4", "--duration-seconds=2", "--warmup-seconds=0", "--keys=500"});
+        Thread.sleep(500);
+
+        Path dump = server.dumpFlightRecording();
+        System.out.println("Dumped " + dump + " (" + Files.size(dump) + " bytes)");
+        Map<String, Integer> counts = new TreeMap<>();
+        Map<String, RecordedEvent> samples = new HashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+            String name = event.getEventType().getName();
+            if (name.startsWith("org.dictionary.")) {
+                counts.merge(name, 1, Integer::sum);
+                samples.putIfAbsent(name, event);
+            }
+        }
+        System.out.println(counts);
+        samples.values().forEach(System.out::println);
+        server.stopServer();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,75 @@
+package org.dictionary;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that applyBatch survives journal compaction. With a tiny
+ * --journal-compact-bytes every batch crosses the threshold, so its record is
+ * rotated out and the segment deleted once the snapshot is written; a single
+ * writer keeps appending alongside to trigger rotations of its own. After
+ * each round the manager is closed and reopened, and every batched and single
+ * word must still be there.
+ */
+public class JournalBatchTester {
+
+    private static final int ROUNDS = 20;
+    private static final int BATCH_WORDS = 50_000;
+
+    public static void main(String[] args) throws Exception {
+        int lostRounds = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            String dictionary = new File(Files.createTempDirectory("journal-batch").toFile(), "dictionary.json").getPath();
+            Map<String, String> values = new HashMap<>();
+            values.put("persistence", "journal");
+            values.put("journal-compact-bytes", "1000");
+            DictionaryManager manager = new DictionaryManager(dictionary, new ServerOptions(values));
+
+            AtomicBoolean batchDone = new AtomicBoolean();
+            AtomicInteger singles = new AtomicInteger();
+            Thread writer = new Thread(() -> {
+                while (!batchDone.get()) {
+                    int i = singles.getAndIncrement();
+                    manager.add("single" + i, Collections.singletonList("meaning " + i), 0);
+                }
+            });
+            writer.start();
+            WriteBatch batch = new WriteBatch();
+            for (int i = 0; i < BATCH_WORDS; i++) {
+                batch.add("batch" + i, Collections.singletonList("meaning " + i));
+            }
+            List<String> statuses = manager.applyBatch(batch);
+            batchDone.set(true);
+            writer.join();
+            manager.close();
+
+            DictionaryManager restarted = new DictionaryManager(dictionary, new ServerOptions(values));
+            int missingBatch = 0;
+            for (int i = 0; i < BATCH_WORDS; i++) {
+                if (restarted.query("batch" + i) == null) {
+                    missingBatch++;
+                }
+            }
+            int missingSingles = 0;
+            for (int i = 0; i < singles.get(); i++) {
+                if (restarted.query("single" + i) == null) {
+                    missingSingles++;
+                }
+            }
+            restarted.close();
+            boolean applied = statuses.stream().allMatch("SUCCESS"::equals);
+            if (!applied || missingBatch > 0 || missingSingles > 0) {
+                lostRounds++;
+            }
+            System.out.printf("Round %2d: batch %s, %d single writes; after restart %d batch and %d single words missing%n",
+                    round + 1, applied ? "applied" : "rejected", singles.get(), missingBatch, missingSingles);
+        }
+        System.out.println(lostRounds + " of " + ROUNDS + " rounds lost acknowledged writes");
+    }
+}
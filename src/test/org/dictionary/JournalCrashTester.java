@@ -0,0 +1,254 @@
+package org.dictionary;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Crash test for --persistence=journal. A child JVM writes a fixed sequence
+ * of single-word changes and reports each one acknowledged; the parent kills
+ * it at a random point, sometimes while a compaction is running, and appends
+ * a torn or corrupt record to the journal's tail. Then it opens the
+ * dictionary again and compares it with the sequence replayed in memory: it
+ * must hold every acknowledged write, and at most the one write that was in
+ * flight besides. The next round carries on from there, so the journal
+ * crosses the compaction threshold many times over.
+ *
+ * <p>A second phase drives a MutationJournal directly, the way
+ * DictionaryManager does, and widens the gap between appending a write and
+ * applying it to the map. Every write crosses or follows the compaction
+ * threshold, and after each one the journal and snapshot are reopened from
+ * disk, so a compaction that snapshots the map before the write is in it
+ * and then deletes the only record of it shows up as a lost write.
+ */
+public class JournalCrashTester {
+
+    private static final int ROUNDS = 10;
+    private static final int WORDS = 1000;
+    private static final String COMPACT_BYTES = "20000";
+    private static final int MID_WRITE_WRITES = 40;
+    private static final long MID_WRITE_COMPACT_BYTES = 200;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "writer".equals(args[0])) {
+            write(args[1], Integer.parseInt(args[2]));
+            return;
+        }
+        String dictionary = new File(Files.createTempDirectory("journal-crash").toFile(), "dictionary.json").getPath();
+        Path journal = Paths.get(dictionary + ".journal");
+        Random random = new Random(3);
+        Map<String, List<String>> expected = new HashMap<>();
+        int applied = 0;
+        int failures = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            int killAfter = 500 + random.nextInt(3000);
+            int acked = runWriter(dictionary, applied, killAfter);
+
+            boolean torn = round % 2 == 0;
+            corruptTail(journal, torn, random);
+
+            // The write after the last acknowledged one may or may not have made it.
+            for (int op = applied; op <= acked; op++) {
+                apply(expected, op);
+            }
+            Map<String, List<String>> withInFlight = new HashMap<>(expected);
+            apply(withInFlight, acked + 1);
+
+            DictionaryManager restarted = new DictionaryManager(dictionary, options());
+            Map<String, List<String>> recovered = restarted.snapshot();
+            restarted.close();
+            String outcome;
+            if (recovered.equals(expected)) {
+                outcome = "matches";
+                applied = acked + 1;
+            } else if (recovered.equals(withInFlight)) {
+                outcome = "matches, with the write in flight";
+                expected = withInFlight;
+                applied = acked + 2;
+            } else {
+                outcome = "DIFFERS (" + recovered.size() + " words, expected " + expected.size() + ")";
+                failures++;
+                expected = new HashMap<>(recovered);
+                applied = acked + 1;
+            }
+            System.out.printf("Round %2d: killed after write %d, %s tail; restarted dictionary %s%n",
+                    round + 1, acked, torn ? "torn" : "corrupt", outcome);
+        }
+        System.out.println(failures == 0 ? "All rounds recovered every acknowledged write"
+                : failures + " of " + ROUNDS + " rounds lost or invented writes");
+        compactionMidWrite();
+    }
+
+    // Appends each write, waits long enough for a compaction it triggers to
+    // run, and only then applies it, as a slow writer would. After every
+    // acknowledged write the journal is abandoned and recovered from disk.
+    private static void compactionMidWrite() throws Exception {
+        Path directory = Files.createTempDirectory("journal-mid-write");
+        String dictionary = directory.resolve("dictionary.json").toString();
+        Path snapshotPath = Paths.get(dictionary);
+        Map<String, List<String>> live = new ConcurrentHashMap<>();
+        Runnable snapshotWriter = () -> writeSnapshot(snapshotPath, live);
+        MutationJournal journal = new MutationJournal(dictionary, MutationJournal.FsyncPolicy.ALWAYS, 0,
+                MID_WRITE_COMPACT_BYTES, snapshotWriter);
+        journal.recover(live);
+        Map<String, List<String>> expected = new HashMap<>();
+        int lost = 0;
+        for (int op = 0; op < MID_WRITE_WRITES; op++) {
+            Map<String, List<String>> next = new HashMap<>(live);
+            apply(next, op);
+            String word = word(op);
+            Mutation mutation = next.containsKey(word) ? Mutation.put(word, next.get(word)) : Mutation.remove(word);
+            journal.append(mutation);
+            Thread.sleep(50);
+            mutation.applyTo(live);
+            journal.recordsApplied(1);
+            apply(expected, op);
+
+            journal.close();
+            live.clear();
+            live.putAll(readSnapshot(snapshotPath));
+            journal = new MutationJournal(dictionary, MutationJournal.FsyncPolicy.ALWAYS, 0,
+                    MID_WRITE_COMPACT_BYTES, snapshotWriter);
+            journal.recover(live);
+            if (!live.equals(expected)) {
+                lost++;
+                expected = new HashMap<>(live);
+            }
+        }
+        journal.close();
+        System.out.println(lost == 0
+                ? "Compactions started mid-write: all " + MID_WRITE_WRITES + " writes recovered"
+                : "Compactions started mid-write: " + lost + " of " + MID_WRITE_WRITES + " writes lost");
+    }
+
+    private static void writeSnapshot(Path path, Map<String, List<String>> dictionary) {
+        try {
+            Path temp = Paths.get(path + ".tmp");
+            Files.write(temp, new Gson().toJson(new HashMap<>(dictionary)).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, List<String>> readSnapshot(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new HashMap<>();
+        }
+        Type type = new TypeToken<Map<String, List<String>>>() { }.getType();
+        return new Gson().fromJson(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), type);
+    }
+
+    // Starts the child, kills it once it has acknowledged killAfter writes,
+    // and returns the number of the last write it acknowledged.
+    private static int runWriter(String dictionary, int firstOp, int killAfter) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                JournalCrashTester.class.getName(), "writer", dictionary, String.valueOf(firstOp))
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        int acked = firstOp - 1;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(child.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("acked ")) {
+                    acked = Integer.parseInt(line.substring(6));
+                    if (acked - firstOp + 1 >= killAfter) {
+                        // SIGKILL through the handle, which unlike Process.destroyForcibly
+                        // leaves the pipe open, so writes acknowledged just before are still read.
+                        child.toHandle().destroyForcibly();
+                    }
+                }
+            }
+        }
+        child.waitFor();
+        return acked;
+    }
+
+    // Child: applies the sequence from firstOp on, printing each write once it returns.
+    private static void write(String dictionary, int firstOp) {
+        DictionaryManager manager = new DictionaryManager(dictionary, options());
+        for (int op = firstOp; ; op++) {
+            String word = word(op);
+            List<String> current = manager.query(word);
+            String meaning = "meaning " + op;
+            if (current == null) {
+                manager.add(word, Collections.singletonList(meaning), 0);
+            } else if (op % 4 == 0) {
+                manager.remove(word, 0);
+            } else if (current.size() < 3) {
+                manager.addNewMeaning(word, meaning, 0);
+            } else {
+                manager.updateMeaning(word, current.get(0), meaning, 0);
+            }
+            System.out.println("acked " + op);
+        }
+    }
+
+    // The same sequence, replayed into a map.
+    private static void apply(Map<String, List<String>> dictionary, int op) {
+        String word = word(op);
+        List<String> current = dictionary.get(word);
+        String meaning = "meaning " + op;
+        if (current == null) {
+            dictionary.put(word, Collections.singletonList(meaning));
+        } else if (op % 4 == 0) {
+            dictionary.remove(word);
+        } else {
+            List<String> changed = new ArrayList<>(current);
+            if (current.size() < 3) {
+                changed.add(meaning);
+            } else {
+                changed.set(0, meaning);
+            }
+            dictionary.put(word, changed);
+        }
+    }
+
+    private static String word(int op) {
+        return "word" + (op * 7919L % WORDS);
+    }
+
+    // Appends either the start of a record cut off mid-write, or a whole record
+    // whose checksum does not match.
+    private static void corruptTail(Path journal, boolean torn, Random random) throws IOException {
+        byte[] payload = new byte[40];
+        random.nextBytes(payload);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(journal,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            out.writeInt(payload.length);
+            out.writeInt(random.nextInt());
+            out.write(payload, 0, torn ? payload.length / 2 : payload.length);
+        }
+    }
+
+    private static ServerOptions options() {
+        Map<String, String> values = new HashMap<>();
+        values.put("persistence", "journal");
+        values.put("journal-compact-bytes", COMPACT_BYTES);
+        values.put("meaning-index", "false");
+        values.put("suggest-index", "false");
+        values.put("prefix-index", "false");
+        return new ServerOptions(values);
+    }
+}
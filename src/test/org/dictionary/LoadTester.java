@@ -1,57 +1,619 @@
 package org.dictionary;
 
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Drives a running server with a configurable mix of commands over several
+ * connections and reports throughput, errors, and latency percentiles per
+ * command, e.g.
+ * {@code java org.dictionary.LoadTester localhost 4444 --connections=16 --rate=20000 --distribution=zipfian}.
+ *
+ * <p>With {@code --rate} set the load is open-loop: each connection sends
+ * on a fixed schedule, and latency is measured from when a request was due
+ * to go out, not from when a busy connection got round to sending it, so a
+ * stall shows up in every request it held back rather than in just one.
+ * With {@code --rate=0} each connection sends its next request as soon as
+ * the last one is answered; {@code --expected-interval-us} then back-fills
+ * the requests a stall held back. Service time, measured from the actual
+ * send, is reported alongside either way.
+ *
+ * <p>Words are {@code loadword0} to {@code loadword<keys-1>}, picked uniformly
+ * or with a Zipfian skew, and are added before the run unless
+ * {@code --preload=false}. {@code --output} writes the results to a JSON
+ * file, or appends them to a CSV file if the name ends in {@code .csv}, so
+ * runs can be compared over time.
+ */
 public class LoadTester {
 
-    public static void main(String[] args) {
-        String address = "localhost";
-        int port = 4444; // Use the same port your server is running on
+    public enum Distribution { UNIFORM, ZIPFIAN }
+
+    private static final String[] COMMANDS = {
+            "query", "add", "remove", "addMeaning", "updateMeaning", "prefix", "suggest", "searchMeanings"};
+    private static final String DEFAULT_MIX = "query:90,addMeaning:4,updateMeaning:4,add:1,remove:1";
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99.9", "p99.99"};
+    private static final long RECONNECT_PAUSE_MS = 100;
+    private static final int PRELOAD_BATCH = 1_000;
+
+    private static final class CommandStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram service = new LatencyHistogram();
+        final LongAdder failures = new LongAdder(); // no response: refused, timed out, or disconnected
+        final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    }
+
+    private static final class Connection implements AutoCloseable {
+        final Socket socket;
+        final PrintWriter writer;
+        final BufferedReader reader;
+
+        Connection(String address, int port, int timeoutMs) throws IOException {
+            socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(address, port), timeoutMs);
+                socket.setSoTimeout(timeoutMs);
+                socket.setTcpNoDelay(true);
+                writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+                reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        // Sends one request and waits for its response.
+        String send(String request) throws IOException {
+            writer.println(request);
+            String response = reader.readLine();
+            if (response == null) {
+                throw new IOException("Connection closed by the server");
+            }
+            return response;
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Zipfian ranks over [0, n) by the method of Gray et al., "Quickly
+    // Generating Billion-Record Synthetic Databases": O(n) to set up, O(1) per draw.
+    private static final class ZipfianKeys {
+        private final int n;
+        private final double theta;
+        private final double zetan;
+        private final double alpha;
+        private final double eta;
+
+        ZipfianKeys(int n, double theta) {
+            if (theta <= 0 || theta == 1) {
+                throw new IllegalArgumentException("--zipf-exponent must be positive and not 1");
+            }
+            this.n = n;
+            this.theta = theta;
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            this.zetan = sum;
+            this.alpha = 1 / (1 - theta);
+            double zeta2 = 1 + Math.pow(0.5, theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetan);
+        }
+
+        int next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return Math.min(1, n - 1);
+            }
+            return (int) Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
 
-        // Create one "writer" thread that will add a word
-        Runnable writerTask = () -> {
-            try (Socket socket = new Socket(address, port);
-                 PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
-                 BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+    private final String address;
+    private final int port;
+    private final int connections;
+    private final double rate;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final String mixText;
+    private final String[] mixCommands;
+    private final int[] mixWeights; // cumulative
+    private final int keys;
+    private final Distribution distribution;
+    private final double zipfExponent;
+    private final ZipfianKeys zipfian;
+    private final boolean preload;
+    private final int timeoutMs;
+    private final long expectedIntervalNanos;
+    private final long seed;
+    private final String output;
+    private final String label;
+    private final Map<String, CommandStats> stats = new LinkedHashMap<>();
+    private final AtomicReference<String> firstFailure = new AtomicReference<>();
 
-                System.out.println("WRITER: Sending add request...");
-                String addRequest = "{\"command\":\"add\", \"word\":\"testword\", \"meanings\":[\"a word for testing\"]}";
-                writer.println(addRequest);
-                System.out.println("WRITER: Received response: " + reader.readLine());
+    public LoadTester(String address, int port, ServerOptions options) {
+        this.address = address;
+        this.port = port;
+        this.connections = options.getInt("connections", 8);
+        this.rate = options.getDouble("rate", 0);
+        this.warmupNanos = options.getLong("warmup-seconds", 5) * 1_000_000_000L;
+        this.durationNanos = options.getLong("duration-seconds", 30) * 1_000_000_000L;
+        this.keys = options.getInt("keys", 10_000);
+        this.distribution = options.getEnum("distribution", Distribution.class, Distribution.UNIFORM);
+        this.zipfExponent = options.getDouble("zipf-exponent", 0.99);
+        this.preload = options.getBoolean("preload", true);
+        this.timeoutMs = options.getInt("timeout-ms", 5_000);
+        this.expectedIntervalNanos = options.getLong("expected-interval-us", 0) * 1_000L;
+        this.seed = options.getLong("seed", 1);
+        this.output = options.get("output", null);
+        this.label = options.get("label", "");
+        if (connections < 1 || keys < 1 || durationNanos <= 0 || rate < 0) {
+            throw new IllegalArgumentException("--connections, --keys and --duration-seconds must be positive "
+                    + "and --rate must not be negative");
+        }
+        this.zipfian = distribution == Distribution.ZIPFIAN ? new ZipfianKeys(keys, zipfExponent) : null;
 
-            } catch (Exception e) {
-                e.printStackTrace();
+        this.mixText = options.get("mix", DEFAULT_MIX);
+        List<String> commands = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int total = 0;
+        for (String part : mixText.split(",")) {
+            String[] commandAndWeight = part.trim().split(":");
+            String command = commandAndWeight[0].trim();
+            if (!isKnownCommand(command)) {
+                throw new IllegalArgumentException("Unknown command '" + command + "' in --mix");
+            }
+            int weight;
+            try {
+                weight = commandAndWeight.length == 1 ? 1 : Integer.parseInt(commandAndWeight[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad weight in --mix: '" + part + "'");
             }
-        };
+            if (weight > 0) {
+                total += weight;
+                commands.add(command);
+                weights.add(total);
+                stats.put(command, new CommandStats());
+            }
+        }
+        if (commands.isEmpty()) {
+            throw new IllegalArgumentException("--mix has no command with a positive weight");
+        }
+        this.mixCommands = commands.toArray(new String[0]);
+        this.mixWeights = weights.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java org.dictionary.LoadTester <server-address> <port> [--name=value ...]");
+            System.out.println("  --connections=8         connections, one request in flight on each");
+            System.out.println("  --rate=0                total requests per second, spread over the connections;");
+            System.out.println("                          0 sends each request as soon as the last is answered");
+            System.out.println("  --duration-seconds=30   measured run, after --warmup-seconds=5");
+            System.out.println("  --mix=" + DEFAULT_MIX);
+            System.out.println("                          command:weight pairs; also prefix, suggest, searchMeanings");
+            System.out.println("  --keys=10000            number of distinct words");
+            System.out.println("  --distribution=uniform  or zipfian, skewed by --zipf-exponent=0.99");
+            System.out.println("  --preload=true          add every word before the run");
+            System.out.println("  --expected-interval-us=0  with --rate=0, back-fill requests held up by a slow one");
+            System.out.println("  --timeout-ms=5000       a request taking longer is an error and reconnects");
+            System.out.println("  --output=<file>         write results as JSON, or append to <file>.csv");
+            System.out.println("  --label=<text>          recorded with the results; --seed=1 for the random choices");
+            return;
+        }
+        LoadTester tester = new LoadTester(args[0], Integer.parseInt(args[1]), ServerOptions.parse(args, 2));
+        tester.run();
+    }
 
-        // Create multiple "reader" threads that will query a word
-        Runnable readerTask = () -> {
-            try (Socket socket = new Socket(address, port);
-                 PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
-                 BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+    public void run() throws Exception {
+        if (preload) {
+            preload();
+        }
+        long start = System.nanoTime() + 100_000_000L; // gives every thread time to start
+        long measureStart = start + warmupNanos;
+        long end = measureStart + durationNanos;
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            final int connection = c;
+            Thread thread = new Thread(() -> drive(connection, start, measureStart, end), "load-" + c);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        report();
+        if (output != null) {
+            export(Paths.get(output));
+        }
+    }
 
-                String threadName = Thread.currentThread().getName();
-                System.out.println(threadName + ": Sending query request...");
-                String queryRequest = "{\"command\":\"query\", \"word\":\"testword\"}";
-                writer.println(queryRequest);
-                System.out.println(threadName + ": Received response: " + reader.readLine());
+    // Adds every word in applyBatch requests. A batch is all or nothing, so
+    // one that fails because some of its words are already there is retried
+    // a word at a time.
+    private void preload() throws IOException {
+        long started = System.nanoTime();
+        int added = 0;
+        try (Connection conn = new Connection(address, port, Math.max(timeoutMs, 60_000))) {
+            for (int from = 0; from < keys; from += PRELOAD_BATCH) {
+                int to = Math.min(keys, from + PRELOAD_BATCH);
+                JsonObject batch = new JsonObject();
+                batch.addProperty("command", "applyBatch");
+                JsonArray operations = new JsonArray();
+                for (int key = from; key < to; key++) {
+                    operations.add(request("add", key, null));
+                }
+                batch.add("operations", operations);
+                if (statusOf(conn.send(batch.toString())).equals("success")) {
+                    added += to - from;
+                    continue;
+                }
+                for (int key = from; key < to; key++) {
+                    if (statusOf(conn.send(request("add", key, null).toString())).equals("success")) {
+                        added++;
+                    }
+                }
+            }
+        }
+        System.out.printf("Preloaded %,d words in %.0f ms (%,d added, the rest already there).%n",
+                keys, (System.nanoTime() - started) / 1e6, added);
+    }
 
-            } catch (Exception e) {
-                e.printStackTrace();
+    // One connection's share of the run. Only requests due at or after
+    // measureStart are counted.
+    private void drive(int connection, long start, long measureStart, long end) {
+        Random random = new Random(seed + connection);
+        long interval = rate > 0 ? (long) (connections * 1e9 / rate) : 0;
+        long due = start + interval * connection / connections; // staggers the connections
+        Connection conn = null;
+        while (true) {
+            if (rate > 0) {
+                if (due >= end) {
+                    break;
+                }
+                for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                due = System.nanoTime();
+                if (due >= end) {
+                    break;
+                }
             }
-        };
+            String command = pickCommand(random);
+            String request = request(command, nextKey(random), random).toString();
 
-        // --- Start the Test ---
-        System.out.println("Starting load test...");
+            long sent = System.nanoTime();
+            String status;
+            try {
+                if (conn == null) {
+                    conn = new Connection(address, port, timeoutMs);
+                }
+                status = statusOf(conn.send(request));
+            } catch (IOException e) {
+                firstFailure.compareAndSet(null, command + ": " + e);
+                status = null;
+                if (conn != null) {
+                    conn.close();
+                    conn = null; // a timed-out response may still arrive, so start afresh
+                }
+            }
+            long done = System.nanoTime();
 
-        new Thread(writerTask).start(); // Start the writer
+            if (due >= measureStart) {
+                CommandStats commandStats = stats.get(command);
+                if (status == null) {
+                    commandStats.failures.increment();
+                } else {
+                    commandStats.outcomes.computeIfAbsent(status, s -> new LongAdder()).increment();
+                    if (rate > 0) {
+                        commandStats.latency.record(done - due);
+                    } else {
+                        commandStats.latency.recordCorrected(done - sent, expectedIntervalNanos);
+                    }
+                    commandStats.service.record(done - sent);
+                }
+            }
+            if (status == null && rate == 0) {
+                LockSupport.parkNanos(RECONNECT_PAUSE_MS * 1_000_000L); // don't spin against a server that is down
+            }
+            due += interval;
+        }
+        if (conn != null) {
+            conn.close();
+        }
+    }
 
-        // Start multiple readers at the same time
-        for (int i = 0; i < 5; i++) {
-            new Thread(readerTask).start();
+    private String pickCommand(Random random) {
+        int pick = random.nextInt(mixWeights[mixWeights.length - 1]);
+        int i = 0;
+        while (mixWeights[i] <= pick) {
+            i++;
         }
+        return mixCommands[i];
+    }
+
+    private int nextKey(Random random) {
+        return zipfian != null ? zipfian.next(random) : random.nextInt(keys);
+    }
+
+    // Builds a request for the key. Meaning edits flip between two meanings,
+    // so about half of them find something to change.
+    private static JsonObject request(String command, int key, Random random) {
+        String word = "loadword" + key;
+        String meaning = "Load test meaning for " + word + ".";
+        String revised = "Load test meaning for " + word + ", revised.";
+        JsonObject request = new JsonObject();
+        request.addProperty("command", command);
+        switch (command) {
+            case "add": {
+                request.addProperty("word", word);
+                JsonArray meanings = new JsonArray();
+                meanings.add(meaning);
+                request.add("meanings", meanings);
+                break;
+            }
+            case "addMeaning":
+                request.addProperty("word", word);
+                request.addProperty("newMeaning", "Extra meaning " + random.nextInt(4) + " for " + word + ".");
+                break;
+            case "updateMeaning": {
+                boolean forward = random.nextBoolean();
+                request.addProperty("word", word);
+                request.addProperty("oldMeaning", forward ? meaning : revised);
+                request.addProperty("newMeaning", forward ? revised : meaning);
+                break;
+            }
+            case "prefix":
+                request.addProperty("prefix", word.substring(0, word.length() - 1));
+                break;
+            case "suggest":
+                request.addProperty("word", word.substring(0, word.length() - 1) + "x");
+                break;
+            case "searchMeanings":
+                request.addProperty("query", word);
+                break;
+            default: // query, remove
+                request.addProperty("word", word);
+                break;
+        }
+        return request;
+    }
+
+    // The response's status, except that a query for a missing word, which
+    // the server reports as an error, counts as "not_found".
+    private static String statusOf(String response) {
+        try {
+            JsonObject json = JsonParser.parseString(response).getAsJsonObject();
+            if (!json.has("status")) {
+                return "error";
+            }
+            String status = json.get("status").getAsString();
+            if (status.equals("error") && json.has("message")
+                    && json.get("message").getAsString().endsWith("' not found.")) {
+                return "not_found";
+            }
+            return status;
+        } catch (RuntimeException e) {
+            return "error";
+        }
+    }
+
+    private static boolean isKnownCommand(String command) {
+        for (String known : COMMANDS) {
+            if (known.equals(command)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String describeRun() {
+        String load = rate > 0 ? String.format("open loop at %,.0f req/s", rate)
+                : expectedIntervalNanos > 0
+                ? String.format("closed loop, corrected every %,d us", expectedIntervalNanos / 1_000)
+                : "closed loop";
+        String keyChoice = distribution == Distribution.ZIPFIAN
+                ? String.format("zipfian(%.2f)", zipfExponent) : "uniform";
+        return String.format("%d connections, %s, %,d %s keys, mix %s", connections, load, keys, keyChoice, mixText);
+    }
+
+    private LinkedHashMap<String, CommandStats> withTotal() {
+        CommandStats all = new CommandStats();
+        for (CommandStats commandStats : stats.values()) {
+            all.latency.add(commandStats.latency);
+            all.service.add(commandStats.service);
+            all.failures.add(commandStats.failures.sum());
+            commandStats.outcomes.forEach((status, count) ->
+                    all.outcomes.computeIfAbsent(status, s -> new LongAdder()).add(count.sum()));
+        }
+        LinkedHashMap<String, CommandStats> rows = new LinkedHashMap<>(stats);
+        rows.put("all", all);
+        return rows;
+    }
+
+    private static long requests(CommandStats commandStats) {
+        return commandStats.service.getCount() + commandStats.failures.sum();
+    }
+
+    // Requests that got no response or an error response.
+    private static long errors(CommandStats commandStats) {
+        LongAdder errorResponses = commandStats.outcomes.get("error");
+        return commandStats.failures.sum() + (errorResponses == null ? 0 : errorResponses.sum());
+    }
+
+    private void report() {
+        double seconds = durationNanos / 1e9;
+        Map<String, CommandStats> rows = withTotal();
+        CommandStats all = rows.get("all");
+        System.out.println(describeRun());
+        System.out.printf("%,d requests in %.0f s: %,.0f req/s, %,d errors%n",
+                requests(all), seconds, requests(all) / seconds, errors(all));
+        if (rate > 0 && requests(all) / seconds < rate * 0.95) {
+            System.out.println("The server did not keep up with the target rate; latencies include the backlog.");
+        }
+        if (firstFailure.get() != null) {
+            System.out.println("First failure: " + firstFailure.get());
+        }
+        String latencyTitle = rate > 0 ? "Response time from when each request was due (ms)"
+                : expectedIntervalNanos > 0 ? "Response time corrected for coordinated omission (ms)"
+                : "Response time (ms)";
+        printTable(latencyTitle, rows, true, seconds);
+        printTable("Service time from when each request was sent (ms)", rows, false, seconds);
+        for (Map.Entry<String, CommandStats> row : stats.entrySet()) {
+            System.out.println("  " + row.getKey() + " statuses: " + counts(row.getValue().outcomes));
+        }
+    }
+
+    private static void printTable(String title, Map<String, CommandStats> rows, boolean latency, double seconds) {
+        System.out.println();
+        System.out.println(title + ":");
+        System.out.printf("%-15s %10s %10s %8s %9s %9s %9s %9s %9s %9s %9s%n", "command", "requests", "req/s",
+                "errors", "mean", "p50", "p90", "p99", "p99.9", "p99.99", "max");
+        for (Map.Entry<String, CommandStats> row : rows.entrySet()) {
+            CommandStats commandStats = row.getValue();
+            LatencyHistogram histogram = latency ? commandStats.latency : commandStats.service;
+            StringBuilder line = new StringBuilder(String.format("%-15s %10d %10.0f %8d %9.3f", row.getKey(),
+                    requests(commandStats), requests(commandStats) / seconds, errors(commandStats),
+                    histogram.getMean() / 1e6));
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(" %9.3f", histogram.getValueAtPercentile(percentile) / 1e6));
+            }
+            line.append(String.format(" %9.3f", histogram.getMax() / 1e6));
+            System.out.println(line);
+        }
+    }
+
+    private static Map<String, Long> counts(Map<String, LongAdder> adders) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        adders.forEach((key, adder) -> counts.put(key, adder.sum()));
+        return counts;
+    }
+
+    private void export(Path path) throws IOException {
+        double seconds = durationNanos / 1e9;
+        String timestamp = Instant.now().toString();
+        Map<String, CommandStats> rows = withTotal();
+        if (path.toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            boolean header = !Files.exists(path) || Files.size(path) == 0;
+            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (header) {
+                    writer.write("timestamp,label,connections,rate,keys,distribution,mix,command,metric,"
+                            + "requests,throughput,errors,mean_us,p50_us,p90_us,p99_us,p99.9_us,p99.99_us,max_us\n");
+                }
+                for (Map.Entry<String, CommandStats> row : rows.entrySet()) {
+                    for (String metric : new String[]{"response", "service"}) {
+                        CommandStats commandStats = row.getValue();
+                        LatencyHistogram histogram = metric.equals("response")
+                                ? commandStats.latency : commandStats.service;
+                        StringBuilder line = new StringBuilder();
+                        line.append(timestamp).append(',').append(csv(label)).append(',').append(connections)
+                                .append(',').append(rate).append(',').append(keys).append(',')
+                                .append(distribution.name().toLowerCase(Locale.ROOT)).append(',').append(csv(mixText))
+                                .append(',').append(row.getKey()).append(',').append(metric).append(',')
+                                .append(requests(commandStats)).append(',')
+                                .append(String.format(Locale.ROOT, "%.1f", requests(commandStats) / seconds))
+                                .append(',').append(errors(commandStats))
+                                .append(String.format(Locale.ROOT, ",%.1f", histogram.getMean() / 1e3));
+                        for (double percentile : PERCENTILES) {
+                            line.append(String.format(Locale.ROOT, ",%.1f",
+                                    histogram.getValueAtPercentile(percentile) / 1e3));
+                        }
+                        line.append(String.format(Locale.ROOT, ",%.1f", histogram.getMax() / 1e3)).append('\n');
+                        writer.write(line.toString());
+                    }
+                }
+            }
+        } else {
+            JsonObject run = new JsonObject();
+            run.addProperty("timestamp", timestamp);
+            run.addProperty("label", label);
+            JsonObject config = new JsonObject();
+            config.addProperty("server", address + ":" + port);
+            config.addProperty("connections", connections);
+            config.addProperty("rate", rate);
+            config.addProperty("expectedIntervalMicros", expectedIntervalNanos / 1_000);
+            config.addProperty("warmupSeconds", warmupNanos / 1_000_000_000L);
+            config.addProperty("durationSeconds", durationNanos / 1_000_000_000L);
+            config.addProperty("keys", keys);
+            config.addProperty("distribution", distribution.name().toLowerCase(Locale.ROOT));
+            if (distribution == Distribution.ZIPFIAN) {
+                config.addProperty("zipfExponent", zipfExponent);
+            }
+            config.addProperty("mix", mixText);
+            config.addProperty("seed", seed);
+            run.add("config", config);
+            JsonObject commands = new JsonObject();
+            for (Map.Entry<String, CommandStats> row : rows.entrySet()) {
+                CommandStats commandStats = row.getValue();
+                JsonObject result = new JsonObject();
+                result.addProperty("requests", requests(commandStats));
+                result.addProperty("throughput", requests(commandStats) / seconds);
+                result.addProperty("errors", errors(commandStats));
+                JsonObject statuses = new JsonObject();
+                counts(commandStats.outcomes).forEach(statuses::addProperty);
+                result.add("statuses", statuses);
+                result.add("responseMicros", toJson(commandStats.latency));
+                result.add("serviceMicros", toJson(commandStats.service));
+                commands.add(row.getKey(), result);
+            }
+            run.add("commands", commands);
+            Files.write(path, new GsonBuilder().setPrettyPrinting().create().toJson(run)
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        System.out.println();
+        System.out.println("Results written to " + path);
+    }
+
+    private static JsonObject toJson(LatencyHistogram histogram) {
+        JsonObject json = new JsonObject();
+        json.addProperty("mean", histogram.getMean() / 1e3);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            json.addProperty(PERCENTILE_NAMES[i], histogram.getValueAtPercentile(PERCENTILES[i]) / 1e3);
+        }
+        json.addProperty("max", histogram.getMax() / 1e3);
+        return json;
+    }
+
+    private static String csv(String value) {
+        return value.contains(",") || value.contains("\"") ? '"' + value.replace("\"", "\"\"") + '"' : value;
     }
 }
@@ -0,0 +1,78 @@
+package org.dictionary;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares DictionaryManager throughput with --locking=global and
+ * --locking=striped at 1 to 64 threads, using a 90% query / 10% updateMeaning
+ * mix over 10,000 words. Write-behind persistence with a long staleness window
+ * keeps disk I/O out of the numbers so only the locking is measured.
+ */
+public class LockingThroughputTester {
+
+    private static final int WORDS = 10_000;
+    private static final int READ_PERCENT = 90;
+    private static final long RUN_MILLIS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-8s %8s %15s%n", "locking", "threads", "ops/s");
+        for (String locking : new String[]{"global", "striped"}) {
+            // A file of its own per mode, so each run starts empty and its adds
+            // insert rather than finding the words the previous run flushed.
+            File dictFile = File.createTempFile("locking-throughput-" + locking, ".json");
+            dictFile.deleteOnExit();
+            Map<String, String> values = new HashMap<>();
+            values.put("locking", locking);
+            values.put("persistence", "write-behind");
+            values.put("write-behind-staleness-ms", "600000");
+            DictionaryManager manager = new DictionaryManager(dictFile.getPath(), new ServerOptions(values));
+            for (int i = 0; i < WORDS; i++) {
+                List<String> meanings = new ArrayList<>();
+                meanings.add("a");
+                manager.add("word" + i, meanings, 0);
+            }
+
+            for (int threads = 1; threads <= 64; threads *= 2) {
+                long opsPerSecond = run(manager, threads);
+                System.out.printf("%-8s %8d %,15d%n", locking, threads, opsPerSecond);
+            }
+            manager.close();
+        }
+    }
+
+    private static long run(DictionaryManager manager, int threadCount) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        long deadline = System.currentTimeMillis() + RUN_MILLIS;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.currentTimeMillis() < deadline) {
+                    String word = "word" + random.nextInt(WORDS);
+                    if (random.nextInt(100) < READ_PERCENT) {
+                        manager.query(word);
+                    } else if (random.nextBoolean()) {
+                        manager.updateMeaning(word, "a", "b", 0);
+                    } else {
+                        manager.updateMeaning(word, "b", "a", 0);
+                    }
+                    ops.increment();
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return (long) (ops.sum() * 1e9 / (System.nanoTime() - start));
+    }
+}
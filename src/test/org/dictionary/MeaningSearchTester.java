@@ -0,0 +1,141 @@
+package org.dictionary;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Builds a MeaningIndex over 300,000 words whose meanings are drawn from a
+ * 20,000-term vocabulary with a Zipf-like skew, and reports heap footprint,
+ * build time, and searchMeanings latency for one- and two-term queries next
+ * to a linear scan over every meaning. Match counts are checked against the
+ * scan. It ends with a check through RequestProcessor that add, addMeaning,
+ * updateMeaning and remove are reflected, and that pages follow each other.
+ */
+public class MeaningSearchTester {
+
+    private static final int WORDS = 300_000;
+    private static final int VOCABULARY = 20_000;
+    private static final int LOOKUPS = 2_000;
+    private static final int SCAN_LOOKUPS = 10;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(7);
+        Map<String, List<String>> dictionary = new HashMap<>();
+        for (int i = 0; i < WORDS; i++) {
+            List<String> meanings = new ArrayList<>();
+            for (int m = 1 + random.nextInt(3); m > 0; m--) {
+                StringBuilder meaning = new StringBuilder();
+                for (int t = 5 + random.nextInt(8); t > 0; t--) {
+                    meaning.append(term(random)).append(' ');
+                }
+                meanings.add(meaning.toString().trim());
+            }
+            dictionary.put("word" + i, Collections.unmodifiableList(meanings));
+        }
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        MeaningIndex index = new MeaningIndex(dictionary);
+        long buildNanos = System.nanoTime() - start;
+        long heapAfter = usedHeap();
+        System.out.printf("%,d words: built in %.0f ms, %.1f MB heap (%.0f bytes/word)%n", index.size(),
+                buildNanos / 1e6, (heapAfter - heapBefore) / 1e6, (double) (heapAfter - heapBefore) / index.size());
+
+        System.out.printf("%-8s %12s %12s %14s%n", "terms", "index p50", "index p99", "scan mean");
+        for (int termCount = 1; termCount <= 2; termCount++) {
+            for (int i = 0; i < LOOKUPS; i++) { // warm-up
+                index.search(query(random, termCount), 0, 10);
+            }
+            long[] nanos = new long[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                String query = query(random, termCount);
+                long t = System.nanoTime();
+                index.search(query, 0, 10);
+                nanos[i] = System.nanoTime() - t;
+            }
+            Arrays.sort(nanos);
+
+            int mismatches = 0;
+            long scanNanos = 0;
+            for (int i = 0; i < SCAN_LOOKUPS; i++) {
+                String query = query(random, termCount);
+                long t = System.nanoTime();
+                int expected = scan(dictionary, query);
+                scanNanos += System.nanoTime() - t;
+                if (expected != index.search(query, 0, 10).getTotal()) {
+                    mismatches++;
+                }
+            }
+            System.out.printf("%-8d %10.3fms %10.3fms %12.2fms   mismatches vs scan: %d%n", termCount,
+                    nanos[LOOKUPS / 2] / 1e6, nanos[LOOKUPS * 99 / 100] / 1e6,
+                    scanNanos / 1e6 / SCAN_LOOKUPS, mismatches);
+        }
+
+        checkProtocol();
+    }
+
+    // What searchMeanings would cost without the index: tokenize every meaning.
+    private static int scan(Map<String, List<String>> dictionary, String query) {
+        List<String> wanted = MeaningIndex.terms(query);
+        int matches = 0;
+        for (List<String> meanings : dictionary.values()) {
+            List<String> terms = new ArrayList<>();
+            for (String meaning : meanings) {
+                terms.addAll(MeaningIndex.terms(meaning));
+            }
+            if (terms.containsAll(wanted)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static void checkProtocol() throws Exception {
+        File dictFile = File.createTempFile("meaning-search", ".json");
+        dictFile.delete();
+        dictFile.deleteOnExit();
+        Map<String, String> values = new HashMap<>();
+        values.put("persistence", "write-behind");
+        DictionaryManager manager = new DictionaryManager(dictFile.getPath(), new ServerOptions(values));
+        RequestProcessor processor = new RequestProcessor(manager);
+        processor.process("{\"command\":\"add\",\"word\":\"apple\",\"meanings\":[\"A round fruit.\"]}");
+        processor.process("{\"command\":\"add\",\"word\":\"pear\",\"meanings\":[\"A sweet fruit, fruit of the pear tree.\"]}");
+        processor.process("{\"command\":\"add\",\"word\":\"oak\",\"meanings\":[\"A tree.\"]}");
+        processor.process("{\"command\":\"addMeaning\",\"word\":\"oak\",\"newMeaning\":\"Its fruit is the acorn.\"}");
+        processor.process("{\"command\":\"updateMeaning\",\"word\":\"apple\",\"oldMeaning\":\"A round fruit.\","
+                + "\"newMeaning\":\"A round pome.\"}");
+        processor.process("{\"command\":\"remove\",\"word\":\"pear\"}");
+        processor.process("{\"command\":\"add\",\"word\":\"plum\",\"meanings\":[\"A stone fruit.\"]}");
+        System.out.println(processor.process("{\"command\":\"searchMeanings\",\"query\":\"FRUIT\",\"limit\":1}"));
+        System.out.println(processor.process("{\"command\":\"searchMeanings\",\"query\":\"fruit\",\"offset\":1,\"limit\":1}"));
+        System.out.println(processor.process("{\"command\":\"searchMeanings\",\"query\":\"round pome\"}"));
+        manager.close();
+    }
+
+    private static String query(Random random, int termCount) {
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < termCount; i++) {
+            query.append(term(random)).append(' ');
+        }
+        return query.toString();
+    }
+
+    // Term t is drawn with probability roughly proportional to 1/t.
+    private static String term(Random random) {
+        return "t" + (int) Math.pow(VOCABULARY, random.nextDouble());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
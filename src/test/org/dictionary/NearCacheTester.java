@@ -0,0 +1,125 @@
+package org.dictionary;
+
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs an in-process server with each engine and reads a hot set of words
+ * through two clients, one with a near cache and one without, printing the
+ * read rate of each and the near cache's hit rate. Then a second client
+ * changes some of the hot words and the test measures how long the caching
+ * client takes to see every change, and checks that it never sees an old
+ * value afterwards.
+ */
+public class NearCacheTester {
+
+    private static final int WORDS = 5000;
+    private static final int HOT_WORDS = 500;
+    private static final int ROUNDS = 40;
+    private static final int CHANGED = 100;
+
+    public static void main(String[] args) throws Exception {
+        run(5900, "blocking");
+        run(5910, "nio");
+        System.exit(0);
+    }
+
+    private static void run(int port, String engine) throws Exception {
+        String dictionary = new File(Files.createTempDirectory("near-cache").toFile(), "dictionary.json").getPath();
+        DictionaryServer server = startServer(port, dictionary, engine);
+        Map<String, String> cached = new HashMap<>();
+        cached.put("near-cache-entries", "1000");
+        try (PooledDictionaryClient writer = new PooledDictionaryClient("localhost", port);
+             PooledDictionaryClient plain = new PooledDictionaryClient("localhost", port);
+             PooledDictionaryClient reader = new PooledDictionaryClient("localhost", port, new ServerOptions(cached))) {
+            for (int i = 0; i < WORDS; i++) {
+                writer.add("word" + i, Collections.singletonList("meaning " + i));
+            }
+            System.out.println("[" + engine + "] without near cache: " + readHotWords(plain) + " reads/s");
+            System.out.println("[" + engine + "] with near cache:    " + readHotWords(reader) + " reads/s");
+            System.out.println("[" + engine + "] " + reader.getNearCache().describe());
+
+            long start = System.nanoTime();
+            for (int i = 0; i < CHANGED; i++) {
+                writer.updateMeaning("word" + i, "meaning " + i, "changed " + i);
+            }
+            long written = System.nanoTime();
+            int stale;
+            long seen;
+            do {
+                stale = 0;
+                for (int i = 0; i < CHANGED; i++) {
+                    if (!reader.query("word" + i).getMeanings().equals(Collections.singletonList("changed " + i))) {
+                        stale++;
+                    }
+                }
+                seen = System.nanoTime();
+            } while (stale > 0 && seen - written < 5_000_000_000L);
+            System.out.printf("[%s] %d updates took %.1f ms; the caching client saw all of them %.1f ms after the "
+                    + "last, %d still stale%n", engine, CHANGED, (written - start) / 1e6, (seen - written) / 1e6, stale);
+
+            writer.remove("word" + (CHANGED + 1));
+            int wrong = 0;
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < CHANGED; i++) {
+                    if (!reader.query("word" + i).getMeanings().equals(Collections.singletonList("changed " + i))) {
+                        wrong++;
+                    }
+                }
+            }
+            Thread.sleep(100);
+            boolean removedSeen = !reader.query("word" + (CHANGED + 1)).isSuccess();
+            System.out.println("[" + engine + "] old values read after catching up: " + wrong
+                    + "; removal seen: " + removedSeen);
+
+            JsonObject stats = new JsonObject();
+            stats.addProperty("command", "stats");
+            System.out.println("[" + engine + "] server tracking: " + writer.send(stats).get().get("tracking"));
+        } finally {
+            server.stopServer();
+        }
+    }
+
+    // Reads the hot words ROUNDS times and returns reads per second.
+    private static long readHotWords(PooledDictionaryClient client) throws IOException {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < HOT_WORDS; i++) {
+                List<String> meanings = client.query("word" + i).getMeanings();
+                if (meanings.isEmpty()) {
+                    throw new IllegalStateException("word" + i + " missing");
+                }
+            }
+        }
+        return Math.round(ROUNDS * HOT_WORDS / ((System.nanoTime() - start) / 1e9));
+    }
+
+    private static DictionaryServer startServer(int port, String dictionary, String engine) throws Exception {
+        DictionaryServer server = new DictionaryServer(port, dictionary,
+                ServerOptions.parse(new String[]{"--persistence=journal", "--engine=" + engine}, 0));
+        server.setLogUpdater(message -> { });
+        server.setClientCountUpdater(count -> { });
+        Thread thread = new Thread(server, "server-" + port);
+        thread.setDaemon(true);
+        thread.start();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                new Socket("localhost", port).close();
+                return server;
+            } catch (IOException e) {
+                if (attempt == 100) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.dictionary;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives a {@link PooledDictionaryClient} against an in-process server: many
+ * threads share one client through the typed methods, then a slow write runs
+ * into the request timeout, and finally the server is stopped and started
+ * again to show the pool reporting the outage and reconnecting on its own.
+ */
+public class PooledClientTester {
+
+    private static final int PORT = 5800;
+    private static final int THREADS = 8;
+    private static final int WORDS_PER_THREAD = 2000;
+
+    public static void main(String[] args) throws Exception {
+        String dictionary = new File(Files.createTempDirectory("pooled-client").toFile(), "dictionary.json").getPath();
+        DictionaryServer server = startServer(dictionary);
+
+        Map<String, String> values = new HashMap<>();
+        values.put("pool-size", "4");
+        values.put("request-timeout-ms", "1000");
+        values.put("validate-idle-ms", "500");
+        try (PooledDictionaryClient client = new PooledDictionaryClient("localhost", PORT, new ServerOptions(values))) {
+            AtomicInteger failures = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < WORDS_PER_THREAD; i++) {
+                            String word = "word-" + thread + "-" + i;
+                            check(client.add(word, Arrays.asList("first")), failures);
+                            check(client.addMeaning(word, "second"), failures);
+                            check(client.updateMeaning(word, "first", "third"), failures);
+                            PooledDictionaryClient.Response query = client.query(word);
+                            check(query, failures);
+                            if (!query.getMeanings().equals(Arrays.asList("third", "second"))) {
+                                failures.incrementAndGet();
+                            }
+                            if (i % 2 == 0) {
+                                check(client.remove(word), failures);
+                            }
+                        }
+                    } catch (IOException e) {
+                        System.out.println("Thread " + thread + " failed: " + e.getMessage());
+                        failures.incrementAndGet();
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            int requests = THREADS * WORDS_PER_THREAD * 5 - THREADS * WORDS_PER_THREAD / 2;
+            System.out.printf("%d threads made %d requests in %.2f s (%.0f/s) over %d connections; %d failures%n",
+                    THREADS, requests, seconds, requests / seconds, client.getOpenConnections(), failures.get());
+            PooledDictionaryClient.Response missing = client.query("wrod-0-1", true);
+            System.out.println("Missed query: " + missing.getStatus() + ", suggestions " + missing.getSuggestions());
+
+            try {
+                client.add("slow", Arrays.asList("meaning"), 2000);
+                System.out.println("Slow write unexpectedly answered in time");
+            } catch (IOException e) {
+                System.out.println("Slow write: " + e.getMessage());
+            }
+
+            server.stopServer();
+            Thread.sleep(200);
+            try {
+                client.query("word-0-1");
+                System.out.println("Query answered with the server down");
+            } catch (IOException e) {
+                System.out.println("Server down: " + e.getMessage());
+            }
+            server = startServer(dictionary);
+            PooledDictionaryClient.Response after = client.query("word-0-1");
+            System.out.println("After restart: " + after.getStatus() + " " + after.getMeanings()
+                    + ", open connections " + client.getOpenConnections());
+        } finally {
+            server.stopServer();
+        }
+        System.exit(0);
+    }
+
+    private static void check(PooledDictionaryClient.Response response, AtomicInteger failures) {
+        if (!response.isSuccess()) {
+            failures.incrementAndGet();
+        }
+    }
+
+    private static DictionaryServer startServer(String dictionary) throws Exception {
+        DictionaryServer server = new DictionaryServer(PORT, dictionary,
+                ServerOptions.parse(new String[]{"--persistence=journal"}, 0));
+        server.setLogUpdater(message -> { });
+        server.setClientCountUpdater(count -> { });
+        Thread thread = new Thread(server, "server-" + PORT);
+        thread.setDaemon(true);
+        thread.start();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                new Socket("localhost", PORT).close();
+                return server;
+            } catch (IOException e) {
+                if (attempt == 100) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+}
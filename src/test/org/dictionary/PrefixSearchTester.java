@@ -0,0 +1,103 @@
+package org.dictionary;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures prefix lookup latency as the dictionary grows from 10,000 to
+ * 4,000,000 words, for the PrefixIndex and for a plain scan over the
+ * dictionary's keys (the only option before the index). Each lookup asks for
+ * 10 words under a random 3-letter prefix of an existing word. It ends with a
+ * check through RequestProcessor that the index follows adds and removes.
+ */
+public class PrefixSearchTester {
+
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000, 4_000_000};
+    private static final int LOOKUPS = 200_000;
+    private static final int SCAN_LOOKUPS = 20;
+    private static final int LIMIT = 10;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%10s %12s %12s %12s %14s%n", "words", "index p50", "index p99", "index max", "scan mean");
+        for (int size : SIZES) {
+            Random random = new Random(size);
+            Map<String, List<String>> dictionary = new HashMap<>();
+            while (dictionary.size() < size) {
+                dictionary.put(randomWord(random), null);
+            }
+            PrefixIndex index = new PrefixIndex(dictionary.keySet());
+            String[] words = dictionary.keySet().toArray(new String[0]);
+
+            long sink = 0;
+            for (int i = 0; i < LOOKUPS; i++) { // warm-up
+                sink += index.wordsWithPrefix(prefixOf(words, random), LIMIT).size();
+            }
+            long[] nanos = new long[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                String prefix = prefixOf(words, random);
+                long start = System.nanoTime();
+                sink += index.wordsWithPrefix(prefix, LIMIT).size();
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+
+            long scanStart = System.nanoTime();
+            for (int i = 0; i < SCAN_LOOKUPS; i++) {
+                sink += scan(dictionary, prefixOf(words, random)).size();
+            }
+            long scanMean = (System.nanoTime() - scanStart) / SCAN_LOOKUPS;
+
+            System.out.printf("%,10d %10.2fus %10.2fus %10.2fus %12.2fms   (%d)%n", size,
+                    nanos[LOOKUPS / 2] / 1e3, nanos[LOOKUPS * 99 / 100] / 1e3, nanos[LOOKUPS - 1] / 1e3,
+                    scanMean / 1e6, sink % 10);
+        }
+
+        checkProtocol();
+    }
+
+    // What a client had to do before: look at every key.
+    private static List<String> scan(Map<String, List<String>> dictionary, String prefix) {
+        List<String> found = new ArrayList<>();
+        for (String word : dictionary.keySet()) {
+            if (word.startsWith(prefix)) {
+                found.add(word);
+            }
+        }
+        found.sort(null);
+        return found.subList(0, Math.min(LIMIT, found.size()));
+    }
+
+    private static void checkProtocol() throws Exception {
+        File dictFile = File.createTempFile("prefix-search", ".json");
+        dictFile.delete();
+        dictFile.deleteOnExit();
+        Map<String, String> values = new HashMap<>();
+        values.put("persistence", "write-behind");
+        DictionaryManager manager = new DictionaryManager(dictFile.getPath(), new ServerOptions(values));
+        RequestProcessor processor = new RequestProcessor(manager);
+        for (String word : new String[]{"apple", "applet", "apply", "banana"}) {
+            processor.process("{\"command\":\"add\",\"word\":\"" + word + "\",\"meanings\":[\"m\"]}");
+        }
+        processor.process("{\"command\":\"remove\",\"word\":\"applet\"}");
+        System.out.println(processor.process("{\"command\":\"prefix\",\"prefix\":\"app\",\"limit\":1}"));
+        System.out.println(processor.process("{\"command\":\"prefix\",\"prefix\":\"app\",\"withMeanings\":true}"));
+        manager.close();
+    }
+
+    private static String prefixOf(String[] words, Random random) {
+        return words[random.nextInt(words.length)].substring(0, 3);
+    }
+
+    private static String randomWord(Random random) {
+        char[] word = new char[4 + random.nextInt(8)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}
@@ -0,0 +1,170 @@
+package org.dictionary;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs a leader and two read replicas as separate server processes on
+ * localhost. Writes a few thousand words to the leader, waits for both
+ * replicas to catch up and prints their lag stats, checks that a replica
+ * refuses a write, then kills one replica, writes more (including removals),
+ * restarts it and checks that it resumes from its saved position and ends
+ * up with the same words as the leader.
+ *
+ * <p>{@code ReplicationTester serve <port> <dictionary> [--options]} runs one
+ * headless server; the test starts its processes that way.
+ */
+public class ReplicationTester {
+
+    private static final int LEADER_PORT = 5600;
+    private static final int REPLICATION_PORT = 5601;
+    private static final int[] FOLLOWER_PORTS = {5610, 5620};
+    private static final int WORDS = 3000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
+        File dir = Files.createTempDirectory("replication").toFile();
+        List<Process> processes = new ArrayList<>();
+        try {
+            processes.add(start(LEADER_PORT, new File(dir, "leader.json"),
+                    "--persistence=journal", "--replication-port=" + REPLICATION_PORT));
+            processes.add(start(FOLLOWER_PORTS[0], new File(dir, "follower-a.json"),
+                    "--replicate-from=localhost:" + REPLICATION_PORT));
+            Process followerB = start(FOLLOWER_PORTS[1], new File(dir, "follower-b.json"),
+                    "--persistence=journal", "--replicate-from=localhost:" + REPLICATION_PORT);
+            processes.add(followerB);
+
+            try (AsyncDictionaryClient leader = connect(LEADER_PORT)) {
+                write(leader, 0, WORDS);
+                awaitCaughtUp(leader, FOLLOWER_PORTS);
+
+                try (AsyncDictionaryClient follower = connect(FOLLOWER_PORTS[0])) {
+                    System.out.println("Write to a replica: " + follower.send(add("refused", "m")).get());
+                }
+
+                System.out.println("Killing the replica on " + FOLLOWER_PORTS[1]);
+                Thread.sleep(1500); // let it checkpoint its position first
+                followerB.destroyForcibly().waitFor();
+                processes.remove(followerB);
+                write(leader, WORDS, WORDS + 500);
+                for (int i = 0; i < 200; i++) {
+                    JsonObject remove = new JsonObject();
+                    remove.addProperty("command", "remove");
+                    remove.addProperty("word", "word" + i);
+                    leader.send(remove).get();
+                }
+                processes.add(start(FOLLOWER_PORTS[1], new File(dir, "follower-b.json"),
+                        "--persistence=journal", "--replicate-from=localhost:" + REPLICATION_PORT));
+                awaitCaughtUp(leader, FOLLOWER_PORTS);
+                long leaderWords = stats(leader).get("words").getAsLong();
+                for (int port : FOLLOWER_PORTS) {
+                    try (AsyncDictionaryClient follower = connect(port)) {
+                        System.out.printf("Replica %d has %d words, leader %d%n", port,
+                                stats(follower).get("words").getAsLong(), leaderWords);
+                    }
+                }
+            }
+        } finally {
+            for (Process process : processes) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static void serve(String[] args) {
+        int port = Integer.parseInt(args[1]);
+        DictionaryServer server = new DictionaryServer(port, args[2], ServerOptions.parse(args, 3));
+        server.setLogUpdater(message -> System.out.println("[" + port + "] " + message));
+        server.setClientCountUpdater(count -> { });
+        server.run();
+    }
+
+    private static Process start(int port, File dictionary, String... options) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ReplicationTester.class.getName());
+        command.add("serve");
+        command.add(String.valueOf(port));
+        command.add(dictionary.getPath());
+        for (String option : options) {
+            command.add(option);
+        }
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    private static AsyncDictionaryClient connect(int port) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                new Socket("localhost", port).close();
+                break;
+            } catch (IOException e) {
+                if (attempt == 100) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+        return new AsyncDictionaryClient("localhost", port);
+    }
+
+    private static void write(AsyncDictionaryClient leader, int from, int to) {
+        List<CompletableFuture<JsonObject>> responses = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            responses.add(leader.send(add("word" + i, "meaning " + i)));
+        }
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).join();
+        System.out.println("Wrote words " + from + " to " + (to - 1) + " to the leader");
+    }
+
+    // Polls each replica's stats until it has applied every write the leader has made.
+    private static void awaitCaughtUp(AsyncDictionaryClient leader, int[] ports) throws Exception {
+        long target = stats(leader).getAsJsonObject("replication").getAsJsonObject("leading")
+                .get("sequence").getAsLong();
+        for (int port : ports) {
+            long start = System.nanoTime();
+            try (AsyncDictionaryClient follower = connect(port)) {
+                JsonObject following;
+                do {
+                    Thread.sleep(50);
+                    following = stats(follower).getAsJsonObject("replication").getAsJsonObject("following");
+                } while (following.get("appliedSequence").getAsLong() < target
+                        || !following.get("leaderId").getAsString().equals(leaderId(leader)));
+                System.out.printf("Replica %d reached write %d within %.0f ms; lag %s%n", port, target,
+                        (System.nanoTime() - start) / 1e6, following.get("lag"));
+            }
+        }
+    }
+
+    private static String leaderId(AsyncDictionaryClient leader) throws Exception {
+        return stats(leader).getAsJsonObject("replication").getAsJsonObject("leading").get("logId").getAsString();
+    }
+
+    private static JsonObject stats(AsyncDictionaryClient client) throws Exception {
+        JsonObject request = new JsonObject();
+        request.addProperty("command", "stats");
+        return client.send(request).get();
+    }
+
+    private static JsonObject add(String word, String meaning) {
+        JsonObject request = new JsonObject();
+        request.addProperty("command", "add");
+        request.addProperty("word", word);
+        JsonArray meanings = new JsonArray();
+        meanings.add(meaning);
+        request.add("meanings", meanings);
+        return request;
+    }
+}
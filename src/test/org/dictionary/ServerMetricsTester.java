@@ -0,0 +1,69 @@
+package org.dictionary;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs queries and writes from several threads through a RequestProcessor
+ * over a dictionary with one global write lock and snapshot persistence, so
+ * writers queue behind each other's file saves, plus a few malformed lines.
+ * Then prints the stats response: every command should be counted, lock
+ * waits should show up, and the save count should match the successful writes.
+ */
+public class ServerMetricsTester {
+
+    private static final int THREADS = 4;
+    private static final int WRITES_PER_THREAD = 200;
+
+    public static void main(String[] args) throws Exception {
+        File dictFile = File.createTempFile("server-metrics", ".json");
+        dictFile.delete();
+        dictFile.deleteOnExit();
+        Map<String, String> values = new HashMap<>();
+        values.put("locking", "global");
+        DictionaryManager manager = new DictionaryManager(dictFile.getPath(), new ServerOptions(values));
+        RequestProcessor processor = new RequestProcessor(manager);
+        ServerMetrics metrics = manager.getMetrics();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                    String word = "w" + thread + "_" + i;
+                    run(processor, metrics, "{\"command\":\"add\",\"word\":\"" + word + "\",\"meanings\":[\"m\"]}");
+                    run(processor, metrics, "{\"command\":\"query\",\"word\":\"" + word + "\"}");
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        run(processor, metrics, "not json");
+        run(processor, metrics, "{\"command\":\"add\"}");
+        run(processor, metrics, "{\"command\":\"noSuchCommand\"}");
+
+        String stats = processor.process("{\"command\":\"stats\"}");
+        System.out.println(new GsonBuilder().setPrettyPrinting().create().toJson(JsonParser.parseString(stats)));
+        System.out.printf("saves %d for %d adds, malformed %d%n", metrics.getSaves().getCount(),
+                THREADS * WRITES_PER_THREAD, metrics.getMalformedRequests());
+        manager.close();
+    }
+
+    // What the connection handlers do around each request.
+    private static void run(RequestProcessor processor, ServerMetrics metrics, String line) {
+        long start = System.nanoTime();
+        RequestProcessor.Request request = processor.parse(line);
+        processor.process(request);
+        metrics.recordCommand(request.getCommand(), System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,165 @@
+package org.dictionary;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Starts three dictionary servers and a {@link ShardRouter} in this JVM,
+ * writes a few thousand words through the router and prints how they spread
+ * over the shards, then tries the commands the router answers from several
+ * shards. Finally adds a fourth server, runs the {@link ShardRebalancer},
+ * and checks through a router for the new list that about a quarter of the
+ * words moved and every word is still found.
+ */
+public class ShardingTester {
+
+    private static final int[] SHARD_PORTS = {5700, 5710, 5720, 5730};
+    private static final int ROUTER_PORT = 5750;
+    private static final int NEW_ROUTER_PORT = 5751;
+    private static final int WORDS = 5000;
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("sharding").toFile();
+        for (int port : SHARD_PORTS) {
+            startServer(port, new File(dir, "shard-" + port + ".json"));
+        }
+        String oldShards = shardList(3);
+        String newShards = shardList(4);
+        startRouter(ROUTER_PORT, oldShards);
+
+        try (AsyncDictionaryClient router = connect(ROUTER_PORT)) {
+            List<CompletableFuture<JsonObject>> responses = new ArrayList<>();
+            for (int i = 0; i < WORDS; i++) {
+                responses.add(router.send(add("word" + i, "meaning number " + i + (i % 7 == 0 ? " lucky" : ""))));
+            }
+            CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).join();
+            System.out.println("Wrote " + WORDS + " words through the router");
+            printSpread(router);
+
+            System.out.println("query: " + router.send(command("query", "word", "word42")).get());
+            JsonObject multiQuery = new JsonObject();
+            multiQuery.addProperty("command", "multiQuery");
+            JsonArray words = new JsonArray();
+            for (String word : new String[]{"word7", "word4999", "nothing", "word1000", "word7"}) {
+                words.add(word);
+            }
+            multiQuery.add("words", words);
+            System.out.println("multiQuery: " + router.send(multiQuery).get());
+            JsonObject prefix = command("prefix", "prefix", "word12");
+            prefix.addProperty("limit", 5);
+            System.out.println("prefix: " + router.send(prefix).get());
+            System.out.println("suggest: " + router.send(command("suggest", "word", "wrd123")).get());
+            JsonObject search = command("searchMeanings", "query", "lucky");
+            search.addProperty("offset", 95);
+            search.addProperty("limit", 5);
+            System.out.println("searchMeanings: " + router.send(search).get());
+            JsonObject batch = new JsonObject();
+            batch.addProperty("command", "applyBatch");
+            JsonArray operations = new JsonArray();
+            operations.add(command("remove", "word", "word1"));
+            operations.add(command("remove", "word", "word2"));
+            operations.add(command("remove", "word", "word3"));
+            batch.add("operations", operations);
+            System.out.println("applyBatch across shards: " + router.send(batch).get());
+        }
+
+        System.out.println("Rebalancing from " + oldShards + " to " + newShards);
+        Map<String, Integer> moved = new ShardRebalancer(ShardRing.parse(oldShards, ShardRing.DEFAULT_VIRTUAL_NODES),
+                ShardRing.parse(newShards, ShardRing.DEFAULT_VIRTUAL_NODES)).run();
+        int total = moved.values().stream().mapToInt(Integer::intValue).sum();
+        System.out.printf("Moved %d of %d words (%.1f%%)%n", total, WORDS, 100.0 * total / WORDS);
+
+        startRouter(NEW_ROUTER_PORT, newShards);
+        try (AsyncDictionaryClient router = connect(NEW_ROUTER_PORT)) {
+            printSpread(router);
+            List<CompletableFuture<JsonObject>> responses = new ArrayList<>();
+            for (int i = 0; i < WORDS; i++) {
+                responses.add(router.send(command("query", "word", "word" + i)));
+            }
+            int found = 0;
+            for (CompletableFuture<JsonObject> response : responses) {
+                if ("success".equals(response.get().get("status").getAsString())) {
+                    found++;
+                }
+            }
+            System.out.println("Found " + found + " of " + WORDS + " words through the new router");
+        }
+        System.exit(0);
+    }
+
+    private static String shardList(int count) {
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            list.append(i == 0 ? "" : ",").append("localhost:").append(SHARD_PORTS[i]);
+        }
+        return list.toString();
+    }
+
+    private static void printSpread(AsyncDictionaryClient router) throws Exception {
+        JsonObject stats = router.send(command("stats", null, null)).get();
+        StringBuilder spread = new StringBuilder("Words per shard:");
+        for (Map.Entry<String, JsonElement> shard : stats.getAsJsonObject("shards").entrySet()) {
+            spread.append(' ').append(shard.getKey()).append('=')
+                    .append(shard.getValue().getAsJsonObject().get("words").getAsLong());
+        }
+        System.out.println(spread + ", total " + stats.get("words").getAsLong());
+    }
+
+    private static void startServer(int port, File dictionary) {
+        DictionaryServer server = new DictionaryServer(port, dictionary.getPath(), new ServerOptions());
+        server.setLogUpdater(message -> { });
+        server.setClientCountUpdater(count -> { });
+        Thread thread = new Thread(server, "shard-" + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void startRouter(int port, String shards) {
+        ServerOptions options = ServerOptions.parse(new String[]{"--shards=" + shards}, 0);
+        Thread thread = new Thread(new ShardRouter(port, options), "router-" + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static AsyncDictionaryClient connect(int port) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                new Socket("localhost", port).close();
+                break;
+            } catch (IOException e) {
+                if (attempt == 100) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+        return new AsyncDictionaryClient("localhost", port);
+    }
+
+    private static JsonObject command(String command, String field, String value) {
+        JsonObject request = new JsonObject();
+        request.addProperty("command", command);
+        if (field != null) {
+            request.addProperty(field, value);
+        }
+        return request;
+    }
+
+    private static JsonObject add(String word, String meaning) {
+        JsonObject request = command("add", "word", word);
+        JsonArray meanings = new JsonArray();
+        meanings.add(meaning);
+        request.add("meanings", meanings);
+        return request;
+    }
+}
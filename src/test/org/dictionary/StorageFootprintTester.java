@@ -0,0 +1,114 @@
+package org.dictionary;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Writes one dictionary file (400,000 words, a third of the meanings shared
+ * between words) and loads it with --storage=heap and --storage=compact,
+ * reporting the heap each one retains. The search indexes and the query cache
+ * are switched off so only the storage is measured, and then compact is
+ * loaded once more with the meaning index, which must not pin decoded
+ * meanings. It then runs a random mix
+ * of writes against both a CompactDictionary and a HashMap, enough to force
+ * compactions, and checks that they end up equal.
+ */
+public class StorageFootprintTester {
+
+    private static final int WORDS = 400_000;
+    private static final int SHARED_MEANINGS = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(1);
+        List<String> shared = new ArrayList<>();
+        for (int i = 0; i < SHARED_MEANINGS; i++) {
+            shared.add("A common sense number " + i + ", as used in general speech.");
+        }
+        Map<String, List<String>> entries = new HashMap<>();
+        long textBytes = 0;
+        for (int i = 0; i < WORDS; i++) {
+            List<String> meanings = new ArrayList<>();
+            for (int m = 1 + random.nextInt(3); m > 0; m--) {
+                String meaning = random.nextInt(3) == 0
+                        ? shared.get(random.nextInt(SHARED_MEANINGS))
+                        : "Definition " + random.nextInt() + " of word " + i + ", with some explanatory text.";
+                if (!meanings.contains(meaning)) {
+                    meanings.add(meaning);
+                    textBytes += meaning.getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+            String word = "word" + i;
+            textBytes += word.getBytes(StandardCharsets.UTF_8).length;
+            entries.put(word, Collections.unmodifiableList(meanings));
+        }
+        File dictFile = File.createTempFile("storage-footprint", ".json");
+        dictFile.deleteOnExit();
+        JsonDictionaryFile.write(dictFile.toPath(), entries);
+        entries = null;
+        System.out.printf("%,d words, %.1f MB of UTF-8 text, file %.1f MB%n", WORDS, textBytes / 1e6,
+                Files.size(dictFile.toPath()) / 1e6);
+
+        for (String run : new String[]{"heap", "compact", "compact+meaning-index"}) {
+            String storage = run.startsWith("compact") ? "compact" : "heap";
+            Map<String, String> values = new HashMap<>();
+            values.put("storage", storage);
+            values.put("persistence", "write-behind");
+            values.put("write-behind-staleness-ms", "600000");
+            values.put("query-cache-entries", "0");
+            values.put("prefix-index", "false");
+            values.put("suggest-index", "false");
+            values.put("meaning-index", String.valueOf(run.endsWith("meaning-index")));
+            long before = usedHeap();
+            DictionaryManager manager = new DictionaryManager(dictFile.getPath(), new ServerOptions(values));
+            long after = usedHeap();
+            System.out.printf("%-22s %8.1f MB retained (%.0f bytes/word)   %s%n", run, (after - before) / 1e6,
+                    (double) (after - before) / WORDS, manager.query("word12345"));
+            manager.close();
+            manager = null;
+        }
+
+        checkAgainstHashMap();
+    }
+
+    private static void checkAgainstHashMap() {
+        Random random = new Random(2);
+        CompactDictionary compact = new CompactDictionary();
+        Map<String, List<String>> expected = new HashMap<>();
+        for (int i = 0; i < 2_000_000; i++) {
+            String word = "w" + random.nextInt(20_000);
+            if (random.nextInt(4) == 0) {
+                if (!Objects.equals(compact.remove(word), expected.remove(word))) {
+                    throw new AssertionError("remove differs for " + word);
+                }
+            } else {
+                List<String> meanings = new ArrayList<>();
+                for (int m = random.nextInt(4); m >= 0; m--) {
+                    meanings.add("meaning " + random.nextInt(500) + " \u00e9\u4e2d\ud83d\ude00");
+                }
+                meanings = Collections.unmodifiableList(meanings);
+                if (!Objects.equals(compact.put(word, meanings), expected.put(word, meanings))) {
+                    throw new AssertionError("put differs for " + word);
+                }
+            }
+        }
+        boolean equal = compact.size() == expected.size() && new HashMap<>(compact).equals(expected);
+        System.out.printf("Random writes vs HashMap: %s (%,d words, %.1f MB live in pages)%n",
+                equal ? "equal" : "DIFFERENT", compact.size(), compact.liveBytes() / 1e6);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
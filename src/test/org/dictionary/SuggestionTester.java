@@ -0,0 +1,132 @@
+package org.dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Builds a SuggestionIndex over 500,000 random words and reports its heap
+ * footprint, build time, and suggest latency for misspelled lookups at edit
+ * distance 1 and 2, next to a brute-force distance computation against every
+ * word, and the cost of the writes the index sees from every mutation. It
+ * also checks the results against the brute force, and that adds and
+ * removes are reflected straight away.
+ */
+public class SuggestionTester {
+
+    private static final int WORDS = 500_000;
+    private static final int LOOKUPS = 2_000;
+    private static final int SCAN_LOOKUPS = 10;
+    private static final int LIMIT = 5;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        Set<String> unique = new HashSet<>();
+        while (unique.size() < WORDS) {
+            unique.add(randomWord(random));
+        }
+        List<String> words = new ArrayList<>(unique);
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        SuggestionIndex index = new SuggestionIndex(words);
+        long buildNanos = System.nanoTime() - start;
+        long heapAfter = usedHeap();
+        System.out.printf("%,d words: built in %.0f ms, %.1f MB heap (%.0f bytes/word, word strings not counted)%n",
+                index.size(), buildNanos / 1e6, (heapAfter - heapBefore) / 1e6,
+                (double) (heapAfter - heapBefore) / index.size());
+
+        System.out.printf("%-9s %12s %12s %14s%n", "distance", "index p50", "index p99", "scan mean");
+        for (int distance = 1; distance <= 2; distance++) {
+            for (int i = 0; i < LOOKUPS; i++) { // warm-up
+                index.suggest(misspell(words, random), distance, LIMIT);
+            }
+            long[] nanos = new long[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                String query = misspell(words, random);
+                long t = System.nanoTime();
+                index.suggest(query, distance, LIMIT);
+                nanos[i] = System.nanoTime() - t;
+            }
+            Arrays.sort(nanos);
+
+            int mismatches = 0;
+            long scanNanos = 0;
+            for (int i = 0; i < SCAN_LOOKUPS; i++) {
+                String query = misspell(words, random);
+                long t = System.nanoTime();
+                List<String> expected = scan(words, query, distance);
+                scanNanos += System.nanoTime() - t;
+                if (!expected.equals(index.suggest(query, distance, LIMIT))) {
+                    mismatches++;
+                }
+            }
+            System.out.printf("%-9d %10.2fms %10.2fms %12.2fms   mismatches vs scan: %d%n", distance,
+                    nanos[LOOKUPS / 2] / 1e6, nanos[LOOKUPS * 99 / 100] / 1e6,
+                    scanNanos / 1e6 / SCAN_LOOKUPS, mismatches);
+        }
+
+        int writes = 200_000;
+        start = System.nanoTime();
+        for (int i = 0; i < writes; i++) {
+            index.apply(Mutation.put(words.get(i), Collections.singletonList("changed")));
+        }
+        long updateNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < writes / 2; i++) {
+            index.apply(Mutation.put("new" + i, Collections.singletonList("m")));
+            index.apply(Mutation.remove("new" + i));
+        }
+        long addRemoveNanos = System.nanoTime() - start;
+        System.out.printf("writes: %,.0f meaning changes/s, %,.0f adds and removes/s%n",
+                writes * 1e9 / updateNanos, writes * 1e9 / addRemoveNanos);
+
+        index.apply(Mutation.put("zzzqqq", Collections.singletonList("m")));
+        System.out.println("after add:    " + index.suggest("zzzqqx", 1, LIMIT));
+        index.apply(Mutation.remove("zzzqqq"));
+        System.out.println("after remove: " + index.suggest("zzzqqx", 1, LIMIT));
+    }
+
+    // What suggest would cost without the index: the distance to every word.
+    private static List<String> scan(List<String> words, String query, int maxDistance) {
+        List<String> found = new ArrayList<>();
+        for (String word : words) {
+            if (SuggestionIndex.distance(query, word, maxDistance) <= maxDistance) {
+                found.add(word);
+            }
+        }
+        found.sort((a, b) -> {
+            int da = SuggestionIndex.distance(query, a, maxDistance);
+            int db = SuggestionIndex.distance(query, b, maxDistance);
+            return da != db ? Integer.compare(da, db) : a.compareTo(b);
+        });
+        return found.subList(0, Math.min(LIMIT, found.size()));
+    }
+
+    // An existing word with one random character substituted.
+    private static String misspell(List<String> words, Random random) {
+        char[] word = words.get(random.nextInt(words.size())).toCharArray();
+        word[random.nextInt(word.length)] = (char) ('a' + random.nextInt(26));
+        return new String(word);
+    }
+
+    private static String randomWord(Random random) {
+        char[] word = new char[4 + random.nextInt(8)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}